@@ -5,6 +5,7 @@ import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.util.ByteString;
 import clustering.*;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
@@ -15,10 +16,16 @@ import play.libs.Json;
 import util.*;
 
 import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
 
 import static util.Constants.DOUBLE_BYTES;
 import static util.Constants.INT_BYTES;
@@ -29,11 +36,127 @@ public class Agent extends AbstractActor {
         return Props.create(Agent.class, out, config);
     }
 
+    /**
+     * message from a build task on BuildExecutor, the SuperCluster of clusterKey is built
+     */
+    static final class BuildDone {
+        final String clusterKey;
+        final String sharedKey;
+        // null if the build fails
+        final SuperCluster cluster;
+
+        BuildDone(String clusterKey, String sharedKey, SuperCluster cluster) {
+            this.clusterKey = clusterKey;
+            this.sharedKey = sharedKey;
+            this.cluster = cluster;
+        }
+    }
+
+    /**
+     * a SuperCluster acquired from ClusterRegistry whose BuildDone is not handled yet
+     */
+    static final class Acquiring {
+        final String sharedKey;
+        final CompletableFuture<SuperCluster> future;
+
+        Acquiring(String sharedKey, CompletableFuture<SuperCluster> future) {
+            this.sharedKey = sharedKey;
+            this.future = future;
+        }
+    }
+
+    /**
+     * message from a batch task on BuildExecutor, one time slice of a progressive query is loaded
+     */
+    static final class BatchDone {
+        final ProgressiveQuery progressive;
+        final boolean success;
+
+        BatchDone(ProgressiveQuery progressive, boolean success) {
+            this.progressive = progressive;
+            this.success = success;
+        }
+    }
+
+    /**
+     * a time slice of a progressive query being fetched ahead on the fetch pool of BuildExecutor
+     */
+    static final class Prefetch {
+        final Date start;
+        final Date end;
+        CompletableFuture<List<PointTuple>> future;
+        // fetching time in seconds, set by the fetch thread before the future completes
+        volatile double fetchTime;
+
+        Prefetch(Date start, Date end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * state of a progressive query, owned by the batch task while it runs and by the agent otherwise
+     */
+    static final class ProgressiveQuery {
+        Request request;
+        SuperCluster cluster;
+        // true - if pointTuples only keep delta data, false - otherwise
+        boolean deltaOnly;
+        boolean analysis;
+        // time slice of the current batch
+        Date currentStart;
+        Date currentEnd;
+        // end of all time slices and days of each time slice
+        Date end;
+        int intervalDays;
+        long totalDays;
+        // time slices after the current one being fetched, in time order, cancelled by the agent while a batch runs
+        Deque<Prefetch> prefetches = new ConcurrentLinkedDeque<>();
+        // start of the next time slice to fetch ahead
+        Date prefetchStart;
+        List<PointTuple> pointTuples;
+        // order of points loaded by the current batch, only for analysis
+        Long[] orderMap;
+        // time of each stage of the current batch in seconds:
+        //   fetch - querying the data source, waitFetch - waiting for the data before clustering, cluster - clustering
+        double fetchTime;
+        double waitFetchTime;
+        double clusterTime;
+        List<Double> randIndexes = new ArrayList<>();
+        // stage times and memory (MB) after each batch, for experiments analysis
+        List<Double> fetchTimes = new ArrayList<>();
+        List<Double> waitFetchTimes = new ArrayList<>();
+        List<Double> clusterTimes = new ArrayList<>();
+        List<Double> treeCutTimes = new ArrayList<>();
+        List<Integer> usedMemory = new ArrayList<>();
+        List<Integer> totalMemory = new ArrayList<>();
+        // set by the agent when the query is cancelled or superseded, batches stop at the next check
+        volatile boolean cancelled = false;
+    }
+
+    /**
+     * cursor of a transfer or progress-transfer answered in chunks, the next chunk is written when the websocket
+     *   takes a frame, so a transfer holds one time slice of points and at most Constants.WS_WINDOW chunks at a time
+     */
+    static final class Transfer {
+        Request request;
+        boolean progressive;
+        // points of the current time slice, null if the slice is not loaded yet
+        List<PointTuple> pointTuples;
+        // next point to write and sequence number of the next chunk in the current time slice
+        int from;
+        int seq;
+        // progress-transfer only, time slice to load next or being written
+        Date currentStart;
+        Date currentEnd;
+        long totalDays;
+    }
+
     // states of this agent
     private ActorRef out;
     private Config config;
     private String keyword;
-    private PostgreSQL postgreSQL;
+    private IPointSource postgreSQL;
     private List<PointTuple> pointTuples;
     /**
      * maps from ordering of clusters to tid
@@ -43,22 +166,41 @@ public class Agent extends AbstractActor {
      */
     private Map<String, Long[]> orderMaps;
     /**
-     * map of SuperCluster instances
+     * cache of SuperCluster instances within the heap budget cluster.cache.budget shared by all agents
      * key - clusterKey
      * value - handle to SuperCluster instance
      */
-    private Map<String, SuperCluster> superClusters;
+    private ClusterCache superClusters;
+    /**
+     * map of SuperCluster instances shared with other agents through ClusterRegistry
+     * key - clusterKey
+     * value - key of the SuperCluster instance in ClusterRegistry
+     */
+    private Map<String, String> sharedClusterKeys;
     /**
-     * map of SuperCluster visiting counters
+     * map of queries waiting for SuperCluster instances being built on BuildExecutor
      * key - clusterKey
-     * value - counter, number of visiting times of the cluster
+     * value - queries to answer when the build is done
      */
-    private Map<String, Integer> superClustersHits;
+    private Map<String, List<Request>> pendingQueries;
+    // the progressive query being loaded batch by batch, null if none
+    private ProgressiveQuery progressiveQuery;
+    // clusters last answered to the client, for queries asking for diffs
+    private ClusterDiff answered = new ClusterDiff();
+    // responses waiting for the websocket to take the ones in flight, see Frame
+    private Deque<Object> outbox = new ArrayDeque<>();
+    // frames sent to the websocket flow and not taken yet, at most Constants.WS_WINDOW
+    private int inFlight = 0;
+    // transfer being written chunk by chunk as frames are taken, null if none
+    private Transfer transfer;
+    // true if out is a websocket flow acknowledging frames, otherwise responses are told to out as they are
+    private boolean windowed;
     /**
-     * Maximum number of SuperCluster instances being kept in memory
+     * SuperCluster instances being acquired from ClusterRegistry, until their BuildDone is handled
+     * key - clusterKey
+     * value - key of the SuperCluster instance in ClusterRegistry and its future
      */
-    private final int MAX_CLUSTERS = 30;
-    private static final DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private Map<String, Acquiring> acquiring;
     private Date start;
     private Date end;
     private int intervalDays;
@@ -69,9 +211,13 @@ public class Agent extends AbstractActor {
     public Agent(ActorRef out, Config config) {
         this.out = out;
         this.config = config;
-        this.superClusters = new HashMap<>();
-        this.superClustersHits = new HashMap<>();
+        this.windowed = out != null;
+        this.sharedClusterKeys = new HashMap<>();
+        this.pendingQueries = new HashMap<>();
+        this.acquiring = new HashMap<>();
         this.orderMaps = new HashMap<>();
+        // SimpleDateFormat is not thread-safe, agents are created on different threads
+        DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         try {
             this.start = sdf.parse(this.config.getString("progressive.start"));
             this.end = sdf.parse(this.config.getString("progressive.end"));
@@ -79,6 +225,7 @@ public class Agent extends AbstractActor {
             e.printStackTrace();
         }
         this.intervalDays = this.config.getInt("progressive.interval");
+        Constants.PROGRESSIVE_PREFETCH = this.config.getInt("progressive.prefetch");
         this.minZoom = this.config.getInt("cluster.min_zoom");
         this.maxZoom = this.config.getInt("cluster.max_zoom");
 
@@ -97,8 +244,34 @@ public class Agent extends AbstractActor {
         Constants.DB_USERNAME = this.config.getString("db.username");
         Constants.DB_PASSWORD = this.config.getString("db.password");
         Constants.DB_TABLENAME = this.config.getString("db.tablename");
+        Constants.DB_FETCH_SIZE = this.config.getInt("db.fetch.size");
+        Constants.DB_POOL_SIZE = this.config.getInt("db.pool.size");
+        Constants.DB_POOL_TIMEOUT = this.config.getLong("db.pool.timeout");
+        Constants.WIRE_COMPACT_BITS = this.config.getInt("wire.compact.bits");
+        Constants.WIRE_DEFLATE_MIN = this.config.getInt("wire.deflate.min");
+        Constants.WS_CHUNK_SIZE = this.config.getBytes("ws.chunk.size");
+        Constants.WS_WINDOW = this.config.getInt("ws.window");
+        Constants.POINT_CACHE_DIR = this.config.getString("point.cache.dir");
+        Constants.POINT_CACHE_BUDGET = this.config.getBytes("point.cache.budget");
+
+        Constants.DATA_SOURCE = this.config.getString("data.source");
+        Constants.SYNTHETIC_SIZE = this.config.getInt("synthetic.size");
+        Constants.SYNTHETIC_SEED = this.config.getLong("synthetic.seed");
+        if (this.start != null && this.end != null) {
+            Constants.SYNTHETIC_START = this.start;
+            Constants.SYNTHETIC_END = this.end;
+        }
 
         Constants.MAX_RESOLUTION = this.config.getInt("index.maxResolution");
+
+        Constants.CLUSTER_PARALLELISM = this.config.getInt("cluster.parallelism");
+        Constants.CLUSTER_CACHE_BUDGET = this.config.getBytes("cluster.cache.budget");
+        Constants.CLUSTER_SNAPSHOT_DIR = this.config.getString("cluster.snapshot.dir");
+        Constants.CLUSTER_SNAPSHOT_BUDGET = this.config.getBytes("cluster.snapshot.budget");
+        Constants.CLUSTER_BUILD_THREADS = this.config.getInt("cluster.build.threads");
+        Constants.CLUSTER_BUILD_QUEUE = this.config.getInt("cluster.build.queue");
+
+        this.superClusters = new ClusterCache(ClusterBudget.getInstance());
     }
 
     public static Props getProps() {
@@ -115,106 +288,174 @@ public class Agent extends AbstractActor {
                     }
                     handleRequest(request);
                 })
+                .match(BuildDone.class, this::handleBuildDone)
+                .match(BatchDone.class, this::handleBatchDone)
+                .match(Frame.Sent.class, sent -> {
+                    inFlight --;
+                    flush();
+                })
                 .matchAny(object -> MyLogger.error(this.getClass(), "Received unknown message: " + object.getClass()))
                 .build();
     }
 
-    private void buildGeoJsonArrayCluster(Cluster[] clusters, ArrayNode geoJsonArray) {
-        for (int i = 0; i < clusters.length; i ++) {
-            ObjectNode feature = JsonNodeFactory.instance.objectNode();
-            feature.put("type", "Feature");
-
-            ObjectNode properties = JsonNodeFactory.instance.objectNode();
-            properties.put("point_count", clusters[i].numPoints);
-            properties.put("point_count_abbreviated", clusters[i].numPoints);
-            properties.put("id", clusters[i].getId());
-            properties.put("expansionZoom", clusters[i].expansionZoom);
-            properties.put("zoom", clusters[i].zoom);
-            properties.put("diameter", clusters[i].diameter);
-            feature.set("properties", properties);
-
-            ObjectNode geometry = JsonNodeFactory.instance.objectNode();
-            ArrayNode coordinates = geometry.putArray("coordinates");
-            coordinates.add(clusters[i].getX());
-            coordinates.add(clusters[i].getY());
-            geometry.put("type", "Point");
-            feature.set("geometry", geometry);
-
-            geoJsonArray.add(feature);
+    @Override
+    public void postStop() {
+        // release SuperCluster instances held by this agent, in ClusterRegistry and in the budget shared by all agents
+        for (String clusterKey: new ArrayList<>(superClusters.keySet())) {
+            dropSuperCluster(clusterKey);
+        }
+        // BuildDone of these is not handled, it is still on its way or dropped with the mailbox,
+        //   release them when their builds are done instead
+        for (Acquiring pending: acquiring.values()) {
+            pending.future.thenAccept(cluster -> {
+                if (cluster != null) {
+                    ClusterRegistry.getInstance().release(pending.sharedKey, cluster);
+                }
+            });
         }
+        acquiring.clear();
     }
 
-    private void buildGeoJsonArrayPoint(List<PointTuple> points, ArrayNode geoJsonArray) {
-        for (int i = 0; i < points.size(); i ++) {
-            ObjectNode feature = JsonNodeFactory.instance.objectNode();
-            feature.put("type", "Feature");
-
-            ObjectNode properties = JsonNodeFactory.instance.objectNode();
-            feature.set("properties", properties);
+    /**
+     * @param clusters
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param generator
+     * @throws IOException
+     */
+    private void writeGeoJsonArrayCluster(Cluster[] clusters, int from, int to, JsonGenerator generator) throws IOException {
+        for (int i = from; i < to; i ++) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "Feature");
+
+            generator.writeObjectFieldStart("properties");
+            generator.writeNumberField("point_count", clusters[i].numPoints);
+            generator.writeNumberField("point_count_abbreviated", clusters[i].numPoints);
+            generator.writeNumberField("id", clusters[i].getId());
+            generator.writeNumberField("expansionZoom", clusters[i].expansionZoom);
+            generator.writeNumberField("zoom", clusters[i].zoom);
+            generator.writeNumberField("diameter", clusters[i].diameter);
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("geometry");
+            generator.writeArrayFieldStart("coordinates");
+            generator.writeNumber(clusters[i].getX());
+            generator.writeNumber(clusters[i].getY());
+            generator.writeEndArray();
+            generator.writeStringField("type", "Point");
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+    }
 
-            ObjectNode geometry = JsonNodeFactory.instance.objectNode();
-            ArrayNode coordinates = geometry.putArray("coordinates");
-            coordinates.add(points.get(i).getX());
-            coordinates.add(points.get(i).getY());
-            geometry.put("type", "Point");
-            feature.set("geometry", geometry);
+    /**
+     * @param points
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param generator
+     * @throws IOException
+     */
+    private void writeGeoJsonArrayPoint(List<PointTuple> points, int from, int to, JsonGenerator generator) throws IOException {
+        for (int i = from; i < to; i ++) {
+            PointTuple point = points.get(i);
+            generator.writeStartObject();
+            generator.writeStringField("type", "Feature");
+
+            generator.writeObjectFieldStart("properties");
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("geometry");
+            generator.writeArrayFieldStart("coordinates");
+            generator.writeNumber(point.getX());
+            generator.writeNumber(point.getY());
+            generator.writeEndArray();
+            generator.writeStringField("type", "Point");
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        }
+    }
 
-            geoJsonArray.add(feature);
+    /**
+     * @param points
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param generator
+     * @throws IOException
+     */
+    private void writeDataArrayPointWithId(List<PointTuple> points, int from, int to, JsonGenerator generator) throws IOException {
+        for (int i = from; i < to; i ++) {
+            PointTuple point = points.get(i);
+            generator.writeStartArray();
+            generator.writeNumber(point.getY());
+            generator.writeNumber(point.getX());
+            generator.writeNumber(point.getId());
+            generator.writeEndArray();
         }
     }
 
-    private void buildDataArrayPointWithId(List<PointTuple> points, ArrayNode dataArray) {
-        for (int i = 0; i < points.size(); i ++) {
-            ArrayNode pointTuple = JsonNodeFactory.instance.arrayNode();
-            pointTuple.add(points.get(i).getY());
-            pointTuple.add(points.get(i).getX());
-            pointTuple.add(points.get(i).getId());
-            dataArray.add(pointTuple);
+    /**
+     * @param points
+     * @param from - inclusive
+     * @param to - exclusive
+     * @param withId - true - [lat, lng, numPoints, id], false - [lat, lng, numPoints]
+     * @param generator
+     * @throws IOException
+     */
+    private void writeDataArrayPointWithCount(Cluster[] points, int from, int to, boolean withId, JsonGenerator generator) throws IOException {
+        for (int i = from; i < to; i ++) {
+            generator.writeStartArray();
+            generator.writeNumber(points[i].getY());
+            generator.writeNumber(points[i].getX());
+            generator.writeNumber(points[i].numPoints);
+            if (withId) {
+                generator.writeNumber(points[i].getId());
+            }
+            generator.writeEndArray();
         }
     }
 
-    private void buildDataArrayPointWithCount(Cluster[] points, ArrayNode dataArray) {
-        for (int i = 0; i < points.length; i ++) {
-            ArrayNode pointTuple = JsonNodeFactory.instance.arrayNode();
-            pointTuple.add(points[i].getY());
-            pointTuple.add(points[i].getX());
-            pointTuple.add(points[i].numPoints);
-            dataArray.add(pointTuple);
+    /**
+     * @param charsPerRecord - chars a record takes in the text about
+     * @return records in a chunk of a JSON response, Integer.MAX_VALUE if responses are never split
+     */
+    private static int chunkRecords(int charsPerRecord) {
+        if (Constants.WS_CHUNK_SIZE <= 0) {
+            return Integer.MAX_VALUE;
         }
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, Constants.WS_CHUNK_SIZE / charsPerRecord));
+    }
+
+    /**
+     * Write "chunk": {"seq": seq, "last": last} into a response sent in chunks,
+     *   the client renders each chunk as it comes, seq 0 starts a new result
+     *
+     * @param generator
+     * @param seq - from 0
+     * @param last - true for the last chunk of the response
+     * @throws IOException
+     */
+    private static void writeChunk(JsonGenerator generator, int seq, boolean last) throws IOException {
+        generator.writeObjectFieldStart("chunk");
+        generator.writeNumberField("seq", seq);
+        generator.writeBooleanField("last", last);
+        generator.writeEndObject();
     }
 
-    private byte[] buildDataBinary(Cluster[] points, int headerSize) {
-        int totalPoints = points.length;
-        byte[] data = new byte[headerSize + (DOUBLE_BYTES + DOUBLE_BYTES + INT_BYTES) * totalPoints]; // each point has [Y X numPoints]
+    /**
+     * @param points
+     * @param headerSize - bytes left before the data for the header
+     * @return the whole response, big-endian, positioned at its end
+     */
+    private ByteBuffer buildDataBinary(Cluster[] points, int headerSize) {
+        int totalPoints = points == null? 0: points.length;
+        ByteBuffer data = ByteBuffer.allocate(headerSize + (DOUBLE_BYTES + DOUBLE_BYTES + INT_BYTES) * totalPoints); // each point has [Y X numPoints]
+        data.position(headerSize);
         for (int i = 0; i < totalPoints; i ++) {
-            // start index j
-            int j = headerSize + i * (DOUBLE_BYTES + DOUBLE_BYTES + INT_BYTES);
-            Cluster point = points[i];
-            long y = Double.doubleToRawLongBits(point.getY());
-            data[j+0] = (byte) ((y >> 56) & 0xff);
-            data[j+1] = (byte) ((y >> 48) & 0xff);
-            data[j+2] = (byte) ((y >> 40) & 0xff);
-            data[j+3] = (byte) ((y >> 32) & 0xff);
-            data[j+4] = (byte) ((y >> 24) & 0xff);
-            data[j+5] = (byte) ((y >> 16) & 0xff);
-            data[j+6] = (byte) ((y >>  8) & 0xff);
-            data[j+7] = (byte) ((y >>  0) & 0xff);
-            j = j + DOUBLE_BYTES;
-            long x = Double.doubleToRawLongBits(point.getX());
-            data[j+0] = (byte) ((x >> 56) & 0xff);
-            data[j+1] = (byte) ((x >> 48) & 0xff);
-            data[j+2] = (byte) ((x >> 40) & 0xff);
-            data[j+3] = (byte) ((x >> 32) & 0xff);
-            data[j+4] = (byte) ((x >> 24) & 0xff);
-            data[j+5] = (byte) ((x >> 16) & 0xff);
-            data[j+6] = (byte) ((x >>  8) & 0xff);
-            data[j+7] = (byte) ((x >>  0) & 0xff);
-            j = j + DOUBLE_BYTES;
-            int numPoints = point.numPoints;
-            data[j+0] = (byte)((numPoints >> 24) & 0xff);
-            data[j+1] = (byte)((numPoints >> 16) & 0xff);
-            data[j+2] = (byte)((numPoints >>  8) & 0xff);
-            data[j+3] = (byte)((numPoints >>  0) & 0xff);
+            data.putDouble(points[i].getY());
+            data.putDouble(points[i].getX());
+            data.putInt(points[i].numPoints);
         }
         return data;
     }
@@ -222,7 +463,7 @@ public class Agent extends AbstractActor {
     /**
      * handle query request
      *  - if given cluster key does NOT exists,
-     *      do the loadData and clusterData first,
+     *      do the loadData and clusterData first on BuildExecutor, and answer the query when it is done,
      *  - query the cluster
      *
      * @param _request
@@ -239,29 +480,35 @@ public class Agent extends AbstractActor {
         }
         String clusterKey = query.clusterKey;
 
+        // if given cluster key is being built, answer the query when the build is done
+        if (pendingQueries.containsKey(clusterKey)) {
+            pendingQueries.get(clusterKey).add(_request);
+            return;
+        }
+
+        boolean progressive = !(query.algorithm == null || query.algorithm.equalsIgnoreCase("SuperCluster") || query.algorithm.equalsIgnoreCase("sc"));
+
+        // a query starting another progressive query supersedes the one in flight,
+        //   other queries (e.g. on a cached key of another layer) are answered meanwhile,
+        //   queries on the key in flight wait in pendingQueries above
+        if (this.progressiveQuery != null && progressive && !superClusters.containsKey(clusterKey)) {
+            MyLogger.info(this.getClass(), "request [" + _request.id + "] supersedes progressive query [" + this.progressiveQuery.request.id + "]");
+            cancelQueryProgressively();
+        }
 
         // handle non-progressive query
-        if (query.algorithm == null || query.algorithm.equalsIgnoreCase("SuperCluster") || query.algorithm.equalsIgnoreCase("sc")) {
+        if (!progressive) {
 
-            // if given cluster key does NOT exists, do the loadData and clusterData first,
+            // if given cluster key does NOT exists, get it from other agents or do the loadData and clusterData first,
             if (!superClusters.containsKey(clusterKey)) {
                 if (_request.keyword == null) {
                     // TODO - exception
                 }
-                boolean success = loadData(_request.keyword);
-                if (!success) {
-                    // TODO - exception
-                }
-
-                String clusterOrder = query.order == null ? "original" : query.order;
-                String indexType = query.indexType == null ? "KDTree" : query.indexType;
-                success = clusterData(query, false, false);
-                if (!success) {
-                    // TODO - exception
-                }
+                buildSharedSuperCluster(_request);
+            }
+            else {
+                answerClusterQuery(clusterKey, _request, "done", 100);
             }
-
-            answerClusterQuery(clusterKey, _request, "done", 100);
         }
         // handle progressive query
         else {
@@ -277,23 +524,39 @@ public class Agent extends AbstractActor {
     }
 
     private void answerClusterQuery(String clusterKey, Request _request, String status, int progress) {
-        MyTimer.temporaryTimer.clear();
-        MyTimer.temporaryTimer.put("treeCut", 0.0);
-        MyTimer.temporaryTimer.put("aggregate", 0.0);
+        MyTimer.clearTemporaryTimes();
         MyTimer.startTimer();
         Query query = _request.query;
 
         // Add hit to querying super cluster
-        superClustersHits.put(clusterKey, superClustersHits.get(clusterKey) + 1);
+        superClusters.hit(clusterKey);
 
         // query the cluster
         SuperCluster cluster = superClusters.get(clusterKey);
 
         Cluster[] clusters;
-        if (query.bbox == null) {
-            clusters = cluster.getClusters(query.zoom);
-        } else {
-            clusters = cluster.getClusters(query.bbox[0], query.bbox[1], query.bbox[2], query.bbox[3], query.zoom, query.treeCut, query.measure, query.pixels, query.bipartite, query.resX, query.resY);
+        // the cluster may be shared with other agents
+        synchronized (cluster) {
+            if (query.bbox == null) {
+                clusters = cluster.getClusters(query.zoom);
+            } else {
+                clusters = cluster.getClusters(query.bbox[0], query.bbox[1], query.bbox[2], query.bbox[3], query.zoom, query.treeCut, query.measure, query.pixels, query.bipartite, query.resX, query.resY);
+            }
+        }
+
+        // with diff, the client keeps clusters by id, answer only what changed since the last answer of the same view,
+        //   unless the diff is not smaller than the whole set
+        boolean withIds = _request.diff && !_request.format.equalsIgnoreCase("binary");
+        boolean diff = false;
+        if (withIds) {
+            diff = answered.diff(view(_request), clusters) && answered.size() < (clusters == null? 0: clusters.length);
+            if (diff) {
+                MyLogger.info(this.getClass(), "answering diff of " + answered.size() + " clusters instead of " + clusters.length);
+                clusters = answered.changed();
+            }
+        }
+        else {
+            answered.reset();
         }
 
         // if using binary format
@@ -302,182 +565,401 @@ public class Agent extends AbstractActor {
             // header refer to below
             int headerSize = INT_BYTES + 3 * DOUBLE_BYTES;
 
-            byte[] binaryData = buildDataBinary(clusters, headerSize);
+            ByteBuffer binaryData = buildDataBinary(clusters, headerSize);
 
             MyTimer.stopTimer();
             double totalTime = MyTimer.durationSeconds();
-            double treeCutTime = MyTimer.temporaryTimer.get("treeCut");
-            double aggregateTime = MyTimer.temporaryTimer.get("aggregate");
+            double treeCutTime = MyTimer.getTemporaryTime("treeCut");
+            double aggregateTime = MyTimer.getTemporaryTime("aggregate");
 
             // construct final response
             //  progress  totalTime  treeCut   aggTime   binary data payload
             // | 4 BYTES | 8 BYTES | 8 BYTES | 8 BYTES | ...
-            // header 1: progress
-            int j = 0;
-            binaryData[j+0] = (byte)((progress >> 24) & 0xff);
-            binaryData[j+1] = (byte)((progress >> 16) & 0xff);
-            binaryData[j+2] = (byte)((progress >>  8) & 0xff);
-            binaryData[j+3] = (byte)((progress >>  0) & 0xff);
-            // header 2: totalTime
-            j = j + INT_BYTES;
-            long totalTimeL = Double.doubleToRawLongBits(totalTime);
-            binaryData[j+0] = (byte) ((totalTimeL >> 56) & 0xff);
-            binaryData[j+1] = (byte) ((totalTimeL >> 48) & 0xff);
-            binaryData[j+2] = (byte) ((totalTimeL >> 40) & 0xff);
-            binaryData[j+3] = (byte) ((totalTimeL >> 32) & 0xff);
-            binaryData[j+4] = (byte) ((totalTimeL >> 24) & 0xff);
-            binaryData[j+5] = (byte) ((totalTimeL >> 16) & 0xff);
-            binaryData[j+6] = (byte) ((totalTimeL >>  8) & 0xff);
-            binaryData[j+7] = (byte) ((totalTimeL >>  0) & 0xff);
-            j = j + DOUBLE_BYTES;
-            long treeCutTimeL = Double.doubleToRawLongBits(treeCutTime);
-            binaryData[j+0] = (byte) ((treeCutTimeL >> 56) & 0xff);
-            binaryData[j+1] = (byte) ((treeCutTimeL >> 48) & 0xff);
-            binaryData[j+2] = (byte) ((treeCutTimeL >> 40) & 0xff);
-            binaryData[j+3] = (byte) ((treeCutTimeL >> 32) & 0xff);
-            binaryData[j+4] = (byte) ((treeCutTimeL >> 24) & 0xff);
-            binaryData[j+5] = (byte) ((treeCutTimeL >> 16) & 0xff);
-            binaryData[j+6] = (byte) ((treeCutTimeL >>  8) & 0xff);
-            binaryData[j+7] = (byte) ((treeCutTimeL >>  0) & 0xff);
-            j = j + DOUBLE_BYTES;
-            long aggregateTimeL = Double.doubleToRawLongBits(aggregateTime);
-            binaryData[j+0] = (byte) ((aggregateTimeL >> 56) & 0xff);
-            binaryData[j+1] = (byte) ((aggregateTimeL >> 48) & 0xff);
-            binaryData[j+2] = (byte) ((aggregateTimeL >> 40) & 0xff);
-            binaryData[j+3] = (byte) ((aggregateTimeL >> 32) & 0xff);
-            binaryData[j+4] = (byte) ((aggregateTimeL >> 24) & 0xff);
-            binaryData[j+5] = (byte) ((aggregateTimeL >> 16) & 0xff);
-            binaryData[j+6] = (byte) ((aggregateTimeL >>  8) & 0xff);
-            binaryData[j+7] = (byte) ((aggregateTimeL >>  0) & 0xff);
+            binaryData.putInt(0, progress);
+            binaryData.putDouble(INT_BYTES, totalTime);
+            binaryData.putDouble(INT_BYTES + DOUBLE_BYTES, treeCutTime);
+            binaryData.putDouble(INT_BYTES + 2 * DOUBLE_BYTES, aggregateTime);
 
             respond(binaryData);
         }
-        // else using Json format
-        else {
-            // construct the response Json and return
-            JsonNode response = Json.toJson(_request);
+        // if using compact binary format
+        else if (CompactBinary.accepts(_request.format)) {
+
+            byte[] binaryData = CompactBinary.encode(clusters, _request.format, Constants.WIRE_COMPACT_BITS,
+                    withIds, diff? answered.removed: null);
 
-            ObjectNode result = JsonNodeFactory.instance.objectNode();
-            ArrayNode data = result.putArray("data");
-
-            if (clusters != null) {
-                switch (_request.format) {
-                    case "geojson":
-                        buildGeoJsonArrayCluster(clusters, data);
-                        break;
-                    case "array":
-                        buildDataArrayPointWithCount(clusters, data);
-                        break;
-                }
-            }
             MyTimer.stopTimer();
             double totalTime = MyTimer.durationSeconds();
-            double treeCutTime = MyTimer.temporaryTimer.get("treeCut");
-            double aggregateTime = MyTimer.temporaryTimer.get("aggregate");
+            double treeCutTime = MyTimer.getTemporaryTime("treeCut");
+            double aggregateTime = MyTimer.getTemporaryTime("aggregate");
 
-            ((ObjectNode) response).put("status", status);
-            ((ObjectNode) response).put("progress", progress);
-            ((ObjectNode) response).set("result", result);
-            ((ObjectNode) response).put("totalTime", totalTime);
-            ((ObjectNode) response).put("treeCutTime", treeCutTime);
-            ((ObjectNode) response).put("aggregateTime", aggregateTime);
-            respond(response);
+            CompactBinary.writeHeader(binaryData, progress, totalTime, treeCutTime, aggregateTime);
+            respond(binaryData);
+        }
+        // else using Json format
+        else {
+            // construct the response Json and return, clusters are written straight into the text,
+            //   in chunks of about Constants.WS_CHUNK_SIZE chars if longer, removed ids go with the first chunk
+            try {
+                int totalClusters = clusters == null? 0: clusters.length;
+                int chunkSize = chunkRecords(_request.format.equals("geojson")? 200: 48);
+                boolean chunked = totalClusters > chunkSize;
+                List<JsonResponse> responses = new ArrayList<>();
+                int from = 0;
+                do {
+                    int to = (int) Math.min(totalClusters, (long) from + chunkSize);
+                    JsonResponse response = new JsonResponse(_request, 256 + 64L * (to - from));
+                    JsonGenerator generator = response.generator();
+                    generator.writeStringField("status", status);
+                    generator.writeNumberField("progress", progress);
+                    generator.writeObjectFieldStart("result");
+                    generator.writeFieldName("data");
+                    generator.writeStartArray();
+                    switch (_request.format) {
+                        case "geojson":
+                            writeGeoJsonArrayCluster(clusters, from, to, generator);
+                            break;
+                        case "array":
+                            writeDataArrayPointWithCount(clusters, from, to, withIds, generator);
+                            break;
+                    }
+                    generator.writeEndArray();
+                    if (withIds) {
+                        generator.writeBooleanField("diff", diff);
+                        if (diff && responses.isEmpty()) {
+                            generator.writeArrayFieldStart("removed");
+                            for (Integer id: answered.removed) {
+                                generator.writeNumber(id);
+                            }
+                            generator.writeEndArray();
+                        }
+                    }
+                    if (chunked) {
+                        writeChunk(generator, responses.size(), to == totalClusters);
+                    }
+                    generator.writeEndObject();
+                    responses.add(response);
+                    from = to;
+                } while (from < totalClusters);
+
+                MyTimer.stopTimer();
+                double totalTime = MyTimer.durationSeconds();
+                double treeCutTime = MyTimer.getTemporaryTime("treeCut");
+                double aggregateTime = MyTimer.getTemporaryTime("aggregate");
+
+                for (JsonResponse response: responses) {
+                    JsonGenerator generator = response.generator();
+                    generator.writeNumberField("totalTime", totalTime);
+                    generator.writeNumberField("treeCutTime", treeCutTime);
+                    generator.writeNumberField("aggregateTime", aggregateTime);
+                    respond(response.finish());
+                }
+            } catch (IOException e) {
+                MyLogger.error(this.getClass(), "writing response failed: " + e.getMessage());
+                answered.reset();
+                respond(buildCmdResponse(_request, "query", "writing response failed", "error"));
+            }
         }
     }
 
-    private void handleQueryProgressively(Request _request) {
+    /**
+     * @param _request
+     * @return everything deciding which clusters answer the query, the same view the client kept clusters for
+     */
+    private static String view(Request _request) {
+        Query query = _request.query;
+        return query.clusterKey + "|" + _request.format + "|" + query.zoom + "|" + Arrays.toString(query.bbox)
+                + "|" + query.treeCut + "|" + query.measure + "|" + query.pixels + "|" + query.bipartite
+                + "|" + query.resX + "|" + query.resY;
+    }
 
-        // for experiments analysis
-        MyTimer.progressTimer.clear();
-        MyTimer.progressTimer.put("clusterTime",  new ArrayList<>());
-        MyTimer.progressTimer.put("treeCutTime", new ArrayList<>());
-        MyMemory.progressUsedMemory.clear();
-        MyMemory.porgressTotalMemory.clear();
+    /**
+     * start a progressive query, the data is loaded and clustered one time slice (batch) after another on BuildExecutor,
+     *   the query is answered after each batch
+     *
+     * @param _request
+     */
+    private void handleQueryProgressively(Request _request) {
 
         Query query = _request.query;
         String clusterKey = query.clusterKey;
         if (_request.keyword == null) {
             // TODO - exception
         }
-        this.pointTuples = null;
-        Date currentStart = new Date(this.start.getTime());
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(currentStart);
-        calendar.add(Calendar.DATE, this.intervalDays);
-        Date currentEnd = calendar.getTime();
-        long totalDays = (this.end.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
-        List<Double> randIndexes = new ArrayList<>();
-        while (currentStart.before(this.end)) {
+        ProgressiveQuery progressive = new ProgressiveQuery();
+        progressive.request = _request;
+        progressive.analysis = _request.analysis != null;
+        progressive.deltaOnly = true;
+        if (query.algorithm.equalsIgnoreCase("SuperCluster") || query.algorithm.equalsIgnoreCase("sc")
+                || query.algorithm.equalsIgnoreCase("SuperClusterInBatch") || query.algorithm.equalsIgnoreCase("scib")) {
+            progressive.deltaOnly = false;
+        }
+        progressive.cluster = getSuperCluster(query, progressive.analysis);
+        progressive.end = this.end;
+        progressive.intervalDays = this.intervalDays;
+        progressive.currentStart = new Date(this.start.getTime());
+        progressive.currentEnd = addDays(progressive.currentStart, progressive.intervalDays);
+        progressive.prefetchStart = progressive.currentEnd;
+        progressive.totalDays = (this.end.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
+
+        // other queries on this cluster key wait until all batches are done
+        pendingQueries.put(clusterKey, new ArrayList<>());
+        this.progressiveQuery = progressive;
+        submitBatch(progressive);
+    }
+
+    /**
+     * run the current batch of given progressive query on BuildExecutor, BatchDone comes back when it is done
+     *
+     * @param progressive
+     */
+    private void submitBatch(ProgressiveQuery progressive) {
+        ActorRef self = self();
+        boolean accepted = BuildExecutor.getInstance().submit(() -> {
+            boolean success = false;
+            try {
+                success = loadBatch(progressive);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                self.tell(new BatchDone(progressive, success), ActorRef.noSender());
+            }
+        });
+        if (!accepted) {
+            // the cluster only has part of the data, drop it so that the next query starts over
+            String clusterKey = progressive.request.query.clusterKey;
+            this.progressiveQuery = null;
+            dropSuperCluster(clusterKey);
+            respond(buildBusyResponse(progressive.request));
+            List<Request> pending = pendingQueries.remove(clusterKey);
+            if (pending != null) {
+                for (Request request: pending) {
+                    respond(buildBusyResponse(request));
+                }
+            }
+        }
+    }
+
+    /**
+     * load data of the current batch and cluster it, runs on BuildExecutor and touches no state of the agent
+     *
+     * @param progressive
+     * @return false if loading data or clustering fails, a time slice without data is not a failure
+     */
+    private boolean loadBatch(ProgressiveQuery progressive) {
+        // cancelled while waiting in the queue
+        if (progressive.cancelled) {
+            return false;
+        }
+        Request _request = progressive.request;
+        Query query = _request.query;
+
+        // take the current time slice from the prefetched ones, or fetch it now
+        List<PointTuple> deltaPointTuples;
+        long start = System.nanoTime();
+        Prefetch prefetch = progressive.prefetches.poll();
+        if (prefetch != null) {
+            try {
+                deltaPointTuples = prefetch.future.join();
+            } catch (CancellationException e) {
+                // the query is cancelled
+                return false;
+            }
+            progressive.fetchTime = prefetch.fetchTime;
+        }
+        else {
+            deltaPointTuples = queryPointTuples(_request.keyword, progressive.currentStart, progressive.currentEnd);
+            progressive.fetchTime = (double) (System.nanoTime() - start) / 1000000000.0;
+        }
+        progressive.waitFetchTime = (double) (System.nanoTime() - start) / 1000000000.0;
+
+        // fetch the next time slices while clustering this one
+        prefetchSlices(progressive);
 
-            long progress = (currentEnd.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
-            progress = 100 * progress / totalDays;
+        if (deltaPointTuples == null) {
+            return false;
+        }
+        for (int i = 0; i < deltaPointTuples.size(); i ++) {
+            deltaPointTuples.get(i).setId(i);
+        }
+        if (progressive.pointTuples == null || progressive.deltaOnly) {
+            progressive.pointTuples = deltaPointTuples;
+        }
+        else {
+            progressive.pointTuples.addAll(deltaPointTuples);
+        }
 
-            // true - if pointTuples only keep delta data, false - otherwise
-            boolean deltaOnly = true;
-            if (query.algorithm.equalsIgnoreCase("SuperCluster") || query.algorithm.equalsIgnoreCase("sc")
-                    || query.algorithm.equalsIgnoreCase("SuperClusterInBatch") || query.algorithm.equalsIgnoreCase("scib")) {
-                deltaOnly = false;
+        boolean success = true;
+        start = System.nanoTime();
+        // queries on the cluster are answered on the actor thread between batches
+        synchronized (progressive.cluster) {
+            if (progressive.analysis) {
+                Long[] orderMap = new Long[progressive.pointTuples.size()];
+                double[][] points = orderPoints(progressive.pointTuples, query.order, orderMap);
+                if (points == null) {
+                    success = false;
+                }
+                else {
+                    progressive.cluster.load(points);
+                    progressive.orderMap = orderMap;
+                }
             }
-            boolean success = loadNewData(_request.keyword, currentStart, currentEnd, deltaOnly);
-            if (!success) {
-                // TODO - exception
+            // when no analysis, use pointTuples list directly for loading, nothing to load for a time slice without data
+            else if (!progressive.pointTuples.isEmpty()) {
+                progressive.cluster.load(progressive.pointTuples);
             }
+        }
+        long end = System.nanoTime();
+        progressive.clusterTime = (double) (end - start) / 1000000000.0;
+        if (success && progressive.deltaOnly) {
+            PointTupleListFactory.recycle(progressive.pointTuples);
+        }
+        return success;
+    }
 
-            String clusterOrder = query.order == null ? "original" : query.order;
-            String indexType = query.indexType == null ? "KDTree" : query.indexType;
-            MyTimer.startTimer();
-            success = clusterData(query, deltaOnly, _request.analysis != null);
-            MyTimer.stopTimer();
-            MyTimer.progressTimer.get("clusterTime").add(MyTimer.durationSeconds());
-            MyMemory.progressUsedMemory.add(MyMemory.getUsedMemory());
-            MyMemory.porgressTotalMemory.add(MyMemory.getTotalMemory());
-            if (!success) {
-                // TODO - exception
+    /**
+     * keep up to Constants.PROGRESSIVE_PREFETCH time slices after the current one being fetched,
+     *   runs on BuildExecutor and touches no state of the agent
+     *
+     * @param progressive
+     */
+    private void prefetchSlices(ProgressiveQuery progressive) {
+        String keyword = progressive.request.keyword;
+        while (progressive.prefetches.size() < Constants.PROGRESSIVE_PREFETCH
+                && progressive.prefetchStart.before(progressive.end) && !progressive.cancelled) {
+            Prefetch prefetch = new Prefetch(progressive.prefetchStart, addDays(progressive.prefetchStart, progressive.intervalDays));
+            prefetch.future = BuildExecutor.getInstance().prefetch(() -> {
+                // cancelled before the fetch starts, a fetch already reading rows runs to its end
+                if (progressive.cancelled) {
+                    return null;
+                }
+                long start = System.nanoTime();
+                List<PointTuple> pointTuples = queryPointTuples(keyword, prefetch.start, prefetch.end);
+                prefetch.fetchTime = (double) (System.nanoTime() - start) / 1000000000.0;
+                return pointTuples;
+            });
+            progressive.prefetches.add(prefetch);
+            progressive.prefetchStart = prefetch.end;
+            // cancelled while adding it, the agent may have missed it
+            if (progressive.cancelled) {
+                prefetch.future.cancel(false);
             }
+        }
+    }
 
-            MyTimer.startTimer();
-            answerClusterQuery(clusterKey, _request, "in-progress", (int) progress);
-            MyTimer.stopTimer();
-            MyTimer.progressTimer.get("treeCutTime").add(MyTimer.durationSeconds());
+    private static Date addDays(Date date, int days) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        calendar.add(Calendar.DATE, days);
+        return calendar.getTime();
+    }
 
-            if (_request.analysis != null) {
-                Analysis analysis = _request.analysis;
-                if (analysis.arguments.length != 3) {
-                    // TODO - exception
+    /**
+     * answer the progressive query with the batch just loaded, and start the next batch
+     *
+     * @param done
+     */
+    private void handleBatchDone(BatchDone done) {
+        ProgressiveQuery progressive = done.progressive;
+        // already cleaned up by cancelQueryProgressively
+        if (progressive.cancelled) {
+            MyLogger.info(this.getClass(), "progressive query [" + progressive.request.id + "] stopped after cancellation");
+            return;
+        }
+        Request _request = progressive.request;
+        String clusterKey = _request.query.clusterKey;
+        // the cluster misses this batch, drop it with the query so that the next query starts over
+        if (!done.success) {
+            MyLogger.error(this.getClass(), "progressive query [" + _request.id + "] failed on the batch from " + progressive.currentStart);
+            List<Request> pending = pendingQueries.get(clusterKey);
+            cancelQueryProgressively();
+            String message = "loading data failed for the batch from " + progressive.currentStart;
+            respond(buildCmdResponse(_request, "query", message, "error"));
+            if (pending != null) {
+                for (Request request: pending) {
+                    respond(buildCmdResponse(request, "query", message, "error"));
                 }
-                String clusterKey1 = analysis.arguments[0];
-                String clusterKey2 = analysis.arguments[1];
-                int zoom = Integer.valueOf(analysis.arguments[2]);
+            }
+            return;
+        }
 
-                boolean adjusted = analysis.objective.equalsIgnoreCase("adjusted-rand-index")? true: false;
-                double randIndex = randIndex(clusterKey1, clusterKey2, zoom, adjusted);
-                randIndexes.add(randIndex);
+        // the cluster may have been evicted by other builds during the batch
+        if (superClusters.get(clusterKey) != progressive.cluster) {
+            dropSuperCluster(clusterKey);
+            superClusters.put(clusterKey, progressive.cluster);
+        }
+        if (progressive.analysis && progressive.orderMap != null) {
+            putOrderMap(clusterKey, progressive.orderMap, progressive.deltaOnly);
+            progressive.orderMap = null;
+        }
+        // the cluster has grown, keep the cache within its budget
+        evictSuperClusters(clusterKey);
 
-                JsonNode response = Json.toJson(_request);
-                response = Json.toJson(_request);
-                ((ObjectNode) response).put("type", "analysis");
-                ((ObjectNode) response).put("id", "console");
-                ObjectNode result = JsonNodeFactory.instance.objectNode();
-                result.put("randIndex", randIndex);
-                ((ObjectNode) response).put("status", "done");
-                ((ObjectNode) response).set("result", result);
-                respond(response);
+        progressive.fetchTimes.add(progressive.fetchTime);
+        progressive.waitFetchTimes.add(progressive.waitFetchTime);
+        progressive.clusterTimes.add(progressive.clusterTime);
+        progressive.usedMemory.add(MyMemory.getUsedMemory());
+        progressive.totalMemory.add(MyMemory.getTotalMemory());
+
+        long progress = (progressive.currentEnd.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
+        progress = 100 * progress / progressive.totalDays;
+
+        MyTimer.startTimer();
+        answerClusterQuery(clusterKey, _request, "in-progress", (int) progress);
+        MyTimer.stopTimer();
+        progressive.treeCutTimes.add(MyTimer.durationSeconds());
+
+        if (progressive.analysis) {
+            Analysis analysis = _request.analysis;
+            if (analysis.arguments.length != 3) {
+                // TODO - exception
             }
+            String clusterKey1 = analysis.arguments[0];
+            String clusterKey2 = analysis.arguments[1];
+            int zoom = Integer.valueOf(analysis.arguments[2]);
+
+            boolean adjusted = analysis.objective.equalsIgnoreCase("adjusted-rand-index")? true: false;
+            double randIndex = randIndex(clusterKey1, clusterKey2, zoom, adjusted);
+            progressive.randIndexes.add(randIndex);
 
-            currentStart = currentEnd;
-            calendar = Calendar.getInstance();
-            calendar.setTime(currentStart);
-            calendar.add(Calendar.DATE, this.intervalDays);
-            currentEnd = calendar.getTime();
+            JsonNode response = Json.toJson(_request);
+            ((ObjectNode) response).put("type", "analysis");
+            ((ObjectNode) response).put("id", "console");
+            ObjectNode result = JsonNodeFactory.instance.objectNode();
+            result.put("randIndex", randIndex);
+            ((ObjectNode) response).put("status", "done");
+            ((ObjectNode) response).set("result", result);
+            respond(response);
         }
 
+        progressive.currentStart = progressive.currentEnd;
+        progressive.currentEnd = addDays(progressive.currentStart, progressive.intervalDays);
+
+        if (progressive.currentStart.before(progressive.end)) {
+            submitBatch(progressive);
+        }
+        else {
+            finishQueryProgressively(progressive);
+        }
+    }
+
+    /**
+     * all batches of given progressive query are done, answer the queries waiting for it
+     *
+     * @param progressive
+     */
+    private void finishQueryProgressively(ProgressiveQuery progressive) {
+        Request _request = progressive.request;
+        String clusterKey = _request.query.clusterKey;
+        this.progressiveQuery = null;
+
         // finally output the sequence of rand index values in one response
-        if (_request.analysis != null) {
+        if (progressive.analysis) {
             JsonNode response = Json.toJson(_request);
             ((ObjectNode) response).put("type", "analysis");
             ((ObjectNode) response).put("id", "console");
             ArrayNode result = ((ObjectNode) response).putArray("result");
-            for (Double randIndex : randIndexes) {
+            for (Double randIndex : progressive.randIndexes) {
                 result.add(randIndex);
             }
             ((ObjectNode) response).put("status", "done");
@@ -489,25 +971,77 @@ public class Agent extends AbstractActor {
         System.out.println("Progressive Query: ");
         System.out.println("keyword: " + _request.keyword);
         System.out.println("algorithm: " + _request.query.algorithm);
+        System.out.println("fetching time for each batch (prefetch = " + Constants.PROGRESSIVE_PREFETCH + "): ");
+        for (double time: progressive.fetchTimes) {
+            System.out.println(time);
+        }
+        System.out.println("waiting time for fetching for each batch: ");
+        for (double time: progressive.waitFetchTimes) {
+            System.out.println(time);
+        }
         System.out.println("clustering time for each batch: ");
-        for (double time: MyTimer.progressTimer.get("clusterTime")) {
+        for (double time: progressive.clusterTimes) {
             System.out.println(time);
         }
         System.out.println("Tree-cut time for each batch: ");
-        for (double time: MyTimer.progressTimer.get("treeCutTime")) {
+        for (double time: progressive.treeCutTimes) {
             System.out.println(time);
         }
         System.out.println("memory usage until each batch (MB): ");
-        for (int i = 0; i < MyMemory.progressUsedMemory.size(); i ++) {
-            System.out.println(MyMemory.progressUsedMemory.get(i) + ",  " + MyMemory.porgressTotalMemory.get(i));
+        for (int i = 0; i < progressive.usedMemory.size(); i ++) {
+            System.out.println(progressive.usedMemory.get(i) + ",  " + progressive.totalMemory.get(i));
         }
-        if (_request.analysis != null) {
+        if (progressive.analysis) {
             System.out.println("Rand index values for each batch: ");
-            for (double randIndex : randIndexes) {
+            for (double randIndex : progressive.randIndexes) {
                 System.out.println(randIndex);
             }
         }
         System.out.println("========== =================== ==========");
+
+        List<Request> pending = pendingQueries.remove(clusterKey);
+        if (pending != null) {
+            for (Request request: pending) {
+                answerClusterQuery(clusterKey, request, "done", 100);
+            }
+        }
+    }
+
+    /**
+     * cancel the progressive query in flight, the batch running now is the last one,
+     *   time slices fetched ahead and not started yet are not fetched,
+     *   its partial cluster is dropped so that the next query on it starts over,
+     *   queries waiting for it are superseded too and not answered
+     */
+    private void cancelQueryProgressively() {
+        ProgressiveQuery progressive = this.progressiveQuery;
+        if (progressive == null) {
+            return;
+        }
+        this.progressiveQuery = null;
+        progressive.cancelled = true;
+        for (Prefetch prefetch: progressive.prefetches) {
+            prefetch.future.cancel(false);
+        }
+        String clusterKey = progressive.request.query.clusterKey;
+        if (superClusters.get(clusterKey) == progressive.cluster) {
+            dropSuperCluster(clusterKey);
+        }
+        pendingQueries.remove(clusterKey);
+    }
+
+    /**
+     * handle cancel request, cancel the progressive query in flight with the same request id
+     *
+     * @param _request
+     */
+    private void handleCancel(Request _request) {
+        if (this.progressiveQuery == null || !Objects.equals(this.progressiveQuery.request.id, _request.id)) {
+            respond(buildCmdResponse(_request, "cancel", "no query in progress for id = " + _request.id, "done"));
+            return;
+        }
+        cancelQueryProgressively();
+        respond(buildCmdResponse(_request, "cancel", "query cancelled for id = " + _request.id, "done"));
     }
 
     private void handleCmds(Request _request) {
@@ -528,6 +1062,58 @@ public class Agent extends AbstractActor {
         }
     }
 
+    /**
+     * the point source is shared by the actor thread and build tasks of this agent
+     *
+     * @return
+     */
+    private synchronized IPointSource pointSource() {
+        if (postgreSQL == null) {
+            postgreSQL = PointSourceCreator.createPointSource();
+        }
+        return postgreSQL;
+    }
+
+    private List<PointTuple> queryPointTuples(String keyword) {
+        IPointSource source = pointSource();
+        synchronized (source) {
+            return source.queryPointTuplesForKeyword(keyword);
+        }
+    }
+
+    /**
+     * stream coordinates for given keyword from the point source in chunks of Constants.DB_FETCH_SIZE,
+     *   all tweets ("%") are bulk loaded by queryCoordinatesForTime
+     *
+     * @param keyword
+     * @return null if the query fails
+     */
+    private CoordinateBuffer queryCoordinates(String keyword) {
+        IPointSource source = pointSource();
+        CoordinateBuffer coordinates = new CoordinateBuffer();
+        synchronized (source) {
+            if (keyword.equals("%")) {
+                return source.queryCoordinatesForTime(this.start, this.end);
+            }
+            if (source.queryPointTuplesForKeyword(keyword, Constants.DB_FETCH_SIZE, coordinates::addAll) < 0) {
+                return null;
+            }
+        }
+        return coordinates;
+    }
+
+    private List<PointTuple> queryPointTuples(String keyword, Date start, Date end) {
+        IPointSource source = pointSource();
+        synchronized (source) {
+            if (keyword.equals("%")) {
+                return source.queryPointTuplesForTime(start, end);
+            }
+            else {
+                return source.queryPointTuplesForKeywordAndTime(keyword, start, end);
+            }
+        }
+    }
+
     /**
      * load data for given keyword
      *
@@ -537,10 +1123,7 @@ public class Agent extends AbstractActor {
         if (this.keyword != null && this.keyword.equals(keyword)) {
             return true;
         }
-        if (postgreSQL == null) {
-            postgreSQL = new PostgreSQL();
-        }
-        pointTuples = postgreSQL.queryPointTuplesForKeyword(keyword);
+        pointTuples = queryPointTuples(keyword);
         if (pointTuples == null) {
             return false;
         }
@@ -557,16 +1140,7 @@ public class Agent extends AbstractActor {
      * @return
      */
     private boolean loadNewData(String keyword, Date start, Date end, boolean deltaOnly) {
-        if (postgreSQL == null) {
-            postgreSQL = new PostgreSQL();
-        }
-        List<PointTuple> deltaPointTuples;
-        if (keyword.equals("%")) {
-            deltaPointTuples = postgreSQL.queryPointTuplesForTime(start, end);
-        }
-        else {
-            deltaPointTuples = postgreSQL.queryPointTuplesForKeywordAndTime(keyword, start, end);
-        }
+        List<PointTuple> deltaPointTuples = queryPointTuples(keyword, start, end);
         if (deltaPointTuples == null) {
             return false;
         }
@@ -583,41 +1157,20 @@ public class Agent extends AbstractActor {
     }
 
     /**
-     * cluster data for given order and name it with given key
+     * cluster data loaded by the "load" command and name it with given key
      *
      * @param query - Query
-     * @param deltaOnly - valid only for progressive queries, true - if pointTuples only keep delta data, false - otherwise
-     * @param analysis - true - if we need to analysis the rand-index of clustering results, false - otherwise
      * @return
      */
-    private boolean clusterData(Query query, boolean deltaOnly, boolean analysis) {
-
-        if (analysis) {
-            double[][] points = orderPoints(query.clusterKey, query.order, deltaOnly);
-            if (points == null) {
-                return false;
-            }
-            else {
-                SuperCluster cluster = getSuperCluster(query, true);
-                cluster.load(points);
-                if (deltaOnly) {
-                    PointTupleListFactory.recycle(this.pointTuples);
-                }
-            }
-        }
-        // when no analysis, use pointTuples list directly for loading
-        else {
-            if (this.pointTuples == null || this.pointTuples.isEmpty()) {
-                return false;
-            }
-            else {
-                SuperCluster cluster = getSuperCluster(query, false);
-                cluster.load(this.pointTuples);
-                if (deltaOnly) {
-                    PointTupleListFactory.recycle(this.pointTuples);
-                }
-            }
+    private boolean clusterData(Query query) {
+        if (this.pointTuples == null || this.pointTuples.isEmpty()) {
+            return false;
         }
+        SuperCluster cluster = getSuperCluster(query, false);
+        cluster.load(this.pointTuples);
+
+        // the cluster has grown, keep the cache within its budget
+        evictSuperClusters(query.clusterKey);
 
         return true;
     }
@@ -628,67 +1181,195 @@ public class Agent extends AbstractActor {
             cluster = superClusters.get(query.clusterKey);
         }
         else {
-            // if too many cached clusters, replace the least used one
-            if (superClusters.size() > MAX_CLUSTERS) {
-                String leastUsedClusterKey = null;
-                int leastHit = Integer.MAX_VALUE;
-                for (Map.Entry<String, Integer> map: this.superClustersHits.entrySet()) {
-                    if (map.getValue() < leastHit) {
-                        leastHit = map.getValue();
-                        leastUsedClusterKey = map.getKey();
-                    }
-                }
-                if (leastUsedClusterKey != null) {
-                    superClusters.remove(leastUsedClusterKey);
+            cluster = createSuperCluster(query, analysis);
+            superClusters.put(query.clusterKey, cluster);
+        }
+        return cluster;
+    }
+
+    /**
+     * create an empty SuperCluster of the algorithm of given query, touches no state of the agent
+     *
+     * @param query
+     * @param analysis
+     * @return
+     */
+    private SuperCluster createSuperCluster(Query query, boolean analysis) {
+        String algorithm = query.algorithm == null? "SuperCluster": query.algorithm;
+        switch (algorithm.toLowerCase()) {
+            case "isupercluster":
+            case "isc":
+                return new iSuperCluster(this.minZoom, this.maxZoom, analysis);
+            case "aisupercluster":
+            case "aisc":
+                return new AiSuperCluster(this.minZoom, this.maxZoom, analysis);
+            case "bisupercluster":
+            case "bisc":
+                return new BiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
+            case "lbisupercluster":
+            case "lbisc":
+                return new LBiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
+            case "sbisupercluster":
+            case "sbic":
+                return new SBiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
+            case "dataexplorer":
+            case "de":
+                return new DataExplorer(this.minZoom, this.maxZoom, query.indexType, analysis);
+            case "dataaggregator":
+            case "da":
+                return new DataAggregator(this.minZoom, this.maxZoom, query.indexType, analysis);
+            case "quadtreeaggregator":
+            case "qta":
+                return new QuadTreeAggregator(this.minZoom, this.maxZoom, query.resX, query.resY);
+            case "gquadtreeaggregator":
+            case "gqta":
+                return new GQuadTreeAggregator(this.minZoom, this.maxZoom, query.resX, query.resY);
+            default:
+                return new SuperCluster(this.minZoom, this.maxZoom, query.indexType);
+        }
+    }
+
+    /**
+     * get the SuperCluster of a non-progressive query from ClusterRegistry on BuildExecutor,
+     *   if no agent has built it, build it with the data of this agent,
+     *   the query is answered when BuildDone comes back
+     *
+     * @param _request
+     */
+    private void buildSharedSuperCluster(Request _request) {
+        Query query = _request.query;
+        String keyword = _request.keyword;
+        String clusterKey = query.clusterKey;
+        String algorithm = query.algorithm == null? "SuperCluster": query.algorithm;
+        String indexType = query.indexType == null ? "KDTree" : query.indexType;
+        String clusterOrder = query.order == null ? "original" : query.order;
+        String sharedKey = ClusterRegistry.key(keyword, algorithm, indexType, clusterOrder);
+
+        List<Request> pending = new ArrayList<>();
+        pending.add(_request);
+        pendingQueries.put(clusterKey, pending);
+
+        // a SuperCluster being built by another agent takes no thread here, BuildDone comes back when its build is done
+        CompletableFuture<SuperCluster> acquired;
+        try {
+            acquired = ClusterRegistry.getInstance().acquire(sharedKey, BuildExecutor.getInstance(),
+                    () -> buildSuperCluster(keyword, query, snapshotKey(sharedKey)));
+        } catch (RejectedExecutionException e) {
+            pendingQueries.remove(clusterKey);
+            respond(buildBusyResponse(_request));
+            return;
+        }
+        // released by postStop if the agent stops before BuildDone is handled
+        acquiring.put(clusterKey, new Acquiring(sharedKey, acquired));
+        ActorRef self = self();
+        acquired.thenAccept(cluster -> self.tell(new BuildDone(clusterKey, sharedKey, cluster), ActorRef.noSender()));
+    }
+
+    /**
+     * @param sharedKey
+     * @return key of the snapshot of the SuperCluster of sharedKey built by this agent
+     */
+    private String snapshotKey(String sharedKey) {
+        return sharedKey + "|" + this.minZoom + "|" + this.maxZoom + "|" + PointSourceCreator.namespace();
+    }
+
+    /**
+     * load data for given keyword and cluster it, runs on BuildExecutor and touches no state of the agent,
+     *   a SuperCluster is reopened from its snapshot if there is one, and snapshotted after it is built
+     *
+     * @param keyword
+     * @param query
+     * @param snapshotKey
+     * @return null if no data is loaded
+     */
+    private SuperCluster buildSuperCluster(String keyword, Query query, String snapshotKey) {
+        SuperCluster cluster = createSuperCluster(query, false);
+        // SuperCluster keeps coordinates only, stream them in chunks instead of holding a PointTuple per point
+        if (cluster.getClass() == SuperCluster.class) {
+            if (Constants.CLUSTER_SNAPSHOT_BUDGET > 0) {
+                SuperCluster restored = ClusterSnapshotStore.getInstance().get(snapshotKey);
+                if (restored != null) {
+                    return restored;
                 }
             }
-
-            switch (query.algorithm.toLowerCase()) {
-                case "isupercluster":
-                case "isc":
-                    cluster = new iSuperCluster(this.minZoom, this.maxZoom, analysis);
-                    break;
-                case "aisupercluster":
-                case "aisc":
-                    cluster = new AiSuperCluster(this.minZoom, this.maxZoom, analysis);
-                    break;
-                case "bisupercluster":
-                case "bisc":
-                    cluster = new BiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
-                    break;
-                case "lbisupercluster":
-                case "lbisc":
-                    cluster = new LBiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
-                    break;
-                case "sbisupercluster":
-                case "sbic":
-                    cluster = new SBiSuperCluster(this.minZoom, this.maxZoom, query.indexType, analysis);
-                    break;
-                case "dataexplorer":
-                case "de":
-                    cluster = new DataExplorer(this.minZoom, this.maxZoom, query.indexType, analysis);
-                    break;
-                case "dataaggregator":
-                case "da":
-                    cluster = new DataAggregator(this.minZoom, this.maxZoom, query.indexType, analysis);
-                    break;
-                case "quadtreeaggregator":
-                case "qta":
-                    cluster = new QuadTreeAggregator(this.minZoom, this.maxZoom, query.resX, query.resY);
-                    break;
-                case "gquadtreeaggregator":
-                case "gqta":
-                    cluster = new GQuadTreeAggregator(this.minZoom, this.maxZoom, query.resX, query.resY);
-                    break;
-                default:
-                    cluster = new SuperCluster(this.minZoom, this.maxZoom, query.indexType);
+            CoordinateBuffer coordinates = queryCoordinates(keyword);
+            if (coordinates == null || coordinates.size() == 0) {
+                return null;
             }
-            superClusters.put(query.clusterKey, cluster);
-            superClustersHits.put(query.clusterKey, 0);
+            cluster.load(coordinates);
+            if (Constants.CLUSTER_SNAPSHOT_BUDGET > 0) {
+                ClusterSnapshotStore.getInstance().put(snapshotKey, cluster);
+            }
+            return cluster;
+        }
+        List<PointTuple> pointTuples = queryPointTuples(keyword);
+        if (pointTuples == null || pointTuples.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < pointTuples.size(); i ++) {
+            pointTuples.get(i).setId(i);
         }
+        cluster.load(pointTuples);
+        PointTupleListFactory.recycle(pointTuples);
         return cluster;
     }
 
+    /**
+     * put the SuperCluster built on BuildExecutor into this agent, and answer the queries waiting for it
+     *
+     * @param done
+     */
+    private void handleBuildDone(BuildDone done) {
+        acquiring.remove(done.clusterKey);
+        List<Request> pending = pendingQueries.remove(done.clusterKey);
+        if (done.cluster == null) {
+            if (pending != null) {
+                for (Request request: pending) {
+                    respond(buildCmdResponse(request, "query", "building cluster failed for key = " + done.clusterKey, "error"));
+                }
+            }
+            return;
+        }
+        if (superClusters.get(done.clusterKey) != done.cluster) {
+            dropSuperCluster(done.clusterKey);
+            superClusters.put(done.clusterKey, done.cluster);
+        }
+        sharedClusterKeys.put(done.clusterKey, done.sharedKey);
+        evictSuperClusters(done.clusterKey);
+        if (pending != null) {
+            for (Request request: pending) {
+                answerClusterQuery(done.clusterKey, request, "done", 100);
+            }
+        }
+    }
+
+    /**
+     * remove the SuperCluster of given clusterKey from this agent,
+     *   and release it in ClusterRegistry if it is shared
+     *
+     * @param clusterKey
+     */
+    private void dropSuperCluster(String clusterKey) {
+        SuperCluster cluster = superClusters.remove(clusterKey);
+        String sharedKey = sharedClusterKeys.remove(clusterKey);
+        if (sharedKey != null) {
+            ClusterRegistry.getInstance().release(sharedKey, cluster);
+        }
+    }
+
+    /**
+     * estimate the size of the SuperCluster of given clusterKey again,
+     *   and drop other SuperClusters picked by the cache until it is within the budget
+     *
+     * @param clusterKey - key of the SuperCluster in use, never dropped
+     */
+    private void evictSuperClusters(String clusterKey) {
+        superClusters.resize(clusterKey);
+        for (String victim: superClusters.victims(clusterKey)) {
+            dropSuperCluster(victim);
+        }
+    }
+
     private boolean handleCmd(Command _cmd, Request _request) {
         boolean success = true;
         switch (_cmd.action) {
@@ -715,7 +1396,11 @@ public class Agent extends AbstractActor {
                     cmdQuery.order = clusterOrder;
                     cmdQuery.algorithm = "SuperCluster";
                     cmdQuery.indexType = "KDTree";
-                    success = clusterData(cmdQuery, false, false);
+                    // a shared SuperCluster must not be loaded again, build a private one instead
+                    if (sharedClusterKeys.containsKey(clusterKey)) {
+                        dropSuperCluster(clusterKey);
+                    }
+                    success = clusterData(cmdQuery);
                     if (success) {
                         respond(buildCmdResponse(_request, _cmd.action, "cluster built for key = " + clusterKey + " order = " + clusterOrder, "done"));
                     }
@@ -725,6 +1410,24 @@ public class Agent extends AbstractActor {
                     }
                 }
                 break;
+            case "invalidate":
+                if (_cmd.arguments == null || _cmd.arguments.length != 2) {
+                    respond(buildCmdResponse(_request, _cmd.action, "must contain 2 arguments: start, end", "error"));
+                    return false;
+                }
+                try {
+                    DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                    long start = format.parse(_cmd.arguments[0]).getTime();
+                    long end = format.parse(_cmd.arguments[1]).getTime();
+                    int changed = PointCache.getInstance().invalidate(start, end);
+                    // snapshots cover all times
+                    ClusterSnapshotStore.getInstance().clear();
+                    respond(buildCmdResponse(_request, _cmd.action, changed + " cached keywords invalidated", "done"));
+                } catch (ParseException e) {
+                    respond(buildCmdResponse(_request, _cmd.action, "arguments must be in yyyy-MM-dd HH:mm:ss", "error"));
+                    return false;
+                }
+                break;
             default:
                 respond(buildCmdResponse(_request, _cmd.action, "action is unknown", "error"));
                 return false;
@@ -732,9 +1435,16 @@ public class Agent extends AbstractActor {
         return true;
     }
 
-    private double[][] orderPoints(String _key, String _order, boolean deltaOnly) {
+    /**
+     * order given points, touches no state of the agent
+     *
+     * @param pointTuples - sorted in place for spatial orders
+     * @param _order
+     * @param orderMap - orderMap[i] is set to the tid of point at ith position
+     * @return null if the order is unknown
+     */
+    private static double[][] orderPoints(List<PointTuple> pointTuples, String _order, Long[] orderMap) {
         double[][] points = new double[pointTuples.size()][2];
-        Long[] orderMap = new Long[points.length];
         switch (_order) {
             case "original":
                 for (int i = 0; i < pointTuples.size(); i ++) {
@@ -768,10 +1478,35 @@ public class Agent extends AbstractActor {
                     orderMap[i] = pointTuples.get(i).tid;
                 }
                 break;
+            case "hilbert":
+            case "morton":
+                // sort points along the space filling curve over mercator coordinates
+                double[] xs = new double[pointTuples.size()];
+                double[] ys = new double[pointTuples.size()];
+                for (int i = 0; i < pointTuples.size(); i ++) {
+                    xs[i] = SuperCluster.lngX(pointTuples.get(i).getX());
+                    ys[i] = SuperCluster.latY(pointTuples.get(i).getY());
+                }
+                int[] curveOrder = SpaceFillingCurve.order(xs, ys, _order);
+                PointTuple[] sorted = new PointTuple[pointTuples.size()];
+                for (int i = 0; i < sorted.length; i ++) {
+                    sorted[i] = pointTuples.get(curveOrder[i]);
+                }
+                for (int i = 0; i < sorted.length; i ++) {
+                    pointTuples.set(i, sorted[i]);
+                    points[i][0] = sorted[i].getX();
+                    points[i][1] = sorted[i].getY();
+                    orderMap[i] = sorted[i].tid;
+                }
+                break;
             default:
                 return null;
         }
-        // if already has order maps for this cluster key and this.pointTuples in deltaOnly mode
+        return points;
+    }
+
+    private void putOrderMap(String _key, Long[] orderMap, boolean deltaOnly) {
+        // if already has order maps for this cluster key and pointTuples in deltaOnly mode
         // append the orderMap to existing orderMap
         if (orderMaps.containsKey(_key) && deltaOnly) {
             Long[] curOrderMap = orderMaps.get(_key);
@@ -780,7 +1515,6 @@ public class Agent extends AbstractActor {
             orderMap = base.toArray(new Long[base.size()]);
         }
         orderMaps.put(_key, orderMap);
-        return points;
     }
 
     /**
@@ -798,8 +1532,8 @@ public class Agent extends AbstractActor {
             return 0.0;
         }
 
-        int[] labels1 = superClusters.get(clusterKey1).getClusteringLabels(zoom);
-        int[] labels2 = superClusters.get(clusterKey2).getClusteringLabels(zoom);
+        int[] labels1 = getClusteringLabels(superClusters.get(clusterKey1), zoom);
+        int[] labels2 = getClusteringLabels(superClusters.get(clusterKey2), zoom);
 
         //-DEBUG-//
 //        System.out.println("labels1 [" + labels1.length + "] = " + Arrays.toString(labels1));
@@ -845,6 +1579,17 @@ public class Agent extends AbstractActor {
         }
     }
 
+    private int[] getClusteringLabels(SuperCluster cluster, int zoom) {
+        // the cluster may be shared with other agents
+        synchronized (cluster) {
+            return cluster.getClusteringLabels(zoom);
+        }
+    }
+
+    private JsonNode buildBusyResponse(Request _request) {
+        return buildCmdResponse(_request, "query", "too many clusters are being built, try again later", "busy");
+    }
+
     private JsonNode buildCmdResponse(Request _request, String _cursor, String _msg, String _status) {
         JsonNode response = Json.toJson(_request);
         ObjectNode result = JsonNodeFactory.instance.objectNode();
@@ -860,21 +1605,18 @@ public class Agent extends AbstractActor {
             // TODO - exception
         }
         keyword = _request.keyword;
-        if (postgreSQL == null) {
-            postgreSQL = new PostgreSQL();
-        }
-        pointTuples = postgreSQL.queryPointTuplesForKeyword(_request.keyword);
+        pointTuples = queryPointTuples(_request.keyword);
         if (pointTuples == null) {
             // TODO - exception
         }
         for (int i = 0; i < pointTuples.size(); i ++) {
             pointTuples.get(i).setId(i);
         }
-        ObjectNode result = JsonNodeFactory.instance.objectNode();
-        result.put("type", "FeatureCollection");
-        ArrayNode features = result.putArray("features");
-        buildGeoJsonArrayPoint(pointTuples, features);
-        respond(result);
+        Transfer transfer = new Transfer();
+        transfer.request = _request;
+        transfer.progressive = false;
+        transfer.pointTuples = pointTuples;
+        startTransfer(transfer);
     }
 
     private void handleProgressTransfer(Request _request) {
@@ -883,38 +1625,121 @@ public class Agent extends AbstractActor {
         }
 
         this.pointTuples = null;
-        Date currentStart = new Date(this.start.getTime());
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(currentStart);
-        calendar.add(Calendar.DATE, this.intervalDays);
-        Date currentEnd = calendar.getTime();
-        long totalDays = (this.end.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
-
-        while (currentStart.before(this.end)) {
+        Transfer transfer = new Transfer();
+        transfer.request = _request;
+        transfer.progressive = true;
+        transfer.currentStart = new Date(this.start.getTime());
+        transfer.currentEnd = addDays(transfer.currentStart, this.intervalDays);
+        transfer.totalDays = (this.end.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
+        startTransfer(transfer);
+    }
 
-            long progress = (currentEnd.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
-            progress = 100 * progress / totalDays;
+    /**
+     * Answer a transfer chunk by chunk, a transfer in progress is abandoned,
+     *   chunks are written as the websocket takes frames, or all at once if responses are not windowed
+     *
+     * @param _transfer
+     */
+    private void startTransfer(Transfer _transfer) {
+        this.transfer = _transfer;
+        if (!windowed || Constants.WS_WINDOW <= 0) {
+            Object chunk;
+            while ((chunk = nextTransferChunk()) != null) {
+                send(chunk);
+            }
+            return;
+        }
+        flush();
+    }
 
-            // query delta data, pointTuples only keep delta data
-            boolean success = loadNewData(_request.keyword, currentStart, currentEnd, true);
-            if (!success) {
-                // TODO - exception
+    /**
+     * Write the next chunk of the transfer in progress,
+     *   progress-transfer loads the next time slice when all chunks of the current one are written
+     *
+     * @return text of the chunk, an error response, or null if no transfer is in progress
+     */
+    private Object nextTransferChunk() {
+        Transfer transfer = this.transfer;
+        if (transfer == null) {
+            return null;
+        }
+        Request _request = transfer.request;
+        String cursor = transfer.progressive? "progress-transfer": "transfer";
+        try {
+            if (!transfer.progressive) {
+                // about 120 chars for each feature, a FeatureCollection for each chunk if longer than Constants.WS_CHUNK_SIZE
+                List<PointTuple> pointTuples = transfer.pointTuples;
+                int chunkSize = chunkRecords(120);
+                boolean chunked = pointTuples.size() > chunkSize;
+                int from = transfer.from;
+                int to = (int) Math.min(pointTuples.size(), (long) from + chunkSize);
+                JsonResponse result = new JsonResponse(256 + 120L * (to - from));
+                JsonGenerator generator = result.generator();
+                generator.writeStringField("type", "FeatureCollection");
+                generator.writeArrayFieldStart("features");
+                writeGeoJsonArrayPoint(pointTuples, from, to, generator);
+                generator.writeEndArray();
+                if (chunked) {
+                    writeChunk(generator, transfer.seq, to == pointTuples.size());
+                }
+                transfer.from = to;
+                transfer.seq ++;
+                if (to == pointTuples.size()) {
+                    this.transfer = null;
+                }
+                return result.finish();
             }
 
-            // construct the response Json and return
-            JsonNode response = Json.toJson(_request);
-            ObjectNode result = JsonNodeFactory.instance.objectNode();
-            ArrayNode data = result.putArray("data");
-            buildDataArrayPointWithId(pointTuples, data);
-            ((ObjectNode) response).put("progress", progress);
-            ((ObjectNode) response).set("result", result);
-            respond(response);
+            // query delta data of the next time slice, pointTuples only keep delta data
+            if (transfer.pointTuples == null) {
+                if (!transfer.currentStart.before(this.end)) {
+                    this.transfer = null;
+                    return null;
+                }
+                if (!loadNewData(_request.keyword, transfer.currentStart, transfer.currentEnd, true)) {
+                    MyLogger.error(this.getClass(), "loading data failed for the slice from " + transfer.currentStart);
+                    this.transfer = null;
+                    return buildCmdResponse(_request, cursor, "loading data failed for the slice from " + transfer.currentStart, "error");
+                }
+                transfer.pointTuples = this.pointTuples;
+                transfer.from = 0;
+                transfer.seq = 0;
+            }
 
-            currentStart = currentEnd;
-            calendar = Calendar.getInstance();
-            calendar.setTime(currentStart);
-            calendar.add(Calendar.DATE, this.intervalDays);
-            currentEnd = calendar.getTime();
+            long progress = (transfer.currentEnd.getTime() - this.start.getTime()) / (24 * 3600 * 1000);
+            progress = 100 * progress / transfer.totalDays;
+
+            // construct the response Json, about 48 chars for each point, in chunks if longer than Constants.WS_CHUNK_SIZE
+            List<PointTuple> pointTuples = transfer.pointTuples;
+            int chunkSize = chunkRecords(48);
+            boolean chunked = pointTuples.size() > chunkSize;
+            int from = transfer.from;
+            int to = (int) Math.min(pointTuples.size(), (long) from + chunkSize);
+            JsonResponse response = new JsonResponse(_request, 256 + 48L * (to - from));
+            JsonGenerator generator = response.generator();
+            generator.writeNumberField("progress", progress);
+            generator.writeObjectFieldStart("result");
+            generator.writeArrayFieldStart("data");
+            writeDataArrayPointWithId(pointTuples, from, to, generator);
+            generator.writeEndArray();
+            if (chunked) {
+                writeChunk(generator, transfer.seq, to == pointTuples.size());
+            }
+            generator.writeEndObject();
+            transfer.from = to;
+            transfer.seq ++;
+
+            // all chunks of this time slice are written, move to the next one
+            if (to == pointTuples.size()) {
+                transfer.pointTuples = null;
+                transfer.currentStart = transfer.currentEnd;
+                transfer.currentEnd = addDays(transfer.currentStart, this.intervalDays);
+            }
+            return response.finish();
+        } catch (IOException e) {
+            MyLogger.error(this.getClass(), "writing response failed: " + e.getMessage());
+            this.transfer = null;
+            return buildCmdResponse(_request, cursor, "writing response failed", "error");
         }
     }
 
@@ -942,8 +1767,13 @@ public class Agent extends AbstractActor {
                 }
                 SuperCluster cluster = superClusters.get(clusterKey);
 
-                double distance = cluster.getClusterDistance(zoom, p1, p2);
-                double radius = cluster.getRadius(zoom);
+                double distance;
+                double radius;
+                // the cluster may be shared with other agents
+                synchronized (cluster) {
+                    distance = cluster.getClusterDistance(zoom, p1, p2);
+                    radius = cluster.getRadius(zoom);
+                }
 
                 JsonNode response = Json.toJson(_request);
                 ObjectNode result = JsonNodeFactory.instance.objectNode();
@@ -1002,6 +1832,10 @@ public class Agent extends AbstractActor {
                 MyLogger.info(this.getClass(), "request is a Analysis");
                 handleAnalysis(request);
                 break;
+            case "cancel":
+                MyLogger.info(this.getClass(), "request is a Cancel");
+                handleCancel(request);
+                break;
             default:
                 MyLogger.info(this.getClass(), "request type is unknown");
                 JsonNode response = Json.toJson(_request);
@@ -1013,12 +1847,59 @@ public class Agent extends AbstractActor {
 
     private void respond(JsonNode _response) {
         MyLogger.info(this.getClass(), "responding in JSON format.");
-        out.tell(_response, self());
+        send(_response);
+    }
+
+    /**
+     * @param _response - text of a JSON response, sent as it is
+     */
+    private void respond(String _response) {
+        MyLogger.info(this.getClass(), "responding in JSON format.");
+        send(_response);
     }
 
+    /**
+     * @param _response - not modified after, it is wrapped without copying
+     */
     private void respond(byte[] _response) {
-        ByteString response = ByteString.fromArray(_response);
+        ByteString response = ByteString.fromArrayUnsafe(_response);
         MyLogger.info(this.getClass(), "responding in Binary format.");
-        out.tell(response, self());
+        send(response);
+    }
+
+    /**
+     * @param _response - a heap buffer not modified after, its backing array is wrapped without copying
+     */
+    private void respond(ByteBuffer _response) {
+        respond(_response.array());
+    }
+
+    /**
+     * Queue a response in the outbox, it is sent when fewer than Constants.WS_WINDOW frames are in flight
+     *
+     * @param _response - JsonNode, String or ByteString
+     */
+    private void send(Object _response) {
+        if (!windowed || Constants.WS_WINDOW <= 0) {
+            out.tell(_response, self());
+            return;
+        }
+        outbox.addLast(_response);
+        flush();
+    }
+
+    /**
+     * Send queued responses as frames while the window allows, called again when the websocket takes a frame,
+     *   the next chunk of the transfer in progress is written only when the outbox is empty and the window has room
+     */
+    private void flush() {
+        while (inFlight < Constants.WS_WINDOW) {
+            Object next = outbox.isEmpty()? nextTransferChunk(): outbox.pollFirst();
+            if (next == null) {
+                break;
+            }
+            out.tell(new Frame(next, self()), self());
+            inFlight ++;
+        }
     }
 }
@@ -0,0 +1,135 @@
+package actor;
+
+import util.Constants;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide pool of threads building SuperClusters for all Agents, so builds never run on actor threads
+ *
+ *     (1) threads - cluster.build.threads builds run at the same time, 0 - number of processors;
+ *     (2) queue - up to cluster.build.queue builds wait for a thread,
+ *                 builds beyond that are rejected (back-pressure) and the Agent answers the request with status "busy".
+ *
+ *     A build task must not touch the state of its Agent,
+ *     it sends its result back to the Agent as a message and the Agent applies it on the actor thread.
+ *
+ *     Data of progressive queries is fetched ahead on a separate pool of the same size (see prefetch()),
+ *     so the next slice is read from the database while the current one is clustered,
+ *     each progressive query keeps at most progressive.prefetch slices in flight.
+ */
+public class BuildExecutor implements Executor {
+
+    private static BuildExecutor instance = null;
+
+    public static synchronized BuildExecutor getInstance() {
+        if (instance == null) {
+            instance = new BuildExecutor(Constants.CLUSTER_BUILD_THREADS, Constants.CLUSTER_BUILD_QUEUE);
+        }
+        return instance;
+    }
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor fetcher;
+
+    // statistics
+    private AtomicLong submitted = new AtomicLong();
+    private AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param threads - number of threads, 0 - number of processors
+     * @param queueSize - number of builds waiting for a thread at most
+     */
+    public BuildExecutor(int threads, int queueSize) {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), threadFactory("cluster-build-"), new ThreadPoolExecutor.AbortPolicy());
+        // bounded by the prefetch depth of each progressive query, not by the queue
+        this.fetcher = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), threadFactory("cluster-fetch-"));
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param task
+     * @return false if the queue is full and the task is rejected
+     */
+    public boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            System.out.println("[BuildExecutor] rejects a build, " + this);
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @param task
+     * @throws RejectedExecutionException if the queue is full
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (!submit(task)) {
+            throw new RejectedExecutionException("cluster build queue is full");
+        }
+    }
+
+    /**
+     * Fetch data ahead of the build task that needs it
+     *
+     * @param fetch - runs on the fetch pool
+     * @return
+     */
+    public <T> CompletableFuture<T> prefetch(Supplier<T> fetch) {
+        return CompletableFuture.supplyAsync(fetch, fetcher);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        fetcher.shutdownNow();
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public String toString() {
+        return "active = " + getActive() + ", queued = " + getQueued()
+                + ", submitted = " + getSubmitted() + ", rejected = " + getRejected();
+    }
+}
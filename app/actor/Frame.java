@@ -0,0 +1,27 @@
+package actor;
+
+import akka.actor.ActorRef;
+
+/**
+ * A response on its way to the websocket, the websocket flow tells ackTo Sent when it takes the frame,
+ *   which is when the socket has demand for it, so an agent keeps a bounded number of frames in the flow
+ *   and sends the next ones at the pace the client reads, instead of overflowing the flow's buffer
+ */
+public final class Frame {
+
+    public static final class Sent {
+        public static final Sent INSTANCE = new Sent();
+
+        private Sent() {
+        }
+    }
+
+    // JsonNode, String (JSON text) or ByteString
+    public final Object message;
+    public final ActorRef ackTo;
+
+    public Frame(Object message, ActorRef ackTo) {
+        this.message = message;
+        this.ackTo = ackTo;
+    }
+}
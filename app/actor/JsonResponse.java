@@ -0,0 +1,68 @@
+package actor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import play.libs.Json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON response written field by field through a streaming JsonGenerator,
+ *   large arrays of a response are written straight into the text without building JsonNode trees
+ *
+ *     (1) new JsonResponse(request) - starts the response object with the fields of request, the same as Json.toJson(request),
+ *         new JsonResponse() - starts an empty response object;
+ *     (2) generator() - writes further fields, e.g. status, progress and result;
+ *     (3) finish() - ends the response object and returns the text to send.
+ */
+class JsonResponse {
+
+    // initial capacity of the text at most, larger responses grow from it
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private StringWriter writer;
+    private JsonGenerator generator;
+
+    /**
+     * @param capacity - expected length of the text in chars
+     * @throws IOException
+     */
+    JsonResponse(long capacity) throws IOException {
+        this.writer = new StringWriter((int) Math.min(capacity, MAX_CAPACITY));
+        this.generator = Json.mapper().getFactory().createGenerator(writer);
+        generator.writeStartObject();
+    }
+
+    /**
+     * @param request - its fields are echoed in the response
+     * @param capacity - expected length of the text in chars
+     * @throws IOException
+     */
+    JsonResponse(Object request, long capacity) throws IOException {
+        this(capacity);
+        JsonNode fields = Json.toJson(request);
+        Iterator<Map.Entry<String, JsonNode>> iterator = fields.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> field = iterator.next();
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
+    }
+
+    JsonGenerator generator() {
+        return generator;
+    }
+
+    /**
+     * @return text of the whole response
+     * @throws IOException
+     */
+    String finish() throws IOException {
+        generator.writeEndObject();
+        generator.close();
+        return writer.toString();
+    }
+}
@@ -22,6 +22,7 @@ public class AiSuperCluster extends SuperCluster {
 
     KDTree<Advocator>[] advocatorsTrees;
     List<Cluster>[] advocatorClusters;
+
     int pointIdSeq;
     int advocatorSeq;
 
@@ -50,7 +51,6 @@ public class AiSuperCluster extends SuperCluster {
             timing.put("total", 0.0);
             timing.put("rangeSearch", 0.0);
             timing.put("insertTree", 0.0);
-            timing.put("findEarliest", 0.0);
             timing.put("mergeCalculation", 0.0);
         }
     }
@@ -107,14 +107,14 @@ public class AiSuperCluster extends SuperCluster {
         double radius = getRadius(zoom);
 
         if (keepTiming) MyTimer.startTimer();
-        // Find all earlier advocators c can merge into
+        // Find the earliest advocator c can merge into
         KDTree<Advocator> advocatorsTree = this.advocatorsTrees[zoom];
-        List<Advocator> advocators = advocatorsTree.within(c, radius);
+        Advocator earliestAdvocator = advocatorsTree.earliestWithin(c, radius);
         if (keepTiming) MyTimer.stopTimer();
         if (keepTiming) timing.put("rangeSearch", timing.get("rangeSearch") + MyTimer.durationSeconds());
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
             Advocator newAdvocator = new Advocator(c.getX(), c.getY(), advocatorSeq ++);
             newAdvocator.cluster = c;
 
@@ -141,20 +141,6 @@ public class AiSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            if (keepTiming) MyTimer.startTimer();
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-            if (keepTiming) MyTimer.stopTimer();
-            if (keepTiming) timing.put("findEarliest", timing.get("findEarliest") + MyTimer.durationSeconds());
-
             if (keepTiming) MyTimer.startTimer();
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
@@ -274,11 +260,24 @@ public class AiSuperCluster extends SuperCluster {
         return labels;
     }
 
+    /**
+     * Each cluster has an advocator in the advocator index of its level
+     *
+     * @return
+     */
+    @Override
+    protected long numberOfClusters() {
+        long count = 0;
+        for (int z = 0; z < this.advocatorClusters.length; z ++) {
+            count += this.advocatorClusters[z].size();
+        }
+        return 2 * count;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
         System.out.println("    [range search] " + timing.get("rangeSearch") + " seconds");
         System.out.println("    [insert tree] " + timing.get("insertTree") + " seconds");
-        System.out.println("    [find earliest] " + timing.get("findEarliest") + " seconds");
         System.out.println("    [merge calculation] " + timing.get("mergeCalculation") + " seconds");
     }
 }
@@ -17,6 +17,7 @@ public class BiSuperCluster extends SuperCluster {
     // clusters at each level that are pending for insert into tree
     Queue<Cluster>[] pendingClusters;
 
+
     int pointIdSeq;
     int advocatorSeq;
     int totalShiftCount = 0;
@@ -33,7 +34,8 @@ public class BiSuperCluster extends SuperCluster {
     public BiSuperCluster(int _minZoom, int _maxZoom, String _indexType, boolean _analysis) {
         this.minZoom = _minZoom;
         this.maxZoom = _maxZoom;
-        this.indexType = _indexType;
+        // indexes are updated by insert / delete as points are loaded
+        this.indexType = IndexCreator.updatableIndexType(_indexType);
         this.advocatorsIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
         this.advocatorClusters = new List[maxZoom + 1];
         this.clustersIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
@@ -52,7 +54,6 @@ public class BiSuperCluster extends SuperCluster {
         if (keepTiming) {
             timing = new HashMap<>();
             timing.put("total", 0.0);
-            timing.put("findEarliest", 0.0);
             timing.put("insert-rangeSearch", 0.0);
             timing.put("shift-rangeSearch", 0.0);
             timing.put("mergeCalculation", 0.0);
@@ -263,14 +264,14 @@ public class BiSuperCluster extends SuperCluster {
         double radius = getRadius(zoom);
 
         if (keepTiming) MyTimer.startTimer();
-        // Find all earlier advocators c can merge into
+        // Find the earliest advocator c can merge into
         I2DIndex<Advocator> advocatorsIndex = this.advocatorsIndexes[zoom];
-        List<Advocator> advocators = advocatorsIndex.within(c, radius);
+        Advocator earliestAdvocator = advocatorsIndex.earliestWithin(c, radius);
         if (keepTiming) MyTimer.stopTimer();
         if (keepTiming) timing.put("insert-rangeSearch", timing.get("insert-rangeSearch") + MyTimer.durationSeconds());
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
             Advocator newAdvocator = new Advocator(c.getX(), c.getY(), advocatorSeq ++);
             newAdvocator.cluster = c;
             c.advocator = newAdvocator;
@@ -300,20 +301,6 @@ public class BiSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            if (keepTiming) MyTimer.startTimer();
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-            if (keepTiming) MyTimer.stopTimer();
-            if (keepTiming) timing.put("findEarliest", timing.get("findEarliest") + MyTimer.durationSeconds());
-
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
 
@@ -655,9 +642,22 @@ public class BiSuperCluster extends SuperCluster {
         c.numPoints = numPoints;
     }
 
+    /**
+     * Each cluster is in the cluster index of its level, and has an advocator in the advocator index of its level
+     *
+     * @return
+     */
+    @Override
+    protected long numberOfClusters() {
+        long count = 0;
+        for (int z = 0; z < this.advocatorClusters.length; z ++) {
+            count += this.advocatorClusters[z].size();
+        }
+        return 3 * count;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
-        System.out.println("    [find earliest] " + timing.get("findEarliest") + " seconds");
         System.out.println("    [insert range search] " + timing.get("insert-rangeSearch") + " seconds");
         System.out.println("    [shift range search] " + timing.get("shift-rangeSearch") + " seconds");
         System.out.println("    [merge calculation] " + timing.get("mergeCalculation") + " seconds");
@@ -0,0 +1,115 @@
+package clustering;
+
+import util.Constants;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Heap budget of SuperCluster instances shared by ClusterCaches, e.g. the caches of all Agents
+ *
+ *     (1) an instance is charged once however many caches hold it, e.g. a SuperCluster shared through ClusterRegistry,
+ *         and its bytes are released when the last cache holding it removes it;
+ *     (2) the budget is the process-wide cluster.cache.budget, 0 - half of the max heap.
+ *
+ *     A cache only evicts its own entries, see ClusterCache.victims().
+ */
+public class ClusterBudget {
+
+    private static ClusterBudget instance = null;
+
+    public static synchronized ClusterBudget getInstance() {
+        if (instance == null) {
+            instance = new ClusterBudget(Constants.CLUSTER_CACHE_BUDGET > 0? Constants.CLUSTER_CACHE_BUDGET: Runtime.getRuntime().maxMemory() / 2);
+        }
+        return instance;
+    }
+
+    class Charge {
+        long bytes;
+        int holders = 0;
+    }
+
+    private Map<SuperCluster, Charge> charges = new IdentityHashMap<>();
+    private long budget;
+    private long bytes = 0;
+
+    /**
+     * @param budget - heap bytes for all SuperCluster instances charged
+     */
+    public ClusterBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * One more cache holds cluster, its bytes are counted if no cache held it
+     *
+     * @param cluster
+     * @param size - estimated bytes of cluster
+     */
+    public synchronized void charge(SuperCluster cluster, long size) {
+        Charge charge = charges.get(cluster);
+        if (charge == null) {
+            charge = new Charge();
+            charge.bytes = size;
+            charges.put(cluster, charge);
+            bytes += size;
+        }
+        charge.holders ++;
+    }
+
+    /**
+     * One cache less holds cluster, its bytes are released if no other cache holds it
+     *
+     * @param cluster
+     */
+    public synchronized void release(SuperCluster cluster) {
+        Charge charge = charges.get(cluster);
+        if (charge == null) {
+            return;
+        }
+        charge.holders --;
+        if (charge.holders <= 0) {
+            charges.remove(cluster);
+            bytes -= charge.bytes;
+        }
+    }
+
+    /**
+     * @param cluster
+     * @param size - estimated bytes of cluster again, e.g. after progressive loads
+     */
+    public synchronized void resize(SuperCluster cluster, long size) {
+        Charge charge = charges.get(cluster);
+        if (charge == null) {
+            return;
+        }
+        bytes += size - charge.bytes;
+        charge.bytes = size;
+    }
+
+    /**
+     * @param cluster
+     * @return number of caches holding cluster
+     */
+    public synchronized int holders(SuperCluster cluster) {
+        Charge charge = charges.get(cluster);
+        return charge == null? 0: charge.holders;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return charges.size();
+    }
+
+    public synchronized String toString() {
+        return "instances = " + charges.size() + ", bytes = " + bytes + " / " + budget;
+    }
+}
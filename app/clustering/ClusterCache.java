@@ -0,0 +1,239 @@
+package clustering;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of SuperCluster instances within a heap budget, replacing the least valuable ones by LRU-2
+ *
+ *     (1) size - each entry costs SuperCluster.estimateBytes(),
+ *                re-estimated by resize() after the SuperCluster grows (e.g. progressive loads),
+ *                charged to a ClusterBudget that may be shared by many caches, e.g. the caches of all Agents,
+ *                an instance held by more than one cache is charged once;
+ *     (2) victims - when bytes of the budget exceed it, the entry with the oldest second-to-last hit goes first,
+ *                   entries other caches also hold free nothing and are never picked,
+ *                   entries hit only once go before all others, the older last hit first,
+ *                   so one scan over many keywords does not flush the keywords used again and again;
+ *     (3) history - last hits of evicted keys are remembered for a while,
+ *                   a key coming back soon after eviction keeps its hit history.
+ *
+ *     The cache only picks victims, the caller removes them,
+ *     because a victim may need to be released somewhere else too (e.g. ClusterRegistry).
+ */
+public class ClusterCache {
+
+    // number of evicted keys whose last hit is remembered
+    private static final int HISTORY_SIZE = 1024;
+
+    class Entry {
+        SuperCluster cluster;
+        long bytes;
+        // logical time of the last hit and the one before it, -1 if none
+        long last = -1;
+        long previous = -1;
+    }
+
+    private Map<String, Entry> entries = new HashMap<>();
+    private Map<String, Long> history = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > HISTORY_SIZE;
+        }
+    };
+
+    private ClusterBudget budget;
+    // bytes of entries in this cache, instances shared with other caches are counted in each
+    private long bytes = 0;
+    private long clock = 0;
+
+    // statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long evictedBytes = 0;
+
+    /**
+     * @param budget - heap bytes for the SuperCluster instances of this cache only
+     */
+    public ClusterCache(long budget) {
+        this(new ClusterBudget(budget));
+    }
+
+    /**
+     * @param budget - shared with other caches, e.g. ClusterBudget.getInstance()
+     */
+    public ClusterCache(ClusterBudget budget) {
+        this.budget = budget;
+    }
+
+    public boolean containsKey(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @param key
+     * @return the SuperCluster of given key without counting a hit, null if not cached
+     */
+    public SuperCluster get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null? null: entry.cluster;
+    }
+
+    /**
+     * Count a hit to the SuperCluster of given key
+     *
+     * @param key
+     */
+    public void hit(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        hits ++;
+        touch(entry);
+    }
+
+    /**
+     * Add a SuperCluster, replacing the one of the same key if exists, it counts as a miss,
+     *   hits to it are counted by hit()
+     *
+     * @param key
+     * @param cluster
+     */
+    public void put(String key, SuperCluster cluster) {
+        remove(key);
+        Entry entry = new Entry();
+        entry.cluster = cluster;
+        entry.bytes = cluster.estimateBytes();
+        Long last = history.remove(key);
+        if (last != null) {
+            entry.last = last;
+        }
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        budget.charge(cluster, entry.bytes);
+        misses ++;
+    }
+
+    /**
+     * Estimate bytes of the SuperCluster of given key again
+     *
+     * @param key
+     */
+    public void resize(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        long size = entry.cluster.estimateBytes();
+        bytes += size - entry.bytes;
+        entry.bytes = size;
+        budget.resize(entry.cluster, size);
+    }
+
+    /**
+     * @param key
+     * @return the SuperCluster removed, null if not cached
+     */
+    public SuperCluster remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        bytes -= entry.bytes;
+        budget.release(entry.cluster);
+        return entry.cluster;
+    }
+
+    /**
+     * Pick entries to evict until bytes of the budget are within it, or no entry of this cache would free any,
+     *   they are counted as evicted, the caller must remove them
+     *
+     * @param keep - key of the SuperCluster in use, never picked
+     * @return keys of victims in the order of eviction
+     */
+    public List<String> victims(String keep) {
+        List<String> victims = new ArrayList<>();
+        long remaining = budget.getBytes();
+        while (remaining > budget.getBudget()) {
+            String victim = null;
+            Entry victimEntry = null;
+            for (Map.Entry<String, Entry> candidate: entries.entrySet()) {
+                if (candidate.getKey().equals(keep) || victims.contains(candidate.getKey())) continue;
+                // held by other caches too, removing it frees nothing
+                if (budget.holders(candidate.getValue().cluster) > 1) continue;
+                if (victimEntry == null || before(candidate.getValue(), victimEntry)) {
+                    victim = candidate.getKey();
+                    victimEntry = candidate.getValue();
+                }
+            }
+            if (victim == null) {
+                break;
+            }
+            victims.add(victim);
+            remaining -= victimEntry.bytes;
+            history.put(victim, victimEntry.last);
+            evictions ++;
+            evictedBytes += victimEntry.bytes;
+        }
+        if (!victims.isEmpty()) {
+            System.out.println("[ClusterCache] evicts " + victims + ", " + this);
+        }
+        return victims;
+    }
+
+    // true if a should be evicted before b
+    private boolean before(Entry a, Entry b) {
+        if (a.previous != b.previous) {
+            return a.previous < b.previous;
+        }
+        return a.last < b.last;
+    }
+
+    private void touch(Entry entry) {
+        entry.previous = entry.last;
+        entry.last = clock ++;
+    }
+
+    public Set<String> keySet() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getBudget() {
+        return budget.getBudget();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    public String toString() {
+        return "size = " + entries.size() + ", bytes = " + bytes + ", budget: " + budget
+                + ", hits = " + hits + ", misses = " + misses
+                + ", evictions = " + evictions + ", evicted bytes = " + evictedBytes;
+    }
+}
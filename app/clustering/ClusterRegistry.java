@@ -0,0 +1,156 @@
+package clustering;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of SuperCluster instances shared by all Agents
+ *
+ *     (1) key - keyword + algorithm + indexType + order, see key();
+ *     (2) the first Agent acquiring a key builds the SuperCluster,
+ *         Agents acquiring the same key during the build get the same future instead of building their own (single-flight),
+ *         no thread waits for a build, acquire() returns a future completed when the build is done;
+ *     (3) each Agent holding a SuperCluster counts as one reference,
+ *         the SuperCluster is dropped when the last reference is released.
+ *
+ *     Shared SuperCluster instances must not be loaded again,
+ *     and queries on them must be synchronized on the instance,
+ *     because indexes reuse their search buffers across queries.
+ */
+public class ClusterRegistry {
+
+    private static final ClusterRegistry instance = new ClusterRegistry();
+
+    public static ClusterRegistry getInstance() {
+        return instance;
+    }
+
+    class Entry {
+        CompletableFuture<SuperCluster> future = new CompletableFuture<>();
+        int references = 0;
+    }
+
+    private Map<String, Entry> entries = new HashMap<>();
+
+    // statistics
+    private long builds = 0;
+    private long shares = 0;
+
+    // short names of algorithms accepted by Agent.createSuperCluster, key - short name, value - full name
+    private static final Map<String, String> aliases = new HashMap<>();
+    static {
+        aliases.put("sc", "supercluster");
+        aliases.put("isc", "isupercluster");
+        aliases.put("aisc", "aisupercluster");
+        aliases.put("bisc", "bisupercluster");
+        aliases.put("lbisc", "lbisupercluster");
+        aliases.put("sbic", "sbisupercluster");
+        aliases.put("de", "dataexplorer");
+        aliases.put("da", "dataaggregator");
+        aliases.put("qta", "quadtreeaggregator");
+        aliases.put("gqta", "gquadtreeaggregator");
+    }
+
+    /**
+     * @param keyword
+     * @param algorithm - full or short name in any case, e.g. "SuperCluster" and "sc" give the same key
+     * @param indexType
+     * @param order
+     * @return
+     */
+    public static String key(String keyword, String algorithm, String indexType, String order) {
+        String name = algorithm.toLowerCase();
+        name = aliases.getOrDefault(name, name);
+        return keyword + "|" + name + "|" + indexType + "|" + order;
+    }
+
+    /**
+     * Get the SuperCluster of given key, and build it with builder on executor if no one has built it
+     *
+     * @param key
+     * @param executor - runs the build, e.g. BuildExecutor, may throw RejectedExecutionException
+     * @param builder - returns null if it fails to build
+     * @return completed with the SuperCluster, or with null if the build fails
+     * @throws RejectedExecutionException - executor rejects the build, nothing is acquired
+     */
+    public CompletableFuture<SuperCluster> acquire(String key, Executor executor, Supplier<SuperCluster> builder) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                shares ++;
+                entry.references ++;
+                System.out.println("[ClusterRegistry] shares SuperCluster for key = " + key + (entry.future.isDone()? "": ", waiting for its build ..."));
+                return entry.future;
+            }
+            entry = new Entry();
+            entry.references ++;
+            entries.put(key, entry);
+            builds ++;
+        }
+
+        System.out.println("[ClusterRegistry] builds SuperCluster for key = " + key + " ...");
+        Entry building = entry;
+        try {
+            executor.execute(() -> {
+                SuperCluster cluster = null;
+                try {
+                    cluster = builder.get();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    // failed builds are not kept, the next acquire builds again
+                    if (cluster == null) {
+                        synchronized (this) {
+                            entries.remove(key, building);
+                        }
+                    }
+                    building.future.complete(cluster);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // agents sharing the entry meanwhile see a failed build
+            synchronized (this) {
+                entries.remove(key, building);
+                builds --;
+            }
+            building.future.complete(null);
+            throw e;
+        }
+        return entry.future;
+    }
+
+    /**
+     * Release one reference to the SuperCluster of given key, drop it if no one else holds it
+     *
+     * @param key
+     * @param cluster - the instance acquired, a newer instance of the same key is not affected
+     */
+    public synchronized void release(String key, SuperCluster cluster) {
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.future.isDone() || entry.future.getNow(null) != cluster) {
+            return;
+        }
+        entry.references --;
+        if (entry.references <= 0) {
+            entries.remove(key);
+            System.out.println("[ClusterRegistry] dropped SuperCluster for key = " + key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBuilds() {
+        return builds;
+    }
+
+    public synchronized long getShares() {
+        return shares;
+    }
+}
@@ -0,0 +1,580 @@
+package clustering;
+
+import model.Cluster;
+import model.PointStore;
+import util.I2DIndex;
+import util.I2DPoint;
+import util.ImplicitKDTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a built SuperCluster hierarchy, written once and reopened by memory-mapping the file
+ *
+ *     (1) table - every distinct Cluster object of all levels once, column by column
+ *                 (x, y, id, zoom, expansionZoom, parentId, numPoints, start of its children),
+ *                 a single point or a cluster passed up to lower zoom levels is the same object on all of them;
+ *     (2) children - table indexes of the children of each cluster (clusters on max zoom level or single points);
+ *     (3) levels - table indexes of the clusters on each zoom level in [minZoom, maxZoom],
+ *                  in the implicit KD-Tree layout of ImplicitKDTree by their x / y, so they are the level's index;
+ *     (4) points - raw points below max zoom level (x, y, zoom, parentId), the same as PointStore.
+ *
+ *     All values are little-endian. Opening only maps the file,
+ *     range / within queries on a level search its layout straight from the mapping (see index(zoom)),
+ *     a Cluster object is created when a query returns it first, and its children list reads the mapping when iterated,
+ *     so the first query of a level costs about the clusters it returns, not the clusters of the level.
+ *     Queries needing a whole level (e.g. getClusters(zoom), clustering labels) create all Cluster objects of it.
+ *
+ *     Only SuperCluster itself can be snapshotted, incremental subclasses keep more state.
+ */
+public class ClusterSnapshot {
+
+    private static final int MAGIC = 0x31534353; // "SCS1" in little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 128;
+    private static final int MAX_INDEX_TYPE_BYTES = 64;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private File file;
+    private int minZoom;
+    private int maxZoom;
+    private String indexType;
+    private int totalNumberOfPoints;
+
+    // table
+    private int tableSize;
+    private DoubleBuffer x;
+    private DoubleBuffer y;
+    private IntBuffer id;
+    private IntBuffer zoom;
+    private IntBuffer expansionZoom;
+    private IntBuffer parentId;
+    private IntBuffer numPoints;
+    private IntBuffer childStart;
+    private IntBuffer children;
+    // Cluster objects created so far, shared by all levels
+    private Cluster[] table;
+    private int materialized = 0;
+
+    // levels
+    private int[] levelStart;
+    private IntBuffer levels;
+
+    // points, size -1 if the SuperCluster kept no raw points
+    private int pointsSize;
+    private DoubleBuffer pointX;
+    private DoubleBuffer pointY;
+    private IntBuffer pointZoom;
+    private IntBuffer pointParentId;
+
+    private ClusterSnapshot() {
+    }
+
+    /**
+     * Write the hierarchy of cluster into file
+     *
+     * @param cluster - a fully built SuperCluster, not a subclass
+     * @param file
+     * @throws IOException
+     */
+    public static void write(SuperCluster cluster, File file) throws IOException {
+        if (cluster.getClass() != SuperCluster.class) {
+            throw new IOException("only SuperCluster can be snapshotted, not " + cluster.getClass().getSimpleName());
+        }
+        // number the distinct Cluster objects, max zoom level first, then the ones created on lower levels
+        Map<Cluster, Integer> numbers = new IdentityHashMap<>();
+        List<Cluster> table = new ArrayList<>();
+        long childrenCount = 0;
+        int levelsCount = 0;
+        for (int z = cluster.maxZoom; z >= cluster.minZoom; z --) {
+            Cluster[] level = cluster.clusters[z];
+            if (level == null) {
+                throw new IOException("level " + z + " is not built");
+            }
+            levelsCount += level.length;
+            for (Cluster c: level) {
+                if (numbers.putIfAbsent(c, table.size()) == null) {
+                    table.add(c);
+                    childrenCount += c.children.size();
+                }
+            }
+        }
+        // children are clusters on max zoom level, all numbered above
+        if (childrenCount > Integer.MAX_VALUE / 4 || levelsCount > Integer.MAX_VALUE / 4) {
+            throw new IOException("hierarchy is too large to snapshot");
+        }
+        if (cluster.indexType == null) {
+            throw new IOException("index type is unknown");
+        }
+        byte[] indexType = cluster.indexType.getBytes(StandardCharsets.UTF_8);
+        if (indexType.length > MAX_INDEX_TYPE_BYTES) {
+            throw new IOException("index type is too long");
+        }
+        PointStore points = cluster.points;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(cluster.minZoom).putInt(cluster.maxZoom)
+                    .putInt(cluster.totalNumberOfPoints).putInt(table.size()).putLong(childrenCount)
+                    .putInt(points == null? -1: points.size).putInt(indexType.length).put(indexType);
+            buffer.position(HEADER_BYTES);
+
+            int n = table.size();
+            for (int k = 0; k < n; k ++) buffer = putDouble(channel, buffer, table.get(k).getX());
+            for (int k = 0; k < n; k ++) buffer = putDouble(channel, buffer, table.get(k).getY());
+            for (int k = 0; k < n; k ++) buffer = putInt(channel, buffer, table.get(k).getId());
+            for (int k = 0; k < n; k ++) buffer = putInt(channel, buffer, table.get(k).zoom);
+            for (int k = 0; k < n; k ++) buffer = putInt(channel, buffer, table.get(k).expansionZoom);
+            for (int k = 0; k < n; k ++) buffer = putInt(channel, buffer, table.get(k).parentId);
+            for (int k = 0; k < n; k ++) buffer = putInt(channel, buffer, table.get(k).numPoints);
+            int start = 0;
+            for (int k = 0; k < n; k ++) {
+                buffer = putInt(channel, buffer, start);
+                start += table.get(k).children.size();
+            }
+            buffer = putInt(channel, buffer, start);
+            for (int k = 0; k < n; k ++) {
+                for (Cluster child: table.get(k).children) {
+                    Integer number = numbers.get(child);
+                    if (number == null) {
+                        throw new IOException("child " + child.getId() + " is not on any level");
+                    }
+                    buffer = putInt(channel, buffer, number);
+                }
+            }
+
+            for (int z = cluster.minZoom; z <= cluster.maxZoom; z ++) {
+                buffer = putInt(channel, buffer, cluster.clusters[z].length);
+            }
+            for (int z = cluster.minZoom; z <= cluster.maxZoom; z ++) {
+                Cluster[] level = cluster.clusters[z];
+                int[] ids = new int[level.length];
+                double[] coords = new double[2 * level.length];
+                for (int i = 0; i < level.length; i ++) {
+                    ids[i] = numbers.get(level[i]);
+                    coords[2 * i] = level[i].getX();
+                    coords[2 * i + 1] = level[i].getY();
+                }
+                ImplicitKDTree.sort(ids, coords, 0, level.length - 1, 0);
+                for (int i = 0; i < level.length; i ++) {
+                    buffer = putInt(channel, buffer, ids[i]);
+                }
+            }
+
+            if (points != null) {
+                for (int i = 0; i < points.size; i ++) buffer = putDouble(channel, buffer, points.x[i]);
+                for (int i = 0; i < points.size; i ++) buffer = putDouble(channel, buffer, points.y[i]);
+                for (int i = 0; i < points.size; i ++) buffer = putInt(channel, buffer, points.zoom[i]);
+                for (int i = 0; i < points.size; i ++) buffer = putInt(channel, buffer, points.parentId[i]);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static ByteBuffer putDouble(FileChannel channel, ByteBuffer buffer, double value) throws IOException {
+        if (buffer.remaining() < 8) {
+            flush(channel, buffer);
+        }
+        return buffer.putDouble(value);
+    }
+
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush(channel, buffer);
+        }
+        return buffer.putInt(value);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Map a snapshot file, nothing else is read until levels are restored
+     *
+     * @param file
+     * @return
+     * @throws IOException - if the file is not a complete snapshot
+     */
+    public static ClusterSnapshot open(File file) throws IOException {
+        ClusterSnapshot snapshot = new ClusterSnapshot();
+        snapshot.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("truncated snapshot " + file);
+            }
+            ByteBuffer header = map(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("not a snapshot " + file);
+            }
+            snapshot.minZoom = header.getInt();
+            snapshot.maxZoom = header.getInt();
+            snapshot.totalNumberOfPoints = header.getInt();
+            int n = snapshot.tableSize = header.getInt();
+            int childrenCount = (int) header.getLong();
+            int pointsSize = snapshot.pointsSize = header.getInt();
+            byte[] indexType = new byte[header.getInt()];
+            header.get(indexType);
+            snapshot.indexType = new String(indexType, StandardCharsets.UTF_8);
+
+            int levelsNumber = snapshot.maxZoom - snapshot.minZoom + 1;
+            long offset = HEADER_BYTES;
+            snapshot.x = map(channel, offset, 8L * n).asDoubleBuffer();
+            offset += 8L * n;
+            snapshot.y = map(channel, offset, 8L * n).asDoubleBuffer();
+            offset += 8L * n;
+            snapshot.id = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            snapshot.zoom = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            snapshot.expansionZoom = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            snapshot.parentId = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            snapshot.numPoints = map(channel, offset, 4L * n).asIntBuffer();
+            offset += 4L * n;
+            snapshot.childStart = map(channel, offset, 4L * (n + 1)).asIntBuffer();
+            offset += 4L * (n + 1);
+            snapshot.children = map(channel, offset, 4L * childrenCount).asIntBuffer();
+            offset += 4L * childrenCount;
+
+            IntBuffer levelSizes = map(channel, offset, 4L * levelsNumber).asIntBuffer();
+            offset += 4L * levelsNumber;
+            snapshot.levelStart = new int[levelsNumber + 1];
+            for (int l = 0; l < levelsNumber; l ++) {
+                snapshot.levelStart[l + 1] = snapshot.levelStart[l] + levelSizes.get(l);
+            }
+            snapshot.levels = map(channel, offset, 4L * snapshot.levelStart[levelsNumber]).asIntBuffer();
+            offset += 4L * snapshot.levelStart[levelsNumber];
+
+            if (pointsSize >= 0) {
+                snapshot.pointX = map(channel, offset, 8L * pointsSize).asDoubleBuffer();
+                offset += 8L * pointsSize;
+                snapshot.pointY = map(channel, offset, 8L * pointsSize).asDoubleBuffer();
+                offset += 8L * pointsSize;
+                snapshot.pointZoom = map(channel, offset, 4L * pointsSize).asIntBuffer();
+                offset += 4L * pointsSize;
+                snapshot.pointParentId = map(channel, offset, 4L * pointsSize).asIntBuffer();
+                offset += 4L * pointsSize;
+            }
+            if (offset != channel.size()) {
+                throw new IOException("truncated snapshot " + file);
+            }
+        }
+        snapshot.table = new Cluster[snapshot.tableSize];
+        return snapshot;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+        if (offset + size > channel.size()) {
+            throw new IOException("truncated snapshot");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return a SuperCluster answering queries from this snapshot, its levels are restored on first use
+     */
+    public SuperCluster restore() {
+        SuperCluster cluster = new SuperCluster(minZoom, maxZoom, indexType);
+        cluster.totalNumberOfPoints = totalNumberOfPoints;
+        // levels are searched in the mapping, not in indexes of the cluster's index type
+        cluster.indexes = new I2DIndex[cluster.indexes.length];
+        cluster.snapshot = this;
+        return cluster;
+    }
+
+    /**
+     * @param z
+     * @return clusters of zoom level z, sharing objects with levels restored before
+     */
+    synchronized Cluster[] level(int z) {
+        int l = z - minZoom;
+        Cluster[] level = new Cluster[levelStart[l + 1] - levelStart[l]];
+        for (int i = 0; i < level.length; i ++) {
+            level[i] = cluster(levels.get(levelStart[l] + i));
+        }
+        return level;
+    }
+
+    private Cluster cluster(int k) {
+        if (table[k] != null) {
+            return table[k];
+        }
+        Cluster c = new Cluster(x.get(k), y.get(k), id.get(k));
+        c.zoom = zoom.get(k);
+        c.expansionZoom = expansionZoom.get(k);
+        c.parentId = parentId.get(k);
+        c.numPoints = numPoints.get(k);
+        int start = childStart.get(k), end = childStart.get(k + 1);
+        if (end > start) {
+            c.children = new Children(start, end);
+        }
+        table[k] = c;
+        materialized ++;
+        return c;
+    }
+
+    /**
+     * @return number of Cluster objects created so far
+     */
+    synchronized int materialized() {
+        return materialized;
+    }
+
+    /**
+     * Read-only children of a cluster, the Cluster object of a child is created when it is read first
+     */
+    private class Children extends AbstractList<Cluster> {
+        private final int start;
+        private final int end;
+
+        Children(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Cluster get(int i) {
+            if (i < 0 || i >= end - start) {
+                throw new IndexOutOfBoundsException("index " + i + ", size " + (end - start));
+            }
+            synchronized (ClusterSnapshot.this) {
+                return cluster(children.get(start + i));
+            }
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * @param z
+     * @return index of zoom level z searching the layout in the mapping, it does not support insert, load or delete
+     */
+    I2DIndex<Cluster> index(int z) {
+        return new LevelIndex(levelStart[z - minZoom], levelStart[z - minZoom + 1]);
+    }
+
+    /**
+     * Implicit KD-Tree of one level, the same search as util.StaticKDTree over the positions [from, to) of levels,
+     *   coordinates are read from the table by the table index at each position
+     */
+    private class LevelIndex implements I2DIndex<Cluster> {
+        private final int from;
+        private final int to;
+        // stack reused by searches, each entry is a triple [left, right, axis]
+        private int[] stack = new int[3 * 64];
+
+        LevelIndex(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void insert(Cluster point) {
+            throw new UnsupportedOperationException("a level of ClusterSnapshot does not support insert.");
+        }
+
+        @Override
+        public void load(Cluster[] points) {
+            throw new UnsupportedOperationException("a level of ClusterSnapshot does not support load.");
+        }
+
+        @Override
+        public void delete(Cluster point) {
+            throw new UnsupportedOperationException("a level of ClusterSnapshot does not support delete.");
+        }
+
+        @Override
+        public List<Cluster> within(I2DPoint center, double radius) {
+            List<Cluster> result = new ArrayList<>();
+            within(center, radius, result);
+            return result;
+        }
+
+        @Override
+        public void within(I2DPoint center, double radius, List<Cluster> result) {
+            synchronized (ClusterSnapshot.this) {
+                if (to == from) {
+                    return;
+                }
+                double qx = center.getX();
+                double qy = center.getY();
+                double radius2 = radius * radius;
+                int top = push(0, from, to - 1, 0);
+                while (top > 0) {
+                    int axis = stack[-- top];
+                    int right = stack[-- top];
+                    int left = stack[-- top];
+
+                    // leaf, scan all points
+                    if (right - left <= ImplicitKDTree.NODE_SIZE) {
+                        for (int i = left; i <= right; i ++) {
+                            int k = levels.get(i);
+                            if (squareDistance(x.get(k), y.get(k), qx, qy) <= radius2) {
+                                result.add(cluster(k));
+                            }
+                        }
+                        continue;
+                    }
+
+                    int m = (left + right) >>> 1;
+                    int k = levels.get(m);
+                    double mx = x.get(k);
+                    double my = y.get(k);
+                    if (squareDistance(mx, my, qx, qy) <= radius2) {
+                        result.add(cluster(k));
+                    }
+                    if (axis == 0? qx - radius <= mx: qy - radius <= my) {
+                        top = push(top, left, m - 1, 1 - axis);
+                    }
+                    if (axis == 0? qx + radius >= mx: qy + radius >= my) {
+                        top = push(top, m + 1, right, 1 - axis);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Cluster earliestWithin(I2DPoint center, double radius) {
+            Cluster earliest = null;
+            for (Cluster c: within(center, radius)) {
+                if (earliest == null || c.getId() < earliest.getId()) {
+                    earliest = c;
+                }
+            }
+            return earliest;
+        }
+
+        @Override
+        public List<Cluster> range(I2DPoint leftBottom, I2DPoint rightTop) {
+            List<Cluster> result = new ArrayList<>();
+            range(leftBottom, rightTop, result);
+            return result;
+        }
+
+        @Override
+        public void range(I2DPoint leftBottom, I2DPoint rightTop, List<Cluster> result) {
+            synchronized (ClusterSnapshot.this) {
+                if (to == from) {
+                    return;
+                }
+                double minX = leftBottom.getX();
+                double minY = leftBottom.getY();
+                double maxX = rightTop.getX();
+                double maxY = rightTop.getY();
+                int top = push(0, from, to - 1, 0);
+                while (top > 0) {
+                    int axis = stack[-- top];
+                    int right = stack[-- top];
+                    int left = stack[-- top];
+
+                    // leaf, scan all points
+                    if (right - left <= ImplicitKDTree.NODE_SIZE) {
+                        for (int i = left; i <= right; i ++) {
+                            int k = levels.get(i);
+                            double px = x.get(k);
+                            double py = y.get(k);
+                            if (px > minX && py > minY && px < maxX && py < maxY) {
+                                result.add(cluster(k));
+                            }
+                        }
+                        continue;
+                    }
+
+                    int m = (left + right) >>> 1;
+                    int k = levels.get(m);
+                    double mx = x.get(k);
+                    double my = y.get(k);
+                    if (mx > minX && my > minY && mx < maxX && my < maxY) {
+                        result.add(cluster(k));
+                    }
+                    if (axis == 0? minX <= mx: minY <= my) {
+                        top = push(top, left, m - 1, 1 - axis);
+                    }
+                    if (axis == 0? maxX >= mx: maxY >= my) {
+                        top = push(top, m + 1, right, 1 - axis);
+                    }
+                }
+            }
+        }
+
+        private double squareDistance(double x1, double y1, double x2, double y2) {
+            return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+        }
+
+        private int push(int top, int left, int right, int axis) {
+            if (top + 3 > stack.length) {
+                int[] newStack = new int[stack.length * 2];
+                System.arraycopy(stack, 0, newStack, 0, top);
+                stack = newStack;
+            }
+            stack[top] = left;
+            stack[top + 1] = right;
+            stack[top + 2] = axis;
+            return top + 3;
+        }
+
+        @Override
+        public void print() {
+            System.out.println("=================== ClusterSnapshot level ===================");
+            System.out.println("size = " + (to - from));
+        }
+    }
+
+    /**
+     * @return raw points below max zoom level, null if the SuperCluster kept none
+     */
+    synchronized PointStore points() {
+        if (pointsSize < 0) {
+            return null;
+        }
+        PointStore store = new PointStore(pointsSize);
+        pointX.duplicate().get(store.x);
+        pointY.duplicate().get(store.y);
+        pointZoom.duplicate().get(store.zoom);
+        pointParentId.duplicate().get(store.parentId);
+        return store;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public String getIndexType() {
+        return indexType;
+    }
+
+    public int getTotalNumberOfPoints() {
+        return totalNumberOfPoints;
+    }
+}
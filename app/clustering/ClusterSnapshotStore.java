@@ -0,0 +1,211 @@
+package clustering;
+
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Directory of ClusterSnapshot files, so SuperClusters survive restarts and evictions from ClusterCache
+ *
+ *     (1) key - the same as ClusterRegistry keys, together with zoom levels and the point source;
+ *     (2) budget - total bytes of files are bounded by cluster.snapshot.budget,
+ *                  the least recently used files are deleted first, last use is kept as the file's modified time;
+ *     (3) clear() - deletes all snapshots when the data behind them changes.
+ */
+public class ClusterSnapshotStore {
+
+    private static final String SUFFIX = ".snapshot";
+    // files being written are named <key>.snapshot.tmp<thread id>, and moved to <key>.snapshot when complete
+    private static final String TMP_SUFFIX = SUFFIX + ".tmp";
+    // a file being written is modified at least every write buffer, older ones are left by interrupted writes
+    private static final long STALE_TMP_MS = 60L * 60 * 1000;
+
+    private static ClusterSnapshotStore instance = null;
+
+    public static synchronized ClusterSnapshotStore getInstance() {
+        if (instance == null) {
+            instance = new ClusterSnapshotStore(new File(Constants.CLUSTER_SNAPSHOT_DIR), Constants.CLUSTER_SNAPSHOT_BUDGET);
+        }
+        return instance;
+    }
+
+    private File dir;
+    private long budget;
+    private long bytes = 0;
+    // file name -> bytes of the file
+    private Map<String, Long> files = new HashMap<>();
+
+    // statistics
+    private long restores = 0;
+    private long writes = 0;
+    private long evictions = 0;
+
+    /**
+     * @param dir - directory of snapshot files, created if not exists, files left in it are reused,
+     *              files other than snapshots are left alone, e.g. in a directory shared by mistake
+     * @param budget - bytes of all snapshot files
+     */
+    public ClusterSnapshotStore(File dir, long budget) {
+        this.dir = dir;
+        this.budget = budget;
+        File[] existing = dir.listFiles();
+        if (existing == null) {
+            return;
+        }
+        for (File file: existing) {
+            if (!file.getName().endsWith(SUFFIX)) {
+                // files of interrupted writes, not the ones other processes sharing the directory are writing
+                if (isTmp(file.getName()) && System.currentTimeMillis() - file.lastModified() > STALE_TMP_MS) {
+                    file.delete();
+                }
+                continue;
+            }
+            files.put(file.getName(), file.length());
+            bytes += file.length();
+        }
+        System.out.println("[ClusterSnapshotStore] opened " + dir + ", " + this);
+    }
+
+    /**
+     * @param key
+     * @return the SuperCluster reopened from the snapshot of key, null if none
+     */
+    public SuperCluster get(String key) {
+        File file = new File(dir, fileName(key));
+        synchronized (this) {
+            if (!files.containsKey(fileName(key))) {
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+        }
+        try {
+            long start = System.nanoTime();
+            SuperCluster cluster = ClusterSnapshot.open(file).restore();
+            long end = System.nanoTime();
+            System.out.println("[ClusterSnapshotStore] reopened key = " + key + " in " + (double) (end - start) / 1000000.0 + " ms");
+            synchronized (this) {
+                restores ++;
+            }
+            return cluster;
+        } catch (IOException e) {
+            System.err.println("[ClusterSnapshotStore] reopening " + file + " failed: " + e.getMessage());
+            remove(fileName(key));
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot of cluster for key, then delete least recently used snapshots beyond the budget
+     *
+     * @param key
+     * @param cluster - a fully built SuperCluster
+     * @return false if it is not written
+     */
+    public boolean put(String key, SuperCluster cluster) {
+        String name = fileName(key);
+        File file = new File(dir, name);
+        File tmp = new File(dir, name + ".tmp" + Thread.currentThread().getId());
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(dir.toPath());
+            ClusterSnapshot.write(cluster, tmp);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[ClusterSnapshotStore] writing " + file + " failed: " + e.getMessage());
+            tmp.delete();
+            return false;
+        }
+        long end = System.nanoTime();
+        synchronized (this) {
+            Long old = files.put(name, file.length());
+            if (old != null) {
+                bytes -= old;
+            }
+            bytes += file.length();
+            writes ++;
+            while (bytes > budget && !files.isEmpty()) {
+                String victim = null;
+                long victimUse = Long.MAX_VALUE;
+                for (String candidate: files.keySet()) {
+                    long lastUse = new File(dir, candidate).lastModified();
+                    if (victim == null || lastUse < victimUse) {
+                        victim = candidate;
+                        victimUse = lastUse;
+                    }
+                }
+                remove(victim);
+                evictions ++;
+            }
+            System.out.println("[ClusterSnapshotStore] wrote key = " + key + " in " + (double) (end - start) / 1000000.0 + " ms, " + this);
+            return files.containsKey(name);
+        }
+    }
+
+    /**
+     * Delete all snapshots
+     */
+    public synchronized void clear() {
+        for (String name: files.keySet().toArray(new String[0])) {
+            remove(name);
+        }
+    }
+
+    private synchronized void remove(String name) {
+        Long size = files.remove(name);
+        if (size == null) {
+            return;
+        }
+        bytes -= size;
+        // a file still mapped by a SuperCluster stays readable until unmapped
+        new File(dir, name).delete();
+    }
+
+    /**
+     * @param name
+     * @return true if name is <key>.snapshot.tmp<thread id>, see put()
+     */
+    private static boolean isTmp(String name) {
+        int at = name.lastIndexOf(TMP_SUFFIX);
+        if (at < 0 || at + TMP_SUFFIX.length() == name.length()) {
+            return false;
+        }
+        for (int i = at + TMP_SUFFIX.length(); i < name.length(); i ++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fileName(String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8").replace("*", "%2A") + SUFFIX;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return files.size();
+    }
+
+    public synchronized String toString() {
+        return "size = " + files.size() + ", bytes = " + bytes + " / " + budget
+                + ", restores = " + restores + ", writes = " + writes + ", evictions = " + evictions;
+    }
+}
@@ -23,7 +23,8 @@ public class DataAggregator extends SuperCluster {
     public DataAggregator(int _minZoom, int _maxZoom, String _indexType, boolean _analysis) {
         this.minZoom = _minZoom;
         this.maxZoom = _maxZoom;
-        this.indexType = _indexType;
+        // indexes are updated by insert / delete as points are loaded
+        this.indexType = IndexCreator.updatableIndexType(_indexType);
         this.index = IndexCreator.createIndex(indexType, 100);
         this.points = new ArrayList<>();
 
@@ -135,12 +136,17 @@ public class DataAggregator extends SuperCluster {
         }
         long end = System.nanoTime();
         double aggregateTime = (double) (end - start) / 1000000000.0;
-        MyTimer.temporaryTimer.put("aggregate", aggregateTime);
+        MyTimer.putTemporaryTime("aggregate", aggregateTime);
         System.out.println("[Data Aggregator] after aggregation, reduced to " + aggPoints.size() + " points.");
         System.out.println("[Data Aggregator] aggregation time: " + aggregateTime + " seconds.");
         return aggPoints.toArray(new Cluster[aggPoints.size()]);
     }
 
+    @Override
+    protected long numberOfClusters() {
+        return this.totalNumberOfPoints;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
     }
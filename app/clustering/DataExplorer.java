@@ -42,9 +42,12 @@ public class DataExplorer extends SuperCluster {
         System.out.println("Data Explorer loading " + points.size() + " points ... ...");
         this.totalNumberOfPoints += points.size();
         long start = System.nanoTime();
-        for (PointTuple point: points) {
-            this.index.insert(createPointCluster(point.getX(), point.getY(), point.getId()));
+        Cluster[] clusters = new Cluster[points.size()];
+        for (int i = 0; i < points.size(); i ++) {
+            PointTuple point = points.get(i);
+            clusters[i] = createPointCluster(point.getX(), point.getY(), point.getId());
         }
+        this.index.load(clusters);
         long end = System.nanoTime();
         if (keepTiming) timing.put("total", timing.get("total") + (double) (end - start) / 1000000000.0);
         System.out.println("Data Explorer loading is done!");
@@ -94,6 +97,11 @@ public class DataExplorer extends SuperCluster {
         return clusters;
     }
 
+    @Override
+    protected long numberOfClusters() {
+        return this.totalNumberOfPoints;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
     }
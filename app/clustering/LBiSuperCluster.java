@@ -34,6 +34,7 @@ public class LBiSuperCluster extends SuperCluster {
     Set<Cluster>[] updatedClusters;
     Set<Cluster>[] deletedClusters;
 
+
     int pointIdSeq;
     int pointSeqSeq;
     int totalInsertCount = 0;
@@ -56,7 +57,8 @@ public class LBiSuperCluster extends SuperCluster {
 
         this.minZoom = _minZoom;
         this.maxZoom = _maxZoom;
-        this.indexType = _indexType;
+        // indexes are updated by insert / delete as points are loaded
+        this.indexType = IndexCreator.updatableIndexType(_indexType);
         this.advocatorsIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
         this.advocatorClusters = new List[maxZoom + 1];
         this.clustersIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
@@ -81,7 +83,6 @@ public class LBiSuperCluster extends SuperCluster {
         if (keepTiming) {
             timing = new HashMap<>();
             timing.put("total", 0.0);
-            timing.put("findEarliest", 0.0);
             timing.put("insert-rangeSearch", 0.0);
             timing.put("shift-rangeSearch", 0.0);
             timing.put("mergeCalculation", 0.0);
@@ -353,16 +354,22 @@ public class LBiSuperCluster extends SuperCluster {
         }
 
         // check if average pairwise distance between all children of c is larger than differentiableDistance
+        // min / max are kept as squared distances, only the average needs sqrt of every pair
+        boolean avg = !measure.equalsIgnoreCase("min") && !measure.equalsIgnoreCase("max");
         double avgDistance = 0.0;
-        double minDistance = Double.MAX_VALUE;
-        double maxDistance = 0.0;
+        double minSquareDistance = Double.MAX_VALUE;
+        double maxSquareDistance = 0.0;
         for (int i = 0; i < c.children.size() - 1; i ++) {
+            Cluster ci = c.children.get(i);
             for (int j = 1; j < c.children.size(); j ++) {
-                avgDistance += c.children.get(i).distanceTo(c.children.get(j));
-                minDistance = Math.min(minDistance, c.children.get(i).distanceTo(c.children.get(j)));
-                maxDistance = Math.max(maxDistance, c.children.get(i).distanceTo(c.children.get(j)));
+                double squareDistance = ci.squareDistanceTo(c.children.get(j));
+                if (avg) avgDistance += Math.sqrt(squareDistance);
+                if (squareDistance < minSquareDistance) minSquareDistance = squareDistance;
+                if (squareDistance > maxSquareDistance) maxSquareDistance = squareDistance;
             }
         }
+        double minDistance = Math.sqrt(minSquareDistance);
+        double maxDistance = Math.sqrt(maxSquareDistance);
         c.diameter = maxDistance / 2.0;
         avgDistance = avgDistance * 2 / (c.children.size() * (c.children.size() -  1));
 
@@ -524,7 +531,7 @@ public class LBiSuperCluster extends SuperCluster {
             clusters = betterClusters.toArray(new Cluster[betterClusters.size()]);
             MyTimer.stopTimer();
             double treeCutTime = MyTimer.durationSeconds();
-            MyTimer.temporaryTimer.put("treeCut", treeCutTime);
+            MyTimer.putTemporaryTime("treeCut", treeCutTime);
             System.out.println("[LBiSuperCluster] tree-cut takes " + treeCutTime + " seconds.");
         }
 
@@ -578,13 +585,13 @@ public class LBiSuperCluster extends SuperCluster {
         double radius = getRadius(maxZoom);
 
         if (keepTiming) MyTimer.startTimer();
-        // Find all earlier advocators c can merge into
-        List<Advocator> advocators = this.advocatorsIndexes[maxZoom].within(c, radius);
+        // Find the earliest advocator c can merge into
+        Advocator earliestAdvocator = this.advocatorsIndexes[maxZoom].earliestWithin(c, radius);
         if (keepTiming) MyTimer.stopTimer();
         if (keepTiming) timing.put("insert-rangeSearch", timing.get("insert-rangeSearch") + MyTimer.durationSeconds());
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
             Advocator newAdvocator = new Advocator(c.getX(), c.getY(), c.seq);
             newAdvocator.cluster = c;
             c.advocator = newAdvocator;
@@ -609,20 +616,6 @@ public class LBiSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            if (keepTiming) MyTimer.startTimer();
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-            if (keepTiming) MyTimer.stopTimer();
-            if (keepTiming) timing.put("findEarliest", timing.get("findEarliest") + MyTimer.durationSeconds());
-
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
 
@@ -958,13 +951,13 @@ public class LBiSuperCluster extends SuperCluster {
         double radius = getRadius(zoom - 1);
 
         if (keepTiming) MyTimer.startTimer();
-        // Find all earlier advocators c can merge into
-        List<Advocator> advocators = this.advocatorsIndexes[zoom - 1].within(c, radius);
+        // Find the earliest advocator c can merge into
+        Advocator earliestAdvocator = this.advocatorsIndexes[zoom - 1].earliestWithin(c, radius);
         if (keepTiming) MyTimer.stopTimer();
         if (keepTiming) timing.put("insert-rangeSearch", timing.get("insert-rangeSearch") + MyTimer.durationSeconds());
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
 
             // create a parent cluster of c, and add it to zoom-1 level
             Cluster parent = createCluster(c.getX(), c.getY(), c.getId(), c.numPoints);
@@ -1001,20 +994,6 @@ public class LBiSuperCluster extends SuperCluster {
         // if earlier advocators' groups could be merged into
         else {
 
-            if (keepTiming) MyTimer.startTimer();
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-            if (keepTiming) MyTimer.stopTimer();
-            if (keepTiming) timing.put("findEarliest", timing.get("findEarliest") + MyTimer.durationSeconds());
-
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
 
@@ -1250,9 +1229,22 @@ public class LBiSuperCluster extends SuperCluster {
         delta1.numPoints = numPoints;
     }
 
+    /**
+     * Each cluster is in the cluster index of its level, and has an advocator in the advocator index of its level
+     *
+     * @return
+     */
+    @Override
+    protected long numberOfClusters() {
+        long count = 0;
+        for (int z = 0; z < this.advocatorClusters.length; z ++) {
+            count += this.advocatorClusters[z].size();
+        }
+        return 3 * count;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
-        System.out.println("    [find earliest] " + timing.get("findEarliest") + " seconds");
         System.out.println("    [insert range search] " + timing.get("insert-rangeSearch") + " seconds");
         System.out.println("    [shift range search] " + timing.get("shift-rangeSearch") + " seconds");
         System.out.println("    [merge calculation] " + timing.get("mergeCalculation") + " seconds");
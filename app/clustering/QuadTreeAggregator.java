@@ -321,6 +321,12 @@ public class QuadTreeAggregator extends SuperCluster {
         return results.toArray(new Cluster[results.size()]);
     }
 
+    @Override
+    protected long numberOfClusters() {
+        // one tree node per point at most
+        return this.totalNumberOfPoints;
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
     }
@@ -35,6 +35,7 @@ public class SBiSuperCluster extends SuperCluster {
     // clusters at each level that are flagged for handling insert, update and delete operations
     PriorityQueue<Cluster>[] flaggedClusters;
 
+
     int pointIdSeq;
     int pointSeqSeq;
     int totalInsertCount = 0;
@@ -49,7 +50,8 @@ public class SBiSuperCluster extends SuperCluster {
     public SBiSuperCluster(int _minZoom, int _maxZoom, String _indexType, boolean _analysis) {
         this.minZoom = _minZoom;
         this.maxZoom = _maxZoom;
-        this.indexType = _indexType;
+        // indexes are updated by insert / delete as points are loaded
+        this.indexType = IndexCreator.updatableIndexType(_indexType);
         this.advocatorsIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
         this.advocatorClusters = new List[maxZoom + 1];
         this.clustersIndexes = IndexCreator.createIndexArray(indexType, maxZoom + 1);
@@ -269,11 +271,11 @@ public class SBiSuperCluster extends SuperCluster {
     private void insert(Cluster c) {
         double radius = getRadius(maxZoom);
 
-        // Find all earlier advocators c can merge into
-        List<Advocator> advocators = this.advocatorsIndexes[maxZoom].within(c, radius);
+        // Find the earliest advocator c can merge into
+        Advocator earliestAdvocator = this.advocatorsIndexes[maxZoom].earliestWithin(c, radius);
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
             Advocator newAdvocator = new Advocator(c.getX(), c.getY(), c.seq);
             newAdvocator.cluster = c;
             c.advocator = newAdvocator;
@@ -290,17 +292,6 @@ public class SBiSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
 
@@ -601,11 +592,11 @@ public class SBiSuperCluster extends SuperCluster {
         if (zoom == minZoom) return;
         double radius = getRadius(zoom - 1);
 
-        // Find all earlier advocators c can merge into
-        List<Advocator> advocators = this.advocatorsIndexes[zoom - 1].within(c, radius);
+        // Find the earliest advocator c can merge into
+        Advocator earliestAdvocator = this.advocatorsIndexes[zoom - 1].earliestWithin(c, radius);
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
 
             // create a parent cluster of c, and add it to zoom-1 level
             Cluster parent = createCluster(c.getX(), c.getY(), c.getId(), c.numPoints);
@@ -685,17 +676,6 @@ public class SBiSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
 
@@ -739,11 +719,11 @@ public class SBiSuperCluster extends SuperCluster {
         double radius = getRadius(zoom - 1);
 
         if (isAdvocatorOfParent(c)) {
-            // Find all earlier advocators c can merge into
-            List<Advocator> advocators = this.advocatorsIndexes[zoom - 1].within(c, radius);
+            // Find whether any earlier advocator c can merge into
+            Advocator earliestAdvocator = this.advocatorsIndexes[zoom - 1].earliestWithin(c, radius);
 
             // if no group could be merged into, merge other clusters or split children clusters
-            if (advocators.isEmpty()) {
+            if (earliestAdvocator == null) {
                 List<Cluster> toMerge = toMerge(c, zoom);
                 List<Cluster> toSplit = toSplit(c, zoom);
                 // shift the advocator "from"'s location to the centroid of cluster c
@@ -944,6 +924,20 @@ public class SBiSuperCluster extends SuperCluster {
         update(c, delta.x, delta.y, delta.numPoints);
     }
 
+    /**
+     * Each cluster is in the cluster index of its level, and has an advocator in the advocator index of its level
+     *
+     * @return
+     */
+    @Override
+    protected long numberOfClusters() {
+        long count = 0;
+        for (int z = 0; z < this.advocatorClusters.length; z ++) {
+            count += this.advocatorClusters[z].size();
+        }
+        return 3 * count;
+    }
+
     /**
      * Merge given delta (dx, dy, dNumPoints) into delta
      *
@@ -1,11 +1,16 @@
 package clustering;
 
 import model.Cluster;
+import model.CoordinateBuffer;
+import model.PointStore;
 import model.PointTuple;
 import util.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class SuperCluster {
 
@@ -17,9 +22,30 @@ public class SuperCluster {
     String indexType; // KDTree / GridIndex
     I2DIndex<Cluster>[] indexes;
     Cluster[][] clusters;
+    // raw points below maxZoom level, kept in arrays instead of Cluster objects
+    PointStore points;
+    // snapshot this SuperCluster was reopened from, levels and raw points are restored from it on first use
+    ClusterSnapshot snapshot;
 
     private double[] radiuses; // store computed radius of each zoom level
 
+    // reusable result list of within searches in the clustering loop
+    private List<Cluster> neighbors = new ArrayList<>();
+
+    // number of threads to build hierarchy, 1 - build sequentially
+    int parallelism;
+    // pool of threads to build hierarchy, only alive during buildHierarchy when parallelism > 1
+    private ForkJoinPool pool;
+    // levels with fewer points than this are always clustered sequentially
+    private static final int PARALLEL_THRESHOLD = 10000;
+    // number of strips each thread gets when partitioning a level
+    private static final int STRIPS_PER_THREAD = 4;
+
+    // rough heap bytes of one Cluster object with its children list and its entry in the level's index
+    static final int CLUSTER_BYTES = 128;
+    // heap bytes of one raw point in PointStore: x, y, zoom and parentId
+    static final int POINT_BYTES = 24;
+
     private void initRadiuses() {
         this.radiuses = new double[maxZoom + 1];
         for (int i = 0; i < this.radiuses.length; i ++) {
@@ -32,8 +58,13 @@ public class SuperCluster {
     }
 
     public SuperCluster(int _minZoom, int _maxZoom, String _indexType) {
+        this(_minZoom, _maxZoom, _indexType, Constants.CLUSTER_PARALLELISM);
+    }
+
+    public SuperCluster(int _minZoom, int _maxZoom, String _indexType, int _parallelism) {
         this.minZoom = _minZoom;
         this.maxZoom = _maxZoom;
+        this.parallelism = _parallelism;
 
         this.indexType = _indexType;
         this.indexes = IndexCreator.createIndexArray(this.indexType, maxZoom + 2);
@@ -42,57 +73,101 @@ public class SuperCluster {
         this.initRadiuses();
     }
 
-    private Cluster[] createPointClusters(double[][] points) {
-        Cluster[] clusters = new Cluster[points.length];
+    private PointStore createPointStore(double[][] points) {
+        PointStore store = new PointStore(points.length);
         for (int i = 0; i < points.length; i ++) {
-            clusters[i] = createPointCluster(points[i][0], points[i][1], i);
+            store.set(i, lngX(points[i][0]), latY(points[i][1]));
         }
-        return clusters;
+        return store;
     }
 
-    private Cluster[] createPointClusters(List<PointTuple> points) {
-        Cluster[] clusters = new Cluster[points.size()];
+    private PointStore createPointStore(List<PointTuple> points) {
+        PointStore store = new PointStore(points.size());
         for (int i = 0; i < points.size(); i ++) {
-            clusters[i] = createPointCluster(points.get(i).getX(), points.get(i).getY(), i);
+            store.set(i, lngX(points.get(i).getX()), latY(points.get(i).getY()));
         }
-        return clusters;
+        return store;
+    }
+
+    private PointStore createPointStore(CoordinateBuffer points) {
+        PointStore store = new PointStore(points.size());
+        for (int i = 0; i < points.size(); i ++) {
+            store.set(i, lngX(points.getX(i)), latY(points.getY(i)));
+        }
+        return store;
     }
 
     /**
      * build hierarchy of the super cluster
      *
-     * @param clusters - point clusters created from raw clusters
+     * @param points - raw points store
      */
-    private void buildHierarchy(Cluster[] clusters) {
-        // index input clusters into a KD-tree
-        this.indexes[maxZoom + 1] = IndexCreator.createIndex(this.indexType, getRadius(maxZoom));
-        this.indexes[maxZoom + 1].load(clusters);
-        this.clusters[maxZoom + 1] = clusters;
+    private void buildHierarchy(PointStore points) {
+        if (this.parallelism > 1) {
+            this.pool = new ForkJoinPool(this.parallelism);
+        }
 
-        // cluster clusters on max zoom, then cluster the results on previous zoom, etc.;
-        // results in a cluster hierarchy across zoom levels
-        for (int z = maxZoom; z >= minZoom; z --) {
-            // create a new set of clusters for the zoom and index them with a KD-tree
-            clusters = this._clusters(clusters, z);
-            this.indexes[z] = IndexCreator.createIndex(this.indexType, getRadius(z - 1 >= 0? z - 1: 0));
-            this.indexes[z].load(clusters);
-            this.clusters[z] = clusters;
+        // index raw points into the store's own KD-tree
+        points.index();
+        this.points = points;
+
+        try {
+            // cluster raw points on max zoom, only clusters on max zoom are created as Cluster objects
+            Cluster[] clusters = this.pool == null? this._clusters(points, maxZoom): this._clustersInParallel(points, maxZoom);
+            this.indexes[maxZoom] = IndexCreator.createIndex(this.indexType, getRadius(maxZoom - 1 >= 0? maxZoom - 1: 0));
+            this.indexes[maxZoom].load(clusters);
+            this.clusters[maxZoom] = clusters;
+
+            // cluster the results on previous zoom, etc.;
+            // results in a cluster hierarchy across zoom levels
+            for (int z = maxZoom - 1; z >= minZoom; z --) {
+                // create a new set of clusters for the zoom and index them with a KD-tree
+                clusters = this.pool == null? this._clusters(clusters, z): this._clustersInParallel(clusters, z);
+                this.indexes[z] = IndexCreator.createIndex(this.indexType, getRadius(z - 1 >= 0? z - 1: 0));
+                this.indexes[z].load(clusters);
+                this.clusters[z] = clusters;
+            }
+        } finally {
+            if (this.pool != null) {
+                this.pool.shutdown();
+                this.pool = null;
+            }
         }
 
-        // abandon the tree and array storing the raw data, to be fair with iSuperCluster
-        this.indexes[maxZoom + 1] = null;
-        this.clusters[maxZoom + 1] = null;
+        // abandon the tree storing the raw data, to be fair with iSuperCluster,
+        // keep the parentIds of raw points for clustering labels
+        points.dropIndex();
     }
 
     public void load(List<PointTuple> points) {
         System.out.println("SuperCluster loading " + points.size() + " clusters ... ...");
         long start = System.nanoTime();
         this.totalNumberOfPoints = points.size();
-        // generate a cluster object for each point
-        Cluster[] clusters = createPointClusters(points);
+        // store coordinates of each point in arrays
+        PointStore store = createPointStore(points);
+
+        // build hierarchy of clusters based on the raw points
+        buildHierarchy(store);
+
+        long end = System.nanoTime();
+        System.out.println("SuperCluster loading is done!");
+        System.out.println("Clustering time: " + (double) (end - start) / 1000000000.0 + " seconds.");
+        System.out.println("Max zoom level clusters # = " + this.clusters[maxZoom].length);
+    }
+
+    /**
+     * @param points - coordinates collected chunk by chunk from a point source,
+     *                 only SuperCluster loads them, incremental subclasses load lists or arrays
+     */
+    public void load(CoordinateBuffer points) {
+        System.out.println("SuperCluster loading " + points.size() + " clusters ... ...");
+        long start = System.nanoTime();
+        this.totalNumberOfPoints = points.size();
+        // store coordinates of each point in arrays
+        PointStore store = createPointStore(points);
 
-        // build hierarchy of clusters based on the clusters for raw clusters
-        buildHierarchy(clusters);
+        // build hierarchy of clusters based on the raw points
+        buildHierarchy(store);
 
         long end = System.nanoTime();
         System.out.println("SuperCluster loading is done!");
@@ -108,11 +183,11 @@ public class SuperCluster {
         System.out.println("SuperCluster loading " + points.length + " clusters ... ...");
         long start = System.nanoTime();
         this.totalNumberOfPoints = points.length;
-        // generate a cluster object for each point
-        Cluster[] clusters = createPointClusters(points);
+        // store coordinates of each point in arrays
+        PointStore store = createPointStore(points);
 
-        // build hierarchy of clusters based on the clusters for raw clusters
-        buildHierarchy(clusters);
+        // build hierarchy of clusters based on the raw points
+        buildHierarchy(store);
 
         long end = System.nanoTime();
         System.out.println("SuperCluster loading is done!");
@@ -120,88 +195,381 @@ public class SuperCluster {
         System.out.println("Max zoom level clusters # = " + this.clusters[maxZoom].length);
     }
 
-    protected Cluster[] _clusters(Cluster[] points, int zoom) {
+    /**
+     * cluster raw points in the store on given zoom level,
+     *     the same as _clusters(Cluster[], zoom), except that
+     *     only single points and parent clusters on this level are created as Cluster objects,
+     *     and parent clusters do not keep raw points as children, raw points keep their parentIds in the store.
+     *
+     * @param points
+     * @param zoom
+     * @return
+     */
+    private Cluster[] _clusters(PointStore points, int zoom) {
         List<Cluster> clusters = new ArrayList<>();
 
         double r = getRadius(zoom);
 
         // loop through each point
-        for (int i = 0; i < points.length; i ++) {
-            Cluster p = points[i];
+        for (int i = 0; i < points.size; i ++) {
+            Cluster cluster = clusterPoint(points, i, i, zoom, r);
+            if (cluster != null) {
+                clusters.add(cluster);
+            }
+        }
+
+        return clusters.toArray(new Cluster[clusters.size()]);
+    }
+
+    /**
+     * cluster the point k in the store together with its unvisited neighbors on given zoom level
+     *
+     * @param points - store to search neighbors in and to mark visited points in
+     * @param k - index of the point in the store
+     * @param i - index of the point in the whole input, the cluster's id is encoded with it
+     * @param zoom
+     * @param r
+     * @return the single point or the new parent cluster, null if the point is already visited on this zoom level
+     */
+    private Cluster clusterPoint(PointStore points, int k, int i, int zoom, double r) {
+        // if we've already visited the point at this zoom level, skip it
+        if (points.zoom[k] <= zoom) {
+            return null;
+        }
+        points.zoom[k] = zoom;
+
+        // find all nearby points
+        int count = points.within(points.x[k], points.y[k], r);
 
-            // if we've already visited the point at this zoom level, skip it
-            if (p.zoom <= zoom) {
+        int numPoints = 1;
+        double wx = points.x[k];
+        double wy = points.y[k];
+
+        // encode both zoom and point index on which the cluster originated
+        int id = (i << 5) + (zoom + 1);
+
+        for (int j = 0; j < count; j ++) {
+            int neighbor = points.neighbor(j);
+
+            // filter out neighbors that are already processed or the point itself
+            if (points.zoom[neighbor] <= zoom) {
                 continue;
             }
+            points.zoom[neighbor] = zoom; // save the zoom (so it doesn't get processed twice)
+
+            // accumulate coordinates for calculating weighted center
+            wx += points.x[neighbor];
+            wy += points.y[neighbor];
+
+            numPoints ++;
+            points.parentId[neighbor] = id;
+        }
+
+        if (numPoints == 1) {
+            Cluster p = new Cluster(points.x[k], points.y[k], i);
             p.zoom = zoom;
+            return p;
+        } else {
+            points.parentId[k] = id;
+            Cluster parent = createCluster(wx / numPoints, wy / numPoints, id, numPoints);
+            parent.expansionZoom = zoom + 1;
+            return parent;
+        }
+    }
 
-            // find all nearby clusters
-            I2DIndex<Cluster> tree = this.indexes[zoom + 1];
-            List<Cluster> neighbors = tree.within(p, r);
+    protected Cluster[] _clusters(Cluster[] points, int zoom) {
+        List<Cluster> clusters = new ArrayList<>();
 
-            int numPoints = p.numPoints == 0? 1: p.numPoints;
-            double wx = p.getX() * numPoints;
-            double wy = p.getY() * numPoints;
+        double r = getRadius(zoom);
+        I2DIndex<Cluster> tree = this.indexes[zoom + 1];
 
-            // encode both zoom and point index on which the cluster originated
-            int id = (i << 5) + (zoom + 1);
+        // loop through each point
+        for (int i = 0; i < points.length; i ++) {
+            Cluster cluster = clusterPoint(points[i], i, zoom, r, tree, this.neighbors);
+            if (cluster != null) {
+                clusters.add(cluster);
+            }
+        }
 
-            // store all children Ids in parent cluster
-            List<Cluster> children = new ArrayList<>();
+        return clusters.toArray(new Cluster[clusters.size()]);
+    }
 
-            for (Cluster neighbor : neighbors) {
+    /**
+     * cluster the point p together with its unvisited neighbors on given zoom level
+     *
+     * @param p
+     * @param i - index of p in the level's array, the cluster's id is encoded with it
+     * @param zoom
+     * @param r
+     * @param tree - index to search neighbors in
+     * @param neighbors - reusable result list of the neighbors search
+     * @return p itself or the new parent cluster, null if p is already visited on this zoom level
+     */
+    private Cluster clusterPoint(Cluster p, int i, int zoom, double r, I2DIndex<Cluster> tree, List<Cluster> neighbors) {
+        // if we've already visited the point at this zoom level, skip it
+        if (p.zoom <= zoom) {
+            return null;
+        }
+        p.zoom = zoom;
 
-                // filter out neighbors that are already processed or the point itself
-                if (neighbor.zoom <= zoom) {
-                    continue;
-                }
-                neighbor.zoom = zoom; // save the zoom (so it doesn't get processed twice)
+        // find all nearby clusters
+        neighbors.clear();
+        tree.within(p, r, neighbors);
 
-                int numPoints2 = neighbor.numPoints == 0? 1: neighbor.numPoints;
-                // accumulate coordinates for calculating weighted center
-                wx += neighbor.getX() * numPoints2;
-                wy += neighbor.getY() * numPoints2;
+        int numPoints = p.numPoints == 0? 1: p.numPoints;
+        double wx = p.getX() * numPoints;
+        double wy = p.getY() * numPoints;
 
-                numPoints += numPoints2;
-                neighbor.parentId = id;
+        // encode both zoom and point index on which the cluster originated
+        int id = (i << 5) + (zoom + 1);
 
-                // children is empty, this neighbor is an original point
-                if (neighbor.children.isEmpty()) {
-                    children.add(neighbor);
-                }
-                // children is not empty, this neighbor is already a cluster
-                else {
-                    children.addAll(neighbor.children);
-                }
+        // store all children Ids in parent cluster
+        List<Cluster> children = new ArrayList<>();
+
+        for (int k = 0; k < neighbors.size(); k ++) {
+            Cluster neighbor = neighbors.get(k);
+
+            // filter out neighbors that are already processed or the point itself
+            if (neighbor.zoom <= zoom) {
+                continue;
             }
+            neighbor.zoom = zoom; // save the zoom (so it doesn't get processed twice)
 
-            if (numPoints == 1) {
-                clusters.add(p);
-            } else {
-                p.parentId = id;
-                Cluster parent = createCluster(wx / numPoints, wy / numPoints, id, numPoints);
+            int numPoints2 = neighbor.numPoints == 0? 1: neighbor.numPoints;
+            // accumulate coordinates for calculating weighted center
+            wx += neighbor.getX() * numPoints2;
+            wy += neighbor.getY() * numPoints2;
+
+            numPoints += numPoints2;
+            neighbor.parentId = id;
+
+            // children is empty, this neighbor is an original point or a cluster on max zoom level
+            if (neighbor.children.isEmpty()) {
+                children.add(neighbor);
+            }
+            // children is not empty, this neighbor is already a cluster
+            else {
+                children.addAll(neighbor.children);
+            }
+        }
+
+        if (numPoints == 1) {
+            return p;
+        } else {
+            p.parentId = id;
+            Cluster parent = createCluster(wx / numPoints, wy / numPoints, id, numPoints);
+
+            // children is empty, this point is an original point or a cluster on max zoom level
+            if (p.children.isEmpty()) {
+                children.add(p);
+            }
+            // children is not empty, this point is already a cluster
+            else {
+                children.addAll(p.children);
+            }
+            parent.children = children;
+
+            // the only child is an original point
+            if (parent.children.size() == 1 && parent.children.get(0).numPoints == 0) {
+                parent.expansionZoom = parent.children.get(0).expansionZoom;
+            }
+            else {
+                parent.expansionZoom = zoom  + 1;
+            }
+
+            return parent;
+        }
+    }
 
-                // children is empty, this point is an original point
-                if (p.children.isEmpty()) {
-                    children.add(p);
+    /**
+     * cluster raw points in the store on given zoom level in parallel,
+     *     (1) split points into strips along x, each strip is clustered by one task with its own KD-tree,
+     *         only points farther than r from both borders of their strip are taken as cluster centers,
+     *         so that all their neighbors are inside the same strip and no two tasks touch the same point;
+     *     (2) then the remaining points near strip borders are clustered sequentially
+     *         with the store's KD-tree in input order, already clustered points are skipped.
+     *     The result only depends on the points and parallelism, not on the scheduling of tasks.
+     *
+     * @param points
+     * @param zoom
+     * @return
+     */
+    private Cluster[] _clustersInParallel(PointStore points, int zoom) {
+        double r = getRadius(zoom);
+        double[] bounds = points.size < PARALLEL_THRESHOLD? new double[0]: partition(points.x, r);
+        if (bounds.length == 0) {
+            return _clusters(points, zoom);
+        }
+        int[][] strips = split(points.x, bounds);
+
+        // cluster formed by each point as center, in input order
+        Cluster[] centers = new Cluster[points.size];
+
+        // (1) cluster inner points of each strip in parallel
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int s = 0; s < strips.length; s ++) {
+            int[] strip = strips[s];
+            double lower = s == 0? Double.NEGATIVE_INFINITY: bounds[s - 1];
+            double upper = s == bounds.length? Double.POSITIVE_INFINITY: bounds[s];
+            tasks.add(this.pool.submit(() -> {
+                PointStore stripPoints = new PointStore(strip.length);
+                for (int k = 0; k < strip.length; k ++) {
+                    stripPoints.set(k, points.x[strip[k]], points.y[strip[k]]);
+                }
+                stripPoints.index();
+                for (int k = 0; k < strip.length; k ++) {
+                    double x = stripPoints.x[k];
+                    if (x - lower > r && upper - x > r) {
+                        centers[strip[k]] = clusterPoint(stripPoints, k, strip[k], zoom, r);
+                    }
                 }
-                // children is not empty, this point is already a cluster
-                else {
-                    children.addAll(p.children);
+                // write back the status of points in this strip
+                for (int k = 0; k < strip.length; k ++) {
+                    points.zoom[strip[k]] = stripPoints.zoom[k];
+                    points.parentId[strip[k]] = stripPoints.parentId[k];
                 }
-                parent.children = children;
+            }));
+        }
+        for (ForkJoinTask<?> task: tasks) {
+            task.join();
+        }
+
+        // (2) stitch the strips, cluster the remaining points sequentially
+        for (int i = 0; i < points.size; i ++) {
+            if (centers[i] == null) {
+                centers[i] = clusterPoint(points, i, i, zoom, r);
+            }
+        }
+
+        return collect(centers);
+    }
 
-                if (parent.children.size() == 1) {
-                    parent.expansionZoom = parent.children.get(0).expansionZoom;
+    /**
+     * cluster clusters on given zoom level in parallel,
+     *     the same as _clustersInParallel(PointStore, zoom), but on clusters of the level below.
+     *
+     * @param points
+     * @param zoom
+     * @return
+     */
+    private Cluster[] _clustersInParallel(Cluster[] points, int zoom) {
+        double r = getRadius(zoom);
+        double[] xs = new double[points.length];
+        for (int i = 0; i < points.length; i ++) {
+            xs[i] = points[i].getX();
+        }
+        double[] bounds = points.length < PARALLEL_THRESHOLD? new double[0]: partition(xs, r);
+        if (bounds.length == 0) {
+            return _clusters(points, zoom);
+        }
+        int[][] strips = split(xs, bounds);
+
+        // cluster formed by each point as center, in input order
+        Cluster[] centers = new Cluster[points.length];
+
+        // (1) cluster inner points of each strip in parallel
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int s = 0; s < strips.length; s ++) {
+            int[] strip = strips[s];
+            double lower = s == 0? Double.NEGATIVE_INFINITY: bounds[s - 1];
+            double upper = s == bounds.length? Double.POSITIVE_INFINITY: bounds[s];
+            tasks.add(this.pool.submit(() -> {
+                Cluster[] stripPoints = new Cluster[strip.length];
+                for (int k = 0; k < strip.length; k ++) {
+                    stripPoints[k] = points[strip[k]];
                 }
-                else {
-                    parent.expansionZoom = zoom  + 1;
+                I2DIndex<Cluster> tree = IndexCreator.createIndex(this.indexType, r);
+                tree.load(stripPoints);
+                List<Cluster> neighbors = new ArrayList<>();
+                for (int k = 0; k < strip.length; k ++) {
+                    double x = xs[strip[k]];
+                    if (x - lower > r && upper - x > r) {
+                        centers[strip[k]] = clusterPoint(stripPoints[k], strip[k], zoom, r, tree, neighbors);
+                    }
                 }
+            }));
+        }
+        for (ForkJoinTask<?> task: tasks) {
+            task.join();
+        }
+
+        // (2) stitch the strips, cluster the remaining points sequentially
+        I2DIndex<Cluster> tree = this.indexes[zoom + 1];
+        for (int i = 0; i < points.length; i ++) {
+            if (centers[i] == null) {
+                centers[i] = clusterPoint(points[i], i, zoom, r, tree, this.neighbors);
+            }
+        }
+
+        return collect(centers);
+    }
 
-                clusters.add(parent);
+    /**
+     * split the x range of points into strips holding about the same number of points,
+     *     strips narrower than 4 * r are merged into the next one,
+     *     since a strip has no inner points farther than r from both its borders if it is narrower than 2 * r.
+     *
+     * @param xs - x coordinates of points
+     * @param r
+     * @return borders between strips in ascending order, empty if the points should not be split
+     */
+    private double[] partition(double[] xs, double r) {
+        double[] sorted = xs.clone();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+        int m = this.parallelism * STRIPS_PER_THREAD;
+
+        double[] bounds = new double[m - 1];
+        int count = 0;
+        double last = sorted[0];
+        for (int j = 1; j < m; j ++) {
+            double bound = sorted[(int) ((long) j * n / m)];
+            if (bound - last >= 4 * r) {
+                bounds[count ++] = bound;
+                last = bound;
             }
         }
+        // the last strip is too narrow, merge it into the previous one
+        if (count > 0 && sorted[n - 1] - bounds[count - 1] < 4 * r) {
+            count --;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * assign points to strips, a point on the border between two strips belongs to the right one
+     *
+     * @param xs - x coordinates of points
+     * @param bounds - borders between strips in ascending order
+     * @return indexes of points in each strip, in input order
+     */
+    private int[][] split(double[] xs, double[] bounds) {
+        int[] stripOf = new int[xs.length];
+        int[] sizes = new int[bounds.length + 1];
+        for (int i = 0; i < xs.length; i ++) {
+            int pos = Arrays.binarySearch(bounds, xs[i]);
+            stripOf[i] = pos >= 0? pos + 1: - (pos + 1);
+            sizes[stripOf[i]] ++;
+        }
+        int[][] strips = new int[sizes.length][];
+        for (int s = 0; s < sizes.length; s ++) {
+            strips[s] = new int[sizes[s]];
+            sizes[s] = 0;
+        }
+        for (int i = 0; i < xs.length; i ++) {
+            int s = stripOf[i];
+            strips[s][sizes[s] ++] = i;
+        }
+        return strips;
+    }
 
+    private Cluster[] collect(Cluster[] centers) {
+        List<Cluster> clusters = new ArrayList<>();
+        for (int i = 0; i < centers.length; i ++) {
+            if (centers[i] != null) {
+                clusters.add(centers[i]);
+            }
+        }
         return clusters.toArray(new Cluster[clusters.size()]);
     }
 
@@ -221,6 +589,58 @@ public class SuperCluster {
         return c;
     }
 
+    /**
+     * Create all clusters of given zoom level from the snapshot if not yet, for queries needing the whole level
+     *
+     * @param zoom
+     */
+    void restore(int zoom) {
+        if (this.snapshot == null || zoom < minZoom || zoom > maxZoom) {
+            return;
+        }
+        synchronized (this.snapshot) {
+            if (this.clusters[zoom] != null) {
+                return;
+            }
+            long start = System.nanoTime();
+            restoreIndex(zoom);
+            this.clusters[zoom] = this.snapshot.level(zoom);
+            long end = System.nanoTime();
+            System.out.println("[SuperCluster] restored zoom level " + zoom + " with " + this.clusters[zoom].length + " clusters from snapshot in "
+                    + (double) (end - start) / 1000000.0 + " ms");
+        }
+    }
+
+    /**
+     * Use the index of given zoom level in the snapshot if not yet, its clusters are created as queries return them
+     *
+     * @param zoom
+     */
+    void restoreIndex(int zoom) {
+        if (this.snapshot == null || zoom < minZoom || zoom > maxZoom) {
+            return;
+        }
+        synchronized (this.snapshot) {
+            if (this.indexes[zoom] == null) {
+                this.indexes[zoom] = this.snapshot.index(zoom);
+            }
+        }
+    }
+
+    /**
+     * Create raw points from the snapshot if not yet
+     */
+    void restorePoints() {
+        if (this.snapshot == null) {
+            return;
+        }
+        synchronized (this.snapshot) {
+            if (this.points == null) {
+                this.points = this.snapshot.points();
+            }
+        }
+    }
+
     /**
      * Get an array of Clusters for given visible region and zoom level
      *
@@ -246,6 +666,7 @@ public class SuperCluster {
             return concat(easternHem, westernHem);
         }
 
+        restoreIndex(this._limitZoom(zoom));
         I2DIndex<Cluster> tree = this.indexes[this._limitZoom(zoom)];
         Cluster leftBottom = createPointCluster(minLng, maxLat);
         Cluster rightTop = createPointCluster(maxLng, minLat);
@@ -312,6 +733,7 @@ public class SuperCluster {
         if (zoom < minZoom || zoom  > maxZoom + 1) {
             return null;
         }
+        restore(zoom);
         Cluster[] clusters = new Cluster[this.clusters[zoom].length];
         for (int i = 0; i < this.clusters[zoom].length; i ++) {
             Cluster cluster = this.clusters[zoom][i].clone();
@@ -335,6 +757,7 @@ public class SuperCluster {
         }
         int[] labels = new int[totalNumberOfPoints];
         Cluster[] clusters = getClusters(zoom);
+        restorePoints();
         //-DEBUG-//
 //        System.out.println("[getClusteringLabels] clusters size = " + clusters.length);
 //        for (int i = 0; i < clusters.length; i ++) {
@@ -348,14 +771,37 @@ public class SuperCluster {
 //            System.out.println();
 //        }
         //-DEBUG-//
+        // labels of clusters on max zoom level, indexed by the point index on which the cluster originated,
+        //   null if raw points are not in the store (iSuperCluster), there raw points are children only if keepPoints
+        int[] maxZoomLabels = this.points == null? null: new int[totalNumberOfPoints];
         for (int i = 0; i < clusters.length; i ++) {
             Cluster cluster = clusters[i];
             if (cluster.numPoints == 0) {
                 labels[cluster.getId()] = cluster.getId();
             }
+            // cluster on max zoom level, its raw points are in the store
+            else if (cluster.children.isEmpty()) {
+                if (maxZoomLabels != null) {
+                    maxZoomLabels[cluster.getId() >> 5] = cluster.getId();
+                }
+            }
             else {
                 for (Cluster child : cluster.children) {
-                    labels[child.getId()] = cluster.getId();
+                    if (child.numPoints == 0) {
+                        labels[child.getId()] = cluster.getId();
+                    }
+                    // child is a cluster on max zoom level
+                    else if (maxZoomLabels != null) {
+                        maxZoomLabels[child.getId() >> 5] = cluster.getId();
+                    }
+                }
+            }
+        }
+        // raw points inside clusters on max zoom level get the label of their cluster
+        if (this.points != null) {
+            for (int i = 0; i < this.points.size; i ++) {
+                if (this.points.parentId[i] != -1) {
+                    labels[i] = maxZoomLabels[this.points.parentId[i] >> 5];
                 }
             }
         }
@@ -375,6 +821,7 @@ public class SuperCluster {
             return -1.0;
         }
 
+        restore(zoom);
         Cluster[] clusters = this.clusters[zoom];
         Cluster c1 = null, c2 = null;
         for (int i = 0; i < clusters.length; i ++) {
@@ -404,6 +851,39 @@ public class SuperCluster {
         return this.radiuses[zoom];
     }
 
+    /**
+     * Rough estimate of heap bytes held by this SuperCluster,
+     *   used by ClusterCache to keep cached instances within a heap budget
+     *
+     * @return
+     */
+    public long estimateBytes() {
+        long bytes = (long) CLUSTER_BYTES * numberOfClusters();
+        if (this.points != null) {
+            bytes += (long) POINT_BYTES * this.points.size;
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of Cluster objects (together with their index entries) held by this SuperCluster
+     *
+     * @return
+     */
+    protected long numberOfClusters() {
+        // reopened from a snapshot, its indexes stay in the mapping
+        if (this.snapshot != null) {
+            return this.snapshot.materialized();
+        }
+        long count = 0;
+        if (this.clusters != null) {
+            for (Cluster[] level: this.clusters) {
+                if (level != null) count += level.length;
+            }
+        }
+        return count;
+    }
+
     protected Cluster[] concat(Cluster[] a, Cluster[] b) {
         int length = a.length + b.length;
         Cluster[] result = new Cluster[length];
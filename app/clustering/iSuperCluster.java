@@ -20,6 +20,7 @@ public class iSuperCluster extends SuperCluster {
 
     List<Cluster> maxZoomClusters;
     KDTree<Advocator> advocatorsTree;
+
     int pointIdSeq;
     int advocatorSeq;
 
@@ -47,7 +48,6 @@ public class iSuperCluster extends SuperCluster {
             timing.put("mergePoint", 0.0);
             timing.put("mergePoint.rangeSearch", 0.0);
             timing.put("mergePoint.insertTree", 0.0);
-            timing.put("mergePoint.findEarliest", 0.0);
             timing.put("mergePoint.mergeCalculation", 0.0);
         }
     }
@@ -144,13 +144,13 @@ public class iSuperCluster extends SuperCluster {
         double radius = getRadius(maxZoom);
 
         if (keepTiming) MyTimer.startTimer();
-        // Find all earlier advocators c can merge into
-        List<Advocator> advocators = advocatorsTree.within(c, radius);
+        // Find the earliest advocator c can merge into
+        Advocator earliestAdvocator = advocatorsTree.earliestWithin(c, radius);
         if (keepTiming) MyTimer.stopTimer();
         if (keepTiming) timing.put("mergePoint.rangeSearch", timing.get("mergePoint.rangeSearch") + MyTimer.durationSeconds());
 
         // if no group could be merged into, become a new Advocator itself
-        if (advocators.isEmpty()) {
+        if (earliestAdvocator == null) {
             Advocator newAdvocator = new Advocator(c.getX(), c.getY(), advocatorSeq ++);
             newAdvocator.cluster = c;
 
@@ -164,20 +164,6 @@ public class iSuperCluster extends SuperCluster {
         }
         // if earlier advocators' groups could be merged into
         else {
-            if (keepTiming) MyTimer.startTimer();
-            // find the earliest advocator
-            Advocator earliestAdvocator = null;
-            for (Advocator advocator: advocators) {
-                if (earliestAdvocator == null) {
-                    earliestAdvocator = advocator;
-                }
-                else if (earliestAdvocator.getId() > advocator.getId()) {
-                    earliestAdvocator = advocator;
-                }
-            }
-            if (keepTiming) MyTimer.stopTimer();
-            if (keepTiming) timing.put("mergePoint.findEarliest", timing.get("mergePoint.findEarliest") + MyTimer.durationSeconds());
-
             if (keepTiming) MyTimer.startTimer();
             // merge into earliest advocator's group
             Cluster cluster = earliestAdvocator.cluster;
@@ -232,13 +218,18 @@ public class iSuperCluster extends SuperCluster {
         }
     }
 
+    @Override
+    protected long numberOfClusters() {
+        // clusters on max zoom level and their advocators, plus clusters of the other levels
+        return 2L * this.maxZoomClusters.size() + super.numberOfClusters();
+    }
+
     private void printTiming() {
         System.out.println("[Total Time] " + timing.get("total") + " seconds.");
         System.out.println("    [recluster] " + timing.get("recluster") + " seconds");
         System.out.println("    [mergePoint] " + timing.get("mergePoint") + " seconds");
         System.out.println("        [range search] " + timing.get("mergePoint.rangeSearch") + " seconds");
         System.out.println("        [insert tree] " + timing.get("mergePoint.insertTree") + " seconds");
-        System.out.println("        [find earliest] " + timing.get("mergePoint.findEarliest") + " seconds");
         System.out.println("        [merge calculation] " + timing.get("mergePoint.mergeCalculation") + " seconds");
     }
 }
@@ -1,6 +1,7 @@
 package controllers;
 
 import actor.Agent;
+import actor.Frame;
 import akka.util.ByteString;
 import com.fasterxml.jackson.databind.JsonNode;
 import play.api.http.websocket.CloseCodes;
@@ -70,15 +71,27 @@ public class HomeController extends Controller {
                 }
             ),
             outMessage -> {
+                // the frame is taken, the agent may send the next one
+                if (outMessage instanceof Frame) {
+                    Frame frame = (Frame) outMessage;
+                    frame.ackTo.tell(Frame.Sent.INSTANCE, ActorRef.noSender());
+                    outMessage = frame.message;
+                }
                 if (outMessage instanceof JsonNode) {
                     return new Message.Text(play.libs.Json.stringify((JsonNode) outMessage));
                 }
+                // JSON already written as text
+                if (outMessage instanceof String) {
+                    return new Message.Text((String) outMessage);
+                }
                 if (outMessage instanceof ByteString) {
                     return new Message.Binary((ByteString)outMessage);
                 }
                 throw Scala.noMatch();
             }
-        ).accept(request -> ActorFlow.actorRef((actorRef) -> Agent.props(actorRef, config), actorSystem, materializer));
+        ).accept(request -> ActorFlow.actorRef((actorRef) -> Agent.props(actorRef, config),
+                // an agent has at most ws.window frames in the flow, see Frame
+                Math.max(16, config.getInt("ws.window")), OverflowStrategy.dropNew(), actorSystem, materializer));
     }
 
     public CompletionStage<Result> transfer() {
@@ -2,7 +2,8 @@ package exps;
 
 import clustering.SuperCluster;
 import model.PointTuple;
-import util.PostgreSQL;
+import util.IPointSource;
+import util.PointSourceCreator;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -15,7 +16,7 @@ public class ClusteringTime {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
         int limit = Integer.valueOf(bufferedReader.readLine());
 
-        PostgreSQL  postgreSQL = new PostgreSQL();
+        IPointSource postgreSQL = PointSourceCreator.createPointSource();
 
         if (limit == 0) {
             int[] scales = {5000, 10000, 20000, 40000, 80000, 160000, 320000, 640000, 1280000, 2560000};
@@ -0,0 +1,67 @@
+package exps;
+
+import model.CoordinateBuffer;
+import model.PointTuple;
+import util.Constants;
+import util.IPointSource;
+import util.PointSourceCreator;
+
+/**
+ * Compare bulk loads of the tweets table through the ResultSet loop (queryPointTuplesForLimit)
+ *   with the binary COPY path (queryCoordinatesForLimit), on growing limits
+ *
+ * args: [limit ...], default 5k ~ 2560k
+ *
+ * database by -Ddb.url, -Ddb.username, -Ddb.password, -Ddb.tablename, or -Ddata.source=synthetic
+ */
+public class CopyIngestion {
+
+    public static void main(String[] args) {
+        Constants.DB_URL = System.getProperty("db.url", "jdbc:postgresql://localhost/twitter");
+        Constants.DB_USERNAME = System.getProperty("db.username", "postgres");
+        Constants.DB_PASSWORD = System.getProperty("db.password", "postgres");
+        Constants.DB_TABLENAME = System.getProperty("db.tablename", "tweets");
+
+        int[] scales = {5000, 10000, 20000, 40000, 80000, 160000, 320000, 640000, 1280000, 2560000};
+        if (args.length > 0) {
+            scales = new int[args.length];
+            for (int k = 0; k < args.length; k ++) {
+                scales[k] = Integer.valueOf(args[k]);
+            }
+        }
+
+        IPointSource postgreSQL = PointSourceCreator.createPointSource();
+        // warm up the connection and the table cache
+        postgreSQL.queryPointTuplesForLimit(scales[0]);
+        postgreSQL.queryCoordinatesForLimit(scales[0]);
+
+        double[] resultSetTimes = new double[scales.length];
+        double[] copyTimes = new double[scales.length];
+        for (int k = 0; k < scales.length; k ++) {
+            System.out.println("========== Experiment for " + scales[k] + " points starts! ==========");
+
+            long start = System.nanoTime();
+            PointTuple[] pointTuples = postgreSQL.queryPointTuplesForLimit(scales[k]);
+            long end = System.nanoTime();
+            resultSetTimes[k] = (double) (end - start) / 1000000000.0;
+            int resultSetSize = pointTuples == null? 0: pointTuples.length;
+            pointTuples = null;
+
+            start = System.nanoTime();
+            CoordinateBuffer coordinates = postgreSQL.queryCoordinatesForLimit(scales[k]);
+            end = System.nanoTime();
+            copyTimes[k] = (double) (end - start) / 1000000000.0;
+            int copySize = coordinates == null? 0: coordinates.size();
+
+            System.out.println("ResultSet: " + resultSetSize + " points in " + resultSetTimes[k] + " seconds");
+            System.out.println("COPY binary: " + copySize + " points in " + copyTimes[k] + " seconds");
+        }
+
+        System.out.println("========== All experiments done! ==========");
+        System.out.println("points, ResultSet (s), COPY binary (s), speedup");
+        for (int k = 0; k < scales.length; k ++) {
+            System.out.println(scales[k] + ", " + resultSetTimes[k] + ", " + copyTimes[k] + ", " + resultSetTimes[k] / copyTimes[k]);
+        }
+        postgreSQL.disconnectDB();
+    }
+}
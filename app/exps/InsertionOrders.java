@@ -3,7 +3,8 @@ package exps;
 import clustering.SuperCluster;
 import model.PointTuple;
 import smile.clustering.KMeans;
-import util.PostgreSQL;
+import util.IPointSource;
+import util.PointSourceCreator;
 import util.RandIndex;
 
 import java.io.BufferedReader;
@@ -33,7 +34,7 @@ public class InsertionOrders {
         String keyword = bufferedReader.readLine();
 
         // 0) Load original data from PostgreSQL
-        PostgreSQL postgreSQL = new PostgreSQL();
+        IPointSource postgreSQL = PointSourceCreator.createPointSource();
         List<PointTuple> pointTuples = postgreSQL.queryPointTuplesForKeyword(keyword);
         int length = pointTuples.size();
         for (int i = 0; i < length; i ++) {
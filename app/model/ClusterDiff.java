@@ -0,0 +1,96 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters last answered to a client, to answer the next query on the same view with what changed only
+ *
+ *     view - everything deciding which clusters are visible, e.g. cluster key, zoom and bbox,
+ *            an answer on another view replaces the whole set;
+ *     added - clusters whose ids were not in the last answer;
+ *     updated - clusters whose ids were in the last answer, but moved or have another numPoints;
+ *     removed - ids in the last answer but not in this one.
+ */
+public class ClusterDiff {
+
+    private String view = null;
+    // clusters of the last answer by id
+    private Map<Integer, Cluster> last = new HashMap<>();
+
+    public List<Cluster> added = new ArrayList<>();
+    public List<Cluster> updated = new ArrayList<>();
+    public List<Integer> removed = new ArrayList<>();
+
+    /**
+     * Compare clusters with the last answer, then remember them as the last answer
+     *
+     * @param view
+     * @param clusters - null - nothing visible
+     * @return true - added, updated and removed hold the difference to send,
+     *         false - the whole set should be sent, for the first answer, another view, or ids not unique
+     */
+    public boolean diff(String view, Cluster[] clusters) {
+        added.clear();
+        updated.clear();
+        removed.clear();
+        if (clusters == null) {
+            clusters = new Cluster[0];
+        }
+        Map<Integer, Cluster> current = new HashMap<>(clusters.length * 4 / 3 + 1);
+        boolean unique = true;
+        for (Cluster cluster: clusters) {
+            if (current.put(cluster.getId(), cluster) != null) {
+                unique = false;
+            }
+        }
+        boolean comparable = unique && view.equals(this.view);
+        if (comparable) {
+            for (Cluster cluster: clusters) {
+                Cluster before = last.get(cluster.getId());
+                if (before == null) {
+                    added.add(cluster);
+                }
+                else if (before.getX() != cluster.getX() || before.getY() != cluster.getY() || before.numPoints != cluster.numPoints) {
+                    updated.add(cluster);
+                }
+            }
+            for (Integer id: last.keySet()) {
+                if (!current.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+        }
+        this.view = unique? view: null;
+        this.last = current;
+        return comparable;
+    }
+
+    /**
+     * Forget the last answer, the next one is sent whole
+     */
+    public void reset() {
+        this.view = null;
+        this.last = new HashMap<>();
+        added.clear();
+        updated.clear();
+        removed.clear();
+    }
+
+    /**
+     * @return added and updated clusters, the ones to send
+     */
+    public Cluster[] changed() {
+        Cluster[] changed = new Cluster[added.size() + updated.size()];
+        int i = 0;
+        for (Cluster cluster: added) changed[i ++] = cluster;
+        for (Cluster cluster: updated) changed[i ++] = cluster;
+        return changed;
+    }
+
+    public int size() {
+        return added.size() + updated.size() + removed.size();
+    }
+}
@@ -14,6 +14,12 @@ public class Command {
      *    - reverse
      *    - spatial
      *    - reverse-spatial
+     *    - hilbert
+     *    - morton
+     *
+     * invalidate [start] [end]
+     *  - start, end: "yyyy-MM-dd HH:mm:ss", tweets of create_at in [start, end] changed,
+     *    keyword results cached on disk are no longer used for that range
      */
     public String action;
     public String[] arguments;
@@ -0,0 +1,72 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable arrays of raw coordinates, collects points streamed chunk by chunk from a point source
+ *
+ *     Point i has coordinates (x[i], y[i]) in longitude and latitude,
+ *     16 bytes per point instead of a PointTuple object and a list slot per point.
+ */
+public class CoordinateBuffer {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size = 0;
+    private double[] x;
+    private double[] y;
+
+    public CoordinateBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public CoordinateBuffer(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+    }
+
+    public void add(double _x, double _y) {
+        if (size == x.length) {
+            grow(size + 1);
+        }
+        x[size] = _x;
+        y[size] = _y;
+        size ++;
+    }
+
+    /**
+     * Copy coordinates of the tuples, the tuples can be reused after that
+     *
+     * @param points
+     */
+    public void addAll(List<PointTuple> points) {
+        if (size + points.size() > x.length) {
+            grow(size + points.size());
+        }
+        for (int i = 0; i < points.size(); i ++) {
+            x[size] = points.get(i).getX();
+            y[size] = points.get(i).getY();
+            size ++;
+        }
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, x.length + (x.length >> 1));
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+}
@@ -41,7 +41,13 @@ public class Point implements I2DPoint {
     }
 
     public double distanceTo(I2DPoint p2) {
-        return Math.sqrt(Math.pow(x - p2.getX(), 2) + Math.pow(y - p2.getY(), 2));
+        return Math.sqrt(squareDistanceTo(p2));
+    }
+
+    public double squareDistanceTo(I2DPoint p2) {
+        double dx = x - p2.getX();
+        double dy = y - p2.getY();
+        return dx * dx + dy * dy;
     }
 
 
@@ -0,0 +1,74 @@
+package model;
+
+import util.ImplicitKDTree;
+
+/**
+ * Structure-of-arrays store of raw points, the level below maxZoom in SuperCluster
+ *
+ *     Point i has coordinates (x[i], y[i]),
+ *         zoom[i] - the zoom level on which it was last processed, the same as Cluster.zoom,
+ *         parentId[i] - id of the cluster it belongs to at maxZoom level, -1 if it stays a single point.
+ *
+ *     A static KD-Tree over the points is kept in arrays too, see util.ImplicitKDTree.
+ */
+public class PointStore {
+
+    public final int size;
+    public final double[] x;
+    public final double[] y;
+    public final int[] zoom;
+    public final int[] parentId;
+
+    private ImplicitKDTree tree;
+
+    public PointStore(int size) {
+        this.size = size;
+        this.x = new double[size];
+        this.y = new double[size];
+        this.zoom = new int[size];
+        this.parentId = new int[size];
+        for (int i = 0; i < size; i ++) {
+            this.zoom[i] = Integer.MAX_VALUE;
+            this.parentId[i] = -1;
+        }
+    }
+
+    public void set(int i, double _x, double _y) {
+        this.x[i] = _x;
+        this.y[i] = _y;
+    }
+
+    /**
+     * Build the KD-Tree over all points, call it after all points are set
+     */
+    public void index() {
+        this.tree = new ImplicitKDTree(x, y, size);
+    }
+
+    /**
+     * Drop the KD-Tree, the points themselves are kept
+     */
+    public void dropIndex() {
+        this.tree = null;
+    }
+
+    /**
+     * Find all points within radius of (qx, qy)
+     *
+     * @param qx
+     * @param qy
+     * @param radius
+     * @return number of points found, get them by neighbor(0 ~ number-1)
+     */
+    public int within(double qx, double qy, double radius) {
+        return tree.within(qx, qy, radius);
+    }
+
+    /**
+     * @param k
+     * @return k-th point index found by the last within search
+     */
+    public int neighbor(int k) {
+        return tree.neighbor(k);
+    }
+}
@@ -6,7 +6,7 @@ import java.util.List;
 public class PointTupleListFactory {
     static List<PointTuple> inventory = null;
 
-    static public List<PointTuple> newPointTupleList() {
+    static public synchronized List<PointTuple> newPointTupleList() {
         if (inventory == null) {
             return new ArrayList<>();
         }
@@ -17,7 +17,7 @@ public class PointTupleListFactory {
         }
     }
 
-    static public void recycle(List<PointTuple> pts) {
+    static public synchronized void recycle(List<PointTuple> pts) {
         //-DEBUG-//
         //System.out.println("[Debug] [PointTupleListFactory] is recycling a list of PointTuples with size = " + pts.size());
         //-DEBUG-//
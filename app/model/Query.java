@@ -11,7 +11,7 @@ public class Query {
     public String algorithm; // "SuperCluster"(default) / "SuperClusterInBatch" / "iSuperCluster" /
     // "AiSuperCluster" / "BiSuperCluster" / "LBiSuperCluster" / "QuadTreeAggregator" /
     // "DataExplorer" / "DataAggregator" / "SBiSuperCluster"
-    public String indexType; // "KDTree"(default) / "GridIndex"
+    public String indexType; // "KDTree"(default) / "GridIndex" / "StaticKDTree" / "FlatGridIndex"
     public boolean treeCut;  // true / false
     public String measure; // for treeCut: "avg" / "min" / "max" distance of children
     public double pixels; // for treeCut: number of pixels for differentiable distance in tree-cut algorithm
@@ -19,12 +19,18 @@ public class Request {
      *
      * - analysis
      *   - Query statistics of clusters for given keyword
+     *
+     * - cancel
+     *   - Cancel the progressive query in progress with the same id,
+     *     a query starting another progressive query (a progressive algorithm on a cluster key not cached) cancels it too (supersede),
+     *     other queries are answered while it goes on
      */
-    public String type; // "query"/"cmd"/"transfer"/"progress-transfer"/"analysis"
+    public String type; // "query"/"cmd"/"transfer"/"progress-transfer"/"analysis"/"cancel"
     public String id;
     public String keyword;
     public Query query;
     public Command[] cmds;
     public Analysis analysis;
-    public String format; // result data format: "geojson"/"array"/"binary"
+    public boolean diff; // true - answer cluster queries with what changed since the last answer on the same view, see ClusterDiff
+    public String format; // result data format: "geojson"/"array"/"binary"/"binary-compact"/"binary-deflate", see util.CompactBinary
 }
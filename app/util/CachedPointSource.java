@@ -0,0 +1,165 @@
+package util;
+
+import model.CoordinateBuffer;
+import model.PointTuple;
+import model.PointTupleListFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Point source consulting PointCache before the source it wraps
+ *
+ *     (1) keyword - the first query of a keyword scans all its rows with create_at from the source into the cache,
+ *                   later queries of the keyword read the cache file;
+ *     (2) keyword and time - answered by the cache only if the keyword is cached and its coverage contains the range,
+ *                            a miss goes to the source and does not fill the cache,
+ *                            so progressive queries keep their time to first batch;
+ *     (3) time only, limit - always go to the source.
+ */
+public class CachedPointSource implements IPointSource {
+
+    private IPointSource source;
+    private PointCache cache;
+    private String namespace;
+
+    /**
+     * @param source
+     * @param cache
+     * @param namespace - identifies the data of source, keywords of different namespaces never share cache files
+     */
+    public CachedPointSource(IPointSource source, PointCache cache, String namespace) {
+        this.source = source;
+        this.cache = cache;
+        this.namespace = namespace;
+    }
+
+    /**
+     * @param keyword
+     * @return columns of all rows for keyword from the cache, filled from the source on a miss, null if the source fails
+     */
+    private PointCache.Columns columns(String keyword) {
+        PointCache.Columns columns = cache.get(namespace, keyword, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (columns != null) {
+            System.out.println("[PointCache] hit keyword: [" + keyword + "], size = " + columns.size());
+            return columns;
+        }
+        PointCache.Writer writer = cache.writer(namespace, keyword);
+        if (source.scanPointsForKeyword(keyword, writer::add) < 0) {
+            return null;
+        }
+        return writer.commit();
+    }
+
+    public List<PointTuple> queryPointTuplesForKeyword(String keyword) {
+        PointCache.Columns columns = columns(keyword);
+        if (columns == null) {
+            return null;
+        }
+        return pointTuples(columns, 0, columns.size());
+    }
+
+    public int queryPointTuplesForKeyword(String keyword, int chunkSize, Consumer<List<PointTuple>> consumer) {
+        PointCache.Columns columns = columns(keyword);
+        if (columns == null) {
+            return -1;
+        }
+        List<PointTuple> chunk = chunkSize > 0? new ArrayList<>(chunkSize): new ArrayList<>();
+        int size = columns.size();
+        int step = chunkSize > 0? chunkSize: Math.max(1, size);
+        for (int from = 0; from < size; from += step) {
+            int to = Math.min(size, from + step);
+            while (chunk.size() < to - from) {
+                chunk.add(new PointTuple());
+            }
+            chunk.subList(to - from, chunk.size()).clear();
+            for (int i = from; i < to; i ++) {
+                set(chunk.get(i - from), columns, i);
+            }
+            consumer.accept(chunk);
+        }
+        return size;
+    }
+
+    public int scanPointsForKeyword(String keyword, RowConsumer consumer) {
+        return source.scanPointsForKeyword(keyword, consumer);
+    }
+
+    public List<PointTuple> queryPointTuplesForKeywordAndTime(String keyword, Date sd, Date ed) {
+        PointCache.Columns columns = cache.get(namespace, keyword, sd.getTime(), ed.getTime());
+        if (columns == null) {
+            return source.queryPointTuplesForKeywordAndTime(keyword, sd, ed);
+        }
+        long start = System.nanoTime();
+        List<PointTuple> result;
+        // create_at between sd and ed
+        if (columns.isSorted()) {
+            result = pointTuples(columns, columns.lowerBound(sd.getTime()), columns.lowerBound(ed.getTime() + 1));
+        }
+        else {
+            result = PointTupleListFactory.newPointTupleList();
+            int j = 0;
+            for (int i = 0; i < columns.size(); i ++) {
+                long time = columns.getTime(i);
+                if (time < sd.getTime() || time > ed.getTime()) continue;
+                if (j == result.size()) {
+                    result.add(new PointTuple());
+                }
+                set(result.get(j), columns, i);
+                j ++;
+            }
+            result.subList(j, result.size()).clear();
+        }
+        long end = System.nanoTime();
+        System.out.println("[PointCache] hit keyword: [" + keyword + "] and time [" + sd + ", " + ed + "], size = " + result.size()
+                + ", takes time: " + TimeUnit.MILLISECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " ms");
+        return result;
+    }
+
+    public List<PointTuple> queryPointTuplesForTime(Date sd, Date ed) {
+        return source.queryPointTuplesForTime(sd, ed);
+    }
+
+    public PointTuple[] queryPointTuplesForLimit(int limit) {
+        return source.queryPointTuplesForLimit(limit);
+    }
+
+    public CoordinateBuffer queryCoordinatesForTime(Date sd, Date ed) {
+        return source.queryCoordinatesForTime(sd, ed);
+    }
+
+    public CoordinateBuffer queryCoordinatesForLimit(int limit) {
+        return source.queryCoordinatesForLimit(limit);
+    }
+
+    public void disconnectDB() {
+        source.disconnectDB();
+    }
+
+    /**
+     * @param columns
+     * @param from - inclusive
+     * @param to - exclusive
+     * @return rows in [from, to) as PointTuples, reusing the list of PointTupleListFactory
+     */
+    private static List<PointTuple> pointTuples(PointCache.Columns columns, int from, int to) {
+        List<PointTuple> result = PointTupleListFactory.newPointTupleList();
+        while (result.size() < to - from) {
+            result.add(new PointTuple());
+        }
+        result.subList(to - from, result.size()).clear();
+        for (int i = from; i < to; i ++) {
+            set(result.get(i - from), columns, i);
+        }
+        return result;
+    }
+
+    private static void set(PointTuple pt, PointCache.Columns columns, int i) {
+        pt.setX(columns.getX(i));
+        pt.setY(columns.getY(i));
+        pt.tid = columns.getTid(i);
+    }
+}
@@ -0,0 +1,233 @@
+package util;
+
+import model.Cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Compact binary format of cluster query responses, negotiated by Request.format,
+ *   "binary-compact" - quantized and delta encoded clusters,
+ *   "binary-deflate" - the same, the payload is also compressed by raw deflate if it is at least Constants.WIRE_DEFLATE_MIN bytes
+ *
+ * ---------------------------------- header, big-endian ----------------------------------
+ *  version   flags    progress  totalTime  treeCut   aggTime   payload
+ * | 1 BYTE | 1 BYTE | 4 BYTES | 8 BYTES | 8 BYTES | 8 BYTES | ...
+ *   flags: bit 0 - payload is deflated, bit 1 - clusters have ids, bit 2 - a diff to the last answer, see model.ClusterDiff
+ * ---------------------------------- payload ----------------------------------
+ *   count    bits     minLng    minLat    maxLng    maxLat    clusters
+ * | varint | 1 BYTE | 8 BYTES | 8 BYTES | 8 BYTES | 8 BYTES | ...
+ *   clusters: dLng  dLat  numPoints  [dId], (repeat count times)
+ *           | zigzag varint | zigzag varint | varint | [zigzag varint] |
+ *   [removed: count  ids in ascending order as deltas, the first one from Integer.MIN_VALUE]
+ *           | varint | varint | ...
+ *
+ * Longitude and latitude are quantized to bits in [minLng, maxLng] x [minLat, maxLat], the bounds of the clusters,
+ *   clusters are ordered along the Hilbert curve, so dLng and dLat to the previous cluster are small,
+ *   24 bits keep the error of a world view below 0.00003 degrees,
+ *   a diff carries the added and updated clusters, and the ids of removed ones.
+ */
+public class CompactBinary {
+
+    public static final String COMPACT = "binary-compact";
+    public static final String DEFLATE = "binary-deflate";
+
+    public static final int VERSION = 2;
+    public static final int FLAG_DEFLATED = 1;
+    public static final int FLAG_IDS = 2;
+    public static final int FLAG_DIFF = 4;
+    public static final int HEADER_SIZE = 1 + 1 + Constants.INT_BYTES + 3 * Constants.DOUBLE_BYTES;
+
+    /**
+     * @param format - Request.format
+     * @return true if format is one of the compact binary formats
+     */
+    public static boolean accepts(String format) {
+        return COMPACT.equalsIgnoreCase(format) || DEFLATE.equalsIgnoreCase(format);
+    }
+
+    /**
+     * Encode clusters after a header to be filled by writeHeader(), when the query time is known
+     *
+     * @param clusters - longitude as x and latitude as y
+     * @param format - COMPACT / DEFLATE
+     * @param bits - bits of a quantized coordinate, in [1, 32]
+     * @return the whole response
+     */
+    public static byte[] encode(Cluster[] clusters, String format, int bits) {
+        return encode(clusters, format, bits, false, null);
+    }
+
+    /**
+     * @param clusters - longitude as x and latitude as y
+     * @param format - COMPACT / DEFLATE
+     * @param bits - bits of a quantized coordinate, in [1, 32]
+     * @param ids - true - send the id of each cluster
+     * @param removed - not null - a diff, clusters are the added and updated ones, with ids of removed ones
+     * @return the whole response
+     */
+    public static byte[] encode(Cluster[] clusters, String format, int bits, boolean ids, List<Integer> removed) {
+        byte[] payload = encodeClusters(clusters == null? new Cluster[0]: clusters, bits, ids || removed != null, removed);
+        int flags = ids || removed != null? FLAG_IDS: 0;
+        if (removed != null) {
+            flags |= FLAG_DIFF;
+        }
+        if (DEFLATE.equalsIgnoreCase(format) && payload.length >= Constants.WIRE_DEFLATE_MIN) {
+            payload = deflate(payload);
+            flags |= FLAG_DEFLATED;
+        }
+        byte[] response = new byte[HEADER_SIZE + payload.length];
+        response[0] = (byte) VERSION;
+        response[1] = (byte) flags;
+        System.arraycopy(payload, 0, response, HEADER_SIZE, payload.length);
+        return response;
+    }
+
+    /**
+     * @param response - returned by encode()
+     * @param progress
+     * @param totalTime
+     * @param treeCutTime
+     * @param aggregateTime
+     */
+    public static void writeHeader(byte[] response, int progress, double totalTime, double treeCutTime, double aggregateTime) {
+        ByteBuffer header = ByteBuffer.wrap(response, 2, HEADER_SIZE - 2);
+        header.putInt(progress);
+        header.putDouble(totalTime);
+        header.putDouble(treeCutTime);
+        header.putDouble(aggregateTime);
+    }
+
+    /**
+     * @param clusters
+     * @param bits
+     * @param ids
+     * @param removed
+     * @return payload before compression
+     */
+    static byte[] encodeClusters(Cluster[] clusters, int bits, boolean ids, List<Integer> removed) {
+        int n = clusters.length;
+        double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i ++) {
+            minLng = Math.min(minLng, clusters[i].getX());
+            minLat = Math.min(minLat, clusters[i].getY());
+            maxLng = Math.max(maxLng, clusters[i].getX());
+            maxLat = Math.max(maxLat, clusters[i].getY());
+        }
+        if (n == 0) {
+            minLng = minLat = maxLng = maxLat = 0;
+        }
+
+        // quantize, then order along the Hilbert curve
+        long cells = (1L << bits) - 1;
+        long[] qLng = new long[n];
+        long[] qLat = new long[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i ++) {
+            qLng[i] = quantize(clusters[i].getX(), minLng, maxLng, cells);
+            qLat[i] = quantize(clusters[i].getY(), minLat, maxLat, cells);
+            xs[i] = cells == 0? 0: (double) qLng[i] / cells;
+            ys[i] = cells == 0? 0: (double) qLat[i] / cells;
+        }
+        int[] order = SpaceFillingCurve.order(xs, ys, SpaceFillingCurve.HILBERT);
+
+        // 1 ~ 5 bytes for each of dLng, dLat and numPoints
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 + 5 + 4 * Constants.DOUBLE_BYTES + 6 * n);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeVarint(out, n);
+            out.writeByte(bits);
+            out.writeDouble(minLng);
+            out.writeDouble(minLat);
+            out.writeDouble(maxLng);
+            out.writeDouble(maxLat);
+            long lng = 0, lat = 0, id = 0;
+            for (int k = 0; k < n; k ++) {
+                int i = order[k];
+                writeVarint(out, zigzag(qLng[i] - lng));
+                writeVarint(out, zigzag(qLat[i] - lat));
+                writeVarint(out, clusters[i].numPoints);
+                if (ids) {
+                    writeVarint(out, zigzag(clusters[i].getId() - id));
+                    id = clusters[i].getId();
+                }
+                lng = qLng[i];
+                lat = qLat[i];
+            }
+            if (removed != null) {
+                long[] sorted = new long[removed.size()];
+                for (int k = 0; k < sorted.length; k ++) {
+                    sorted[k] = removed.get(k);
+                }
+                Arrays.sort(sorted);
+                writeVarint(out, sorted.length);
+                // deltas of ascending ids are not negative, the first one is from Integer.MIN_VALUE
+                long previous = Integer.MIN_VALUE;
+                for (long removedId: sorted) {
+                    writeVarint(out, removedId - previous);
+                    previous = removedId;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static long quantize(double v, double min, double max, long cells) {
+        if (max <= min) {
+            return 0;
+        }
+        return Math.round((v - min) / (max - min) * cells);
+    }
+
+    /**
+     * @param q - quantized coordinate
+     * @param min
+     * @param max
+     * @param bits
+     * @return the coordinate q stands for
+     */
+    public static double dequantize(long q, double min, double max, int bits) {
+        long cells = (1L << bits) - 1;
+        return cells == 0 || max <= min? min: min + (max - min) * q / cells;
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        // raw deflate without zlib header, DecompressionStream("deflate-raw") in browsers
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        byte[] buffer = new byte[1 << 16];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            bytes.write(buffer, 0, n);
+        }
+        deflater.end();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,252 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connections to the PostgreSQL server shared by all agents
+ *
+ *     (1) size - at most db.pool.size connections are borrowed at a time,
+ *                a borrower waits up to db.pool.timeout ms for one to be returned;
+ *     (2) statements - each connection keeps the statements prepared on it by sql,
+ *                      so every query shape is parsed and planned once per connection,
+ *                      and the driver switches them to server-side prepared statements after a few executions;
+ *     (3) health - a connection idle longer than VALIDATE_AFTER ms is checked by isValid() before it is lent,
+ *                  a connection failing the check or marked broken by its borrower is closed,
+ *                  and the next borrow opens a new one, so the server restarting is recovered from without a restart.
+ */
+public class ConnectionPool {
+
+    private static final long VALIDATE_AFTER = 5000;
+    // seconds
+    private static final int VALIDATE_TIMEOUT = 5;
+
+    private static ConnectionPool instance = null;
+
+    public static synchronized ConnectionPool getInstance() {
+        if (instance == null) {
+            instance = new ConnectionPool(Constants.DB_URL, Constants.DB_USERNAME, Constants.DB_PASSWORD,
+                    Constants.DB_POOL_SIZE, Constants.DB_POOL_TIMEOUT);
+        }
+        return instance;
+    }
+
+    private String url;
+    private String username;
+    private String password;
+    private int size;
+    private long timeout;
+    private Semaphore permits;
+    // returned connections, the most recently returned first
+    private Deque<Lease> idle = new ArrayDeque<>();
+
+    // statistics
+    private long borrows = 0;
+    private long waits = 0;
+    private long opened = 0;
+    private long discarded = 0;
+
+    /**
+     * @param url
+     * @param username
+     * @param password
+     * @param size - connections borrowed at a time at most
+     * @param timeout - ms to wait for a connection at most
+     */
+    public ConnectionPool(String url, String username, String password, int size, long timeout) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.size = Math.max(1, size);
+        this.timeout = timeout;
+        this.permits = new Semaphore(this.size, true);
+    }
+
+    /**
+     * Borrow a connection, return it by close() of the lease, e.g. in a try-with-resources
+     *
+     * @return
+     * @throws SQLException - if no connection is returned in time or a new one can not be opened
+     */
+    public Lease borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire()) {
+                synchronized (this) {
+                    waits ++;
+                }
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("no connection available in " + timeout + " ms, " + this);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted waiting for a connection");
+        }
+        try {
+            Lease lease;
+            while ((lease = poll()) != null) {
+                if (System.currentTimeMillis() - lease.lastUse < VALIDATE_AFTER || lease.conn.isValid(VALIDATE_TIMEOUT)) {
+                    break;
+                }
+                System.out.println("[ConnectionPool] discarding a connection failing validation");
+                discard(lease);
+            }
+            if (lease == null) {
+                lease = new Lease(DriverManager.getConnection(url, username, password));
+                synchronized (this) {
+                    opened ++;
+                }
+                System.out.println("Connected to the PostgreSQL server successfully. [ConnectionPool] " + this);
+            }
+            synchronized (this) {
+                borrows ++;
+            }
+            lease.returned = false;
+            return lease;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized Lease poll() {
+        return idle.pollFirst();
+    }
+
+    private void giveBack(Lease lease) {
+        lease.lastUse = System.currentTimeMillis();
+        // a transaction left open by the borrower
+        try {
+            if (!lease.broken && !lease.conn.getAutoCommit()) {
+                lease.conn.rollback();
+            }
+        } catch (SQLException e) {
+            lease.broken = true;
+        }
+        if (lease.broken) {
+            discard(lease);
+        }
+        else {
+            synchronized (this) {
+                idle.addFirst(lease);
+            }
+        }
+        permits.release();
+    }
+
+    private void discard(Lease lease) {
+        synchronized (this) {
+            discarded ++;
+        }
+        try {
+            lease.conn.close();
+        } catch (SQLException e) {
+            // already unusable
+        }
+    }
+
+    /**
+     * Close all idle connections, borrowed ones are closed when returned
+     */
+    public void close() {
+        Lease lease;
+        while ((lease = poll()) != null) {
+            discard(lease);
+        }
+        System.out.println("Disconnected from the PostgreSQL server successfully. [ConnectionPool] " + this);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    public synchronized long getOpened() {
+        return opened;
+    }
+
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+
+    public synchronized String toString() {
+        return "size = " + size + ", borrowed = " + (size - permits.availablePermits()) + ", idle = " + idle.size()
+                + ", borrows = " + borrows + ", waits = " + waits + ", opened = " + opened + ", discarded = " + discarded;
+    }
+
+    /**
+     * A borrowed connection with its prepared statements
+     */
+    public class Lease implements AutoCloseable {
+        private Connection conn;
+        private Map<String, PreparedStatement> statements = new HashMap<>();
+        private long lastUse = System.currentTimeMillis();
+        private boolean broken = false;
+        private boolean returned = false;
+
+        private Lease(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection getConnection() {
+            return conn;
+        }
+
+        /**
+         * @param sql
+         * @return the read-only, forward-only statement of sql prepared on this connection before, or a new one,
+         *         do not close it, parameters and fetch size are overwritten by the next borrower
+         * @throws SQLException
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        /**
+         * Called with an exception of the connection, a connection error (SQLState class 08)
+         *   or a connection no longer valid is closed when returned instead of being lent again
+         *
+         * @param e
+         */
+        public void failed(SQLException e) {
+            if (broken) {
+                return;
+            }
+            String state = e.getSQLState();
+            try {
+                broken = (state != null && state.startsWith("08")) || conn.isClosed() || !conn.isValid(VALIDATE_TIMEOUT);
+            } catch (SQLException ex) {
+                broken = true;
+            }
+            if (broken) {
+                System.err.println("[ConnectionPool] connection is broken: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            giveBack(this);
+        }
+    }
+}
@@ -1,5 +1,13 @@
 package util;
 
+import java.util.Date;
+
+/**
+ * Settings shared by all agents, Agent reads them from conf/application.conf, the only source of settings of the server,
+ *   defaults here are the same values as the shipped application.conf,
+ *   so experiments, benchmarks and tests run without Agent behave the same, -Dkey=value with the key in application.conf
+ *   overrides them there, settings in bytes take plain numbers, e.g. -Dcluster.cache.budget=1073741824.
+ */
 public class Constants {
 
     public static int DEFAULT_MIN_ZOOM = 0;
@@ -7,6 +15,22 @@ public class Constants {
 
     public static String DEFAULT_INDEX_TYPE = "KDTree";
 
+    // number of threads to build SuperCluster hierarchy, 1 - sequential
+    public static int CLUSTER_PARALLELISM = Integer.getInteger("cluster.parallelism", 1);
+
+    // heap bytes of SuperCluster instances cached by all agents together, 0 - half of the max heap
+    public static long CLUSTER_CACHE_BUDGET = Long.getLong("cluster.cache.budget", 0);
+    // snapshots of built SuperClusters on disk, 0 bytes - no snapshots
+    public static String CLUSTER_SNAPSHOT_DIR = System.getProperty("cluster.snapshot.dir", "cache/clusters");
+    public static long CLUSTER_SNAPSHOT_BUDGET = Long.getLong("cluster.snapshot.budget", 0);
+
+    // number of threads to build SuperClusters off the actor threads, 0 - number of processors
+    public static int CLUSTER_BUILD_THREADS = Integer.getInteger("cluster.build.threads", 0);
+    // number of builds waiting for a thread at most, more builds are rejected
+    public static int CLUSTER_BUILD_QUEUE = Integer.getInteger("cluster.build.queue", 16);
+    // number of time slices a progressive query fetches ahead while clustering the current one, 0 - no prefetch
+    public static int PROGRESSIVE_PREFETCH = Integer.getInteger("progressive.prefetch", 1);
+
     public static double MIN_LONGITUDE;
     public static double MIN_LATITUDE;
     public static double MAX_LONGITUDE;
@@ -23,6 +47,33 @@ public class Constants {
     public static String DB_USERNAME;
     public static String DB_PASSWORD;
     public static String DB_TABLENAME;
+    // rows transferred from the database at a time through a cursor, 0 - the whole result set at once
+    public static int DB_FETCH_SIZE = Integer.getInteger("db.fetch.size", 10000);
+    // ConnectionPool, connections shared by all agents and ms to wait for one
+    public static int DB_POOL_SIZE = Integer.getInteger("db.pool.size", 8);
+    public static long DB_POOL_TIMEOUT = Long.getLong("db.pool.timeout", 30000);
+
+    // CompactBinary, bits of a quantized coordinate and payload bytes deflated at least
+    public static int WIRE_COMPACT_BITS = Integer.getInteger("wire.compact.bits", 24);
+    public static int WIRE_DEFLATE_MIN = Integer.getInteger("wire.deflate.min", 1024);
+
+    // websocket, JSON responses longer than WS_CHUNK_SIZE chars are sent in chunks (0 - never split),
+    //   and frames sent to a socket before it takes them
+    public static long WS_CHUNK_SIZE = Long.getLong("ws.chunk.size", 4L * 1024 * 1024);
+    public static int WS_WINDOW = Integer.getInteger("ws.window", 8);
+
+    // PointCache, keyword results on disk, 0 bytes - no cache
+    public static String POINT_CACHE_DIR = System.getProperty("point.cache.dir", "cache/points");
+    public static long POINT_CACHE_BUDGET = Long.getLong("point.cache.budget", 0);
+
+    // postgresql / synthetic, experiments without Agent can pick it by -Ddata.source=synthetic
+    public static String DATA_SOURCE = System.getProperty("data.source", "postgresql");
+
+    // SyntheticTweets, create_at of tweets spread evenly in [SYNTHETIC_START, SYNTHETIC_END]
+    public static int SYNTHETIC_SIZE = Integer.getInteger("synthetic.size", 1000000);
+    public static long SYNTHETIC_SEED = Long.getLong("synthetic.seed", 0);
+    public static Date SYNTHETIC_START = new Date(1447796006000L); // 2015-11-17 21:33:26
+    public static Date SYNTHETIC_END = new Date(1483984855000L); // 2017-01-09 18:00:55
 
     public static int DOUBLE_BYTES = 8;
     public static int INT_BYTES = 4;
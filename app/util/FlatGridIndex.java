@@ -0,0 +1,322 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Flat Grid Index for I2DPoint
+ *
+ *     The same grids as GridIndex, but stored flat, for the pattern of loading once and querying many times.
+ *
+ *     Layout:
+ *         (1) a grid [i, j] is mapped to cell = j * m + i, the same as GridIndex;
+ *         (2) points are sorted by cell with a counting sort,
+ *                points[offsets[cell] .. offsets[cell + 1] - 1] are the points in that cell;
+ *         (3) coords[2*k] and coords[2*k+1] are x and y of points[k].
+ *
+ *     Points inserted by insert() are buffered and merged into the arrays by the next query,
+ *     delete is not supported.
+ */
+public class FlatGridIndex<PointType extends I2DPoint> implements I2DIndex<PointType> {
+
+    // m or n can not be over this MAX_RESOLUTION
+    private static final int MAX_RESOLUTION = Constants.MAX_RESOLUTION;
+
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private double step;
+    private int m;
+    private int n;
+    private int size = 0;
+
+    private int[] offsets;
+    private PointType[] points;
+    private double[] coords;
+
+    // points inserted but not sorted into the arrays yet
+    private List<PointType> pending = new ArrayList<>();
+
+    public FlatGridIndex(double step) {
+        this(Constants.MIN_X, Constants.MIN_Y, Constants.MAX_X, Constants.MAX_Y, step);
+    }
+
+    public FlatGridIndex(double left, double bottom, double right, double top, double step) {
+
+        this.minX = left;
+        this.minY = bottom;
+        this.maxX = right;
+        this.maxY = top;
+        this.step = step;
+
+        // calculate number of grids
+        m = (int) Math.ceil((maxX - minX) / step);
+        n = (int) Math.ceil((maxY - minY) / step);
+
+        // Make sure m / n is never larger than MAX_RESOLUTION,
+        // so that JVM will not be OutOfMemory because of the offsets array
+        if (m > MAX_RESOLUTION || n > MAX_RESOLUTION) {
+            this.step = Math.max((maxX - minX) / MAX_RESOLUTION, (maxY - minY) / MAX_RESOLUTION);
+            m = (int) Math.ceil((maxX - minX) / this.step);
+            n = (int) Math.ceil((maxY - minY) / this.step);
+        }
+
+        this.offsets = new int[m * n + 1];
+        this.coords = new double[0];
+    }
+
+    /**
+     * find grid position i on X axis
+     *
+     * @param x
+     * @return
+     */
+    private int locateX(double x) {
+        int i = (int) Math.floor((x - minX) / step);
+        i = i < 0? 0: i;
+        i = i > m-1? m-1: i;
+        return i;
+    }
+
+    /**
+     * find grid position j on Y axis
+     *
+     * @param y
+     * @return
+     */
+    private int locateY(double y) {
+        int j = (int) Math.floor((y - minY) / step);
+        j = j < 0? 0: j;
+        j = j > n-1? n-1: j;
+        return j;
+    }
+
+    @Override
+    public void insert(PointType point) {
+        pending.add(point);
+        size ++;
+    }
+
+    @Override
+    public void load(PointType[] points) {
+        pending.addAll(Arrays.asList(points));
+        size += points.length;
+        flush();
+    }
+
+    @Override
+    public void delete(PointType point) {
+        throw new UnsupportedOperationException("FlatGridIndex does not support delete.");
+    }
+
+    /**
+     * sort pending points together with points already in the arrays by cell with a counting sort
+     */
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int oldSize = this.points == null? 0: this.points.length;
+        PointType[] all = (PointType[]) new I2DPoint[oldSize + pending.size()];
+        if (oldSize > 0) {
+            System.arraycopy(this.points, 0, all, 0, oldSize);
+        }
+        for (int k = 0; k < pending.size(); k ++) {
+            all[oldSize + k] = pending.get(k);
+        }
+        pending.clear();
+
+        // count points in each cell
+        int[] cells = new int[all.length];
+        int[] offsets = new int[m * n + 1];
+        for (int k = 0; k < all.length; k ++) {
+            cells[k] = locateY(all[k].getY()) * m + locateX(all[k].getX());
+            offsets[cells[k] + 1] ++;
+        }
+        // prefix sum into start offsets of cells
+        for (int c = 0; c < m * n; c ++) {
+            offsets[c + 1] += offsets[c];
+        }
+        // place points, keep their relative order inside each cell
+        int[] next = Arrays.copyOf(offsets, m * n);
+        PointType[] sorted = (PointType[]) new I2DPoint[all.length];
+        double[] coords = new double[2 * all.length];
+        for (int k = 0; k < all.length; k ++) {
+            int pos = next[cells[k]] ++;
+            sorted[pos] = all[k];
+            coords[2 * pos] = all[k].getX();
+            coords[2 * pos + 1] = all[k].getY();
+        }
+
+        this.offsets = offsets;
+        this.points = sorted;
+        this.coords = coords;
+    }
+
+    /**
+     * traverse the grids covered by the circumscribed square of given circle,
+     *     all points of an inner grid whose four corners are all within the circle are in result directly,
+     *     points of other grids are checked one by one.
+     *
+     * @param center
+     * @param radius
+     * @return
+     */
+    @Override
+    public List<PointType> within(I2DPoint center, double radius) {
+        List<PointType> result = new ArrayList<>();
+        within(center, radius, result);
+        return result;
+    }
+
+    @Override
+    public void within(I2DPoint center, double radius, List<PointType> result) {
+        flush();
+        double cx = center.getX();
+        double cy = center.getY();
+        double radius2 = radius * radius;
+
+        int left = locateX(cx - radius);
+        int right = locateX(cx + radius);
+        int bottom = locateY(cy - radius);
+        int top = locateY(cy + radius);
+
+        for (int j = bottom; j <= top; j ++) {
+            // distance on y axis from center to the farthest edge of this row
+            double y0 = minY + j * step - cy;
+            double y1 = y0 + step;
+            double dy = Math.max(y0 * y0, y1 * y1);
+            for (int i = left; i <= right; i ++) {
+                int cell = j * m + i;
+                int from = offsets[cell];
+                int to = offsets[cell + 1];
+                if (from == to) continue;
+
+                // grids on borders may hold points outside of the domain, always check them one by one
+                boolean inner = i > 0 && i < m - 1 && j > 0 && j < n - 1;
+                if (inner) {
+                    double x0 = minX + i * step - cx;
+                    double x1 = x0 + step;
+                    inner = Math.max(x0 * x0, x1 * x1) + dy <= radius2;
+                }
+
+                if (inner) {
+                    for (int k = from; k < to; k ++) {
+                        result.add(points[k]);
+                    }
+                }
+                else {
+                    for (int k = from; k < to; k ++) {
+                        if (squareDistance(coords[2 * k], coords[2 * k + 1], cx, cy) <= radius2) {
+                            result.add(points[k]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public PointType earliestWithin(I2DPoint center, double radius) {
+        flush();
+        double cx = center.getX();
+        double cy = center.getY();
+        double radius2 = radius * radius;
+        PointType earliest = null;
+
+        int left = locateX(cx - radius);
+        int right = locateX(cx + radius);
+        int bottom = locateY(cy - radius);
+        int top = locateY(cy + radius);
+
+        for (int j = bottom; j <= top; j ++) {
+            for (int i = left; i <= right; i ++) {
+                int cell = j * m + i;
+                for (int k = offsets[cell]; k < offsets[cell + 1]; k ++) {
+                    if ((earliest == null || points[k].getId() < earliest.getId())
+                            && squareDistance(coords[2 * k], coords[2 * k + 1], cx, cy) <= radius2) {
+                        earliest = points[k];
+                    }
+                }
+            }
+        }
+        return earliest;
+    }
+
+    @Override
+    public List<PointType> range(I2DPoint leftBottom, I2DPoint rightTop) {
+        List<PointType> result = new ArrayList<>();
+        range(leftBottom, rightTop, result);
+        return result;
+    }
+
+    @Override
+    public void range(I2DPoint leftBottom, I2DPoint rightTop, List<PointType> result) {
+        flush();
+        double x0 = leftBottom.getX();
+        double y0 = leftBottom.getY();
+        double x1 = rightTop.getX();
+        double y1 = rightTop.getY();
+
+        int left = locateX(x0);
+        int right = locateX(x1);
+        int bottom = locateY(y0);
+        int top = locateY(y1);
+
+        for (int j = bottom; j <= top; j ++) {
+            for (int i = left; i <= right; i ++) {
+                int cell = j * m + i;
+                int from = offsets[cell];
+                int to = offsets[cell + 1];
+                if (from == to) continue;
+
+                // grids strictly between the edge grids are inside the rectangle,
+                // except grids on borders of the domain, which may hold points outside of the domain
+                if (i > left && i < right && j > bottom && j < top
+                        && i > 0 && i < m - 1 && j > 0 && j < n - 1) {
+                    for (int k = from; k < to; k ++) {
+                        result.add(points[k]);
+                    }
+                }
+                else {
+                    for (int k = from; k < to; k ++) {
+                        double x = coords[2 * k];
+                        double y = coords[2 * k + 1];
+                        if (x > x0 && y > y0 && x < x1 && y < y1) {
+                            result.add(points[k]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private double squareDistance(double x1, double y1, double x2, double y2) {
+        return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+    }
+
+    @Override
+    public void print() {
+        flush();
+        System.out.println("=================== FlatGridIndex ===================");
+        System.out.println("size = " + size);
+        for (int j = n - 1; j >= 0; j --) {
+            for (int i = 0; i < m; i ++) {
+                int count = offsets[j*m + i + 1] - offsets[j*m + i];
+                if (count > 0) {
+                    System.out.print(count);
+                } else {
+                    System.out.print("  ");
+                }
+                System.out.print(" | ");
+            }
+            System.out.println();
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
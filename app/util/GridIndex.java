@@ -136,6 +136,13 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
     @Override
     public List<PointType> within(I2DPoint center, double radius) {
         List<PointType> result = new ArrayList<>();
+        within(center, radius, result);
+        return result;
+    }
+
+    @Override
+    public void within(I2DPoint center, double radius, List<PointType> result) {
+        double radius2 = radius * radius;
 
         // find the left bottom right top of the inscribed square of the circle
         double inLeftX = center.getX() - (radius / Math.sqrt(2.0));
@@ -153,8 +160,11 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
         for (int i = (int) Math.ceil(inLeft); i < (int) Math.floor(inRight); i ++) {
             for (int j = (int) Math.ceil(inBottom); j < (int) Math.floor(inTop); j ++) {
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
-                if (grids[j*m + i] == null) continue;
-                result.addAll(grids[j*m + i]);
+                List<PointType> grid = grids[j*m + i];
+                if (grid == null) continue;
+                for (int k = 0; k < grid.size(); k ++) {
+                    result.add(grid.get(k));
+                }
             }
         }
 
@@ -180,8 +190,9 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
-                    if (p.distanceTo(center) <= radius) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
+                    if (p.squareDistanceTo(center) <= radius2) {
                         result.add(p);
                     }
                 }
@@ -196,8 +207,9 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
-                    if (p.distanceTo(center) <= radius) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
+                    if (p.squareDistanceTo(center) <= radius2) {
                         result.add(p);
                     }
                 }
@@ -214,8 +226,9 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
-                    if (p.distanceTo(center) <= radius) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
+                    if (p.squareDistanceTo(center) <= radius2) {
                         result.add(p);
                     }
                 }
@@ -231,20 +244,63 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
-                    if (p.distanceTo(center) <= radius) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
+                    if (p.squareDistanceTo(center) <= radius2) {
                         result.add(p);
                     }
                 }
             }
         }
+    }
 
-        return result;
+    /**
+     * Find the point with the smallest id within radius of center
+     *
+     *   - visits the grids overlapping the circumscribed square of the circle without collecting points,
+     *     a point is only checked for distance if its id is smaller than the best id found so far;
+     *   - grids keep points in insertion order, not in id order, so every point in those grids is still visited,
+     *     the cost grows with the density of the grids as within does, only KDTree prunes by id, see KDTree.earliestWithin.
+     *
+     * @param center
+     * @param radius
+     * @return null if no point within radius
+     */
+    @Override
+    public PointType earliestWithin(I2DPoint center, double radius) {
+        double radius2 = radius * radius;
+        PointType earliest = null;
+
+        // points out of the grid are kept in the grids on its border, see insert
+        int left = locateX(center.getX() - radius);
+        int right = locateX(center.getX() + radius);
+        int bottom = locateY(center.getY() - radius);
+        int top = locateY(center.getY() + radius);
+
+        for (int j = bottom; j <= top; j ++) {
+            for (int i = left; i <= right; i ++) {
+                List<PointType> grid = grids[j*m + i];
+                if (grid == null) continue;
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
+                    if ((earliest == null || p.getId() < earliest.getId()) && p.squareDistanceTo(center) <= radius2) {
+                        earliest = p;
+                    }
+                }
+            }
+        }
+        return earliest;
     }
 
     @Override
     public List<PointType> range(I2DPoint leftBottom, I2DPoint rightTop) {
         List<PointType> result = new ArrayList<>();
+        range(leftBottom, rightTop, result);
+        return result;
+    }
+
+    @Override
+    public void range(I2DPoint leftBottom, I2DPoint rightTop, List<PointType> result) {
 
         // find the offset of left bottom right top 4 vertices of the rectangle
         double left = (leftBottom.getX() - minX) / step;
@@ -256,8 +312,11 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
         for (int i = (int) Math.ceil(left); i < (int) Math.floor(right); i ++) {
             for (int j = (int) Math.ceil(bottom); j < (int) Math.floor(top); j ++) {
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
-                if (grids[j*m + i] == null) continue;
-                result.addAll(grids[j*m + i]);
+                List<PointType> grid = grids[j*m + i];
+                if (grid == null) continue;
+                for (int k = 0; k < grid.size(); k ++) {
+                    result.add(grid.get(k));
+                }
             }
         }
 
@@ -271,7 +330,8 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
                     if (p.rightAbove(leftBottom) && p.leftBelow(rightTop)) {
                         result.add(p);
                     }
@@ -288,7 +348,8 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
                     if (p.rightAbove(leftBottom) && p.leftBelow(rightTop)) {
                         result.add(p);
                     }
@@ -305,7 +366,8 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
                     if (p.rightAbove(leftBottom) && p.leftBelow(rightTop)) {
                         result.add(p);
                     }
@@ -322,15 +384,14 @@ public class GridIndex<PointType extends I2DPoint> implements I2DIndex<PointType
                 if (i < 0 || i >= m || j < 0 || j >= n) continue;
                 List<PointType> grid = grids[j*m + i];
                 if (grid == null) continue;
-                for (PointType p: grid) {
+                for (int k = 0; k < grid.size(); k ++) {
+                    PointType p = grid.get(k);
                     if (p.rightAbove(leftBottom) && p.leftBelow(rightTop)) {
                         result.add(p);
                     }
                 }
             }
         }
-
-        return result;
     }
 
     @Override
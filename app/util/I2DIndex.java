@@ -12,7 +12,36 @@ public interface I2DIndex<PointType> {
 
     List<PointType> within(I2DPoint center, double radius);
 
+    /**
+     * Append all points within radius of center into the caller-supplied result list,
+     *     so that a caller running searches in a loop can reuse one list across searches
+     *
+     * @param center
+     * @param radius
+     * @param result - points found are appended to it, it is NOT cleared
+     */
+    void within(I2DPoint center, double radius, List<PointType> result);
+
+    /**
+     * Find the point with the smallest id within radius of center,
+     *     the same as the earliest point of within(center, radius), without collecting all of them
+     *
+     * @param center
+     * @param radius
+     * @return null if no point within radius
+     */
+    PointType earliestWithin(I2DPoint center, double radius);
+
     List<PointType> range(I2DPoint leftBottom, I2DPoint rightTop);
 
+    /**
+     * Append all points inside rectangle [leftBottom, rightTop] into the caller-supplied result list
+     *
+     * @param leftBottom
+     * @param rightTop
+     * @param result - points found are appended to it, it is NOT cleared
+     */
+    void range(I2DPoint leftBottom, I2DPoint rightTop, List<PointType> result);
+
     void print();
 }
@@ -17,6 +17,14 @@ public interface I2DPoint {
 
     double distanceTo(I2DPoint p2);
 
+    /**
+     * squared distance to p2, compare it with radius * radius to avoid sqrt
+     *
+     * @param p2
+     * @return
+     */
+    double squareDistanceTo(I2DPoint p2);
+
     boolean leftBelow(I2DPoint p2);
 
     boolean rightAbove(I2DPoint p2);
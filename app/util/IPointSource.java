@@ -0,0 +1,65 @@
+package util;
+
+import model.CoordinateBuffer;
+import model.PointTuple;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Source of point tuples, the same queries as the tweets table in PostgreSQL
+ */
+public interface IPointSource {
+
+    interface RowConsumer {
+        /**
+         * @param x
+         * @param y
+         * @param tid
+         * @param time - create_at in milliseconds
+         */
+        void accept(double x, double y, long tid, long time);
+    }
+
+    List<PointTuple> queryPointTuplesForKeyword(String keyword);
+
+    /**
+     * Stream tuples for keyword to consumer chunk by chunk instead of returning them in one list,
+     *   the chunk list and its PointTuple objects are reused after consumer returns, copy what should be kept
+     *
+     * @param keyword
+     * @param chunkSize - tuples in a chunk, <= 0 - all tuples in one chunk
+     * @param consumer
+     * @return number of tuples, -1 if the query fails
+     */
+    int queryPointTuplesForKeyword(String keyword, int chunkSize, Consumer<List<PointTuple>> consumer);
+
+    /**
+     * Scan rows for keyword with their create_at, in the order of create_at, to fill PointCache
+     *
+     * @param keyword
+     * @param consumer
+     * @return number of rows, -1 if the query fails
+     */
+    int scanPointsForKeyword(String keyword, RowConsumer consumer);
+
+    List<PointTuple> queryPointTuplesForKeywordAndTime(String keyword, Date sd, Date ed);
+
+    List<PointTuple> queryPointTuplesForTime(Date sd, Date ed);
+
+    PointTuple[] queryPointTuplesForLimit(int limit);
+
+    /**
+     * Bulk load of coordinates only, for full-table loads that need no tid
+     *
+     * @param sd
+     * @param ed
+     * @return null if the query fails
+     */
+    CoordinateBuffer queryCoordinatesForTime(Date sd, Date ed);
+
+    CoordinateBuffer queryCoordinatesForLimit(int limit);
+
+    void disconnectDB();
+}
@@ -0,0 +1,218 @@
+package util;
+
+/**
+ * Static KD-Tree over point indexes, implicit in the order of two arrays
+ *
+ *     ids - point indexes in KD-Tree order, coords - coords[2*i] and coords[2*i+1] are x and y of point ids[i],
+ *     (1) the sub-tree of range [left, right] splits at m = (left + right) / 2,
+ *            points of [left..m-1] <= point m <= points of [m+1..right] on the axis of this level;
+ *     (2) axis alternates between x and y level by level, root aligns with x;
+ *     (3) ranges with no more than NODE_SIZE points are leaves and are scanned linearly.
+ *
+ *     The static sort() / select() / swap() keep the layout for StaticKDTree and the bulk load of KDTree,
+ *       an instance keeps the tree of given x / y arrays and answers within() with point indexes, e.g. model.PointStore.
+ */
+public class ImplicitKDTree {
+
+    // ranges with no more than NODE_SIZE points are not split further
+    public static final int NODE_SIZE = 64;
+
+    private int size;
+    private int[] ids;
+    private double[] coords;
+
+    // result of the last within search
+    private int[] neighbors = new int[64];
+    // stack reused by within searches, each entry is a triple [left, right, axis]
+    private int[] stack = new int[3 * 64];
+
+    /**
+     * Build the tree over points 0 ~ size-1
+     *
+     * @param x - not modified
+     * @param y - not modified
+     * @param size
+     */
+    public ImplicitKDTree(double[] x, double[] y, int size) {
+        this.size = size;
+        this.ids = new int[size];
+        this.coords = new double[2 * size];
+        for (int i = 0; i < size; i ++) {
+            this.ids[i] = i;
+            this.coords[2 * i] = x[i];
+            this.coords[2 * i + 1] = y[i];
+        }
+        sort(ids, coords, 0, size - 1, 0);
+    }
+
+    /**
+     * Find all points within radius of (qx, qy)
+     *
+     * @param qx
+     * @param qy
+     * @param radius
+     * @return number of points found, get them by neighbor(0 ~ number-1)
+     */
+    public int within(double qx, double qy, double radius) {
+        int count = 0;
+        if (size == 0) {
+            return count;
+        }
+        double radius2 = radius * radius;
+        int top = push(0, 0, size - 1, 0);
+        while (top > 0) {
+            int axis = stack[-- top];
+            int right = stack[-- top];
+            int left = stack[-- top];
+
+            // leaf, scan all points
+            if (right - left <= NODE_SIZE) {
+                for (int k = left; k <= right; k ++) {
+                    if (squareDistance(coords[2 * k], coords[2 * k + 1], qx, qy) <= radius2) {
+                        count = add(count, ids[k]);
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >>> 1;
+            double mx = coords[2 * m];
+            double my = coords[2 * m + 1];
+            if (squareDistance(mx, my, qx, qy) <= radius2) {
+                count = add(count, ids[m]);
+            }
+
+            // left part can have points within range
+            if (axis == 0? qx - radius <= mx: qy - radius <= my) {
+                top = push(top, left, m - 1, 1 - axis);
+            }
+            // right part can have points within range
+            if (axis == 0? qx + radius >= mx: qy + radius >= my) {
+                top = push(top, m + 1, right, 1 - axis);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param k
+     * @return k-th point index found by the last within search
+     */
+    public int neighbor(int k) {
+        return this.neighbors[k];
+    }
+
+    private int add(int count, int id) {
+        if (count == neighbors.length) {
+            int[] newNeighbors = new int[neighbors.length * 2];
+            System.arraycopy(neighbors, 0, newNeighbors, 0, count);
+            neighbors = newNeighbors;
+        }
+        neighbors[count] = id;
+        return count + 1;
+    }
+
+    private static double squareDistance(double x1, double y1, double x2, double y2) {
+        return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+    }
+
+    /**
+     * push triple [left, right, axis] on top of search stack, grow the stack if it is full
+     *
+     * @return new top of the stack
+     */
+    private int push(int top, int left, int right, int axis) {
+        if (top + 3 > stack.length) {
+            int[] newStack = new int[stack.length * 2];
+            System.arraycopy(stack, 0, newStack, 0, top);
+            stack = newStack;
+        }
+        stack[top] = left;
+        stack[top + 1] = right;
+        stack[top + 2] = axis;
+        return top + 3;
+    }
+
+    /**
+     * sort ids[left..right] and their coords into the implicit KD-Tree layout
+     *
+     * @param ids
+     * @param coords
+     * @param left
+     * @param right
+     * @param axis - 0-x, 1-y
+     */
+    public static void sort(int[] ids, double[] coords, int left, int right, int axis) {
+        if (right - left <= NODE_SIZE) {
+            return;
+        }
+        int m = (left + right) >>> 1;
+        select(ids, coords, m, left, right, axis);
+        sort(ids, coords, left, m - 1, 1 - axis);
+        sort(ids, coords, m + 1, right, 1 - axis);
+    }
+
+    /**
+     * Floyd-Rivest selection, rearrange [left..right] so that the k-th point is the k-th smallest on given axis
+     *
+     * @param ids
+     * @param coords
+     * @param k
+     * @param left
+     * @param right
+     * @param axis - 0-x, 1-y
+     */
+    public static void select(int[] ids, double[] coords, int k, int left, int right, int axis) {
+        while (right > left) {
+            if (right - left > 600) {
+                int n = right - left + 1;
+                int m = k - left + 1;
+                double z = Math.log(n);
+                double s = 0.5 * Math.exp(2 * z / 3);
+                double sd = 0.5 * Math.sqrt(z * s * (n - s) / n) * (m - n / 2 < 0 ? -1 : 1);
+                int newLeft = (int) Math.max(left, Math.floor(k - m * s / n + sd));
+                int newRight = (int) Math.min(right, Math.floor(k + (n - m) * s / n + sd));
+                select(ids, coords, k, newLeft, newRight, axis);
+            }
+
+            double t = coords[2 * k + axis];
+            int i = left;
+            int j = right;
+
+            swap(ids, coords, left, k);
+            if (coords[2 * right + axis] > t) swap(ids, coords, left, right);
+
+            while (i < j) {
+                swap(ids, coords, i, j);
+                i ++;
+                j --;
+                while (coords[2 * i + axis] < t) i ++;
+                while (coords[2 * j + axis] > t) j --;
+            }
+
+            if (coords[2 * left + axis] == t) swap(ids, coords, left, j);
+            else {
+                j ++;
+                swap(ids, coords, j, right);
+            }
+
+            if (j <= k) left = j + 1;
+            if (k <= j) right = j - 1;
+        }
+    }
+
+    /**
+     * swap positions i and j of ids and coords
+     */
+    public static void swap(int[] ids, double[] coords, int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        double x = coords[2 * i];
+        coords[2 * i] = coords[2 * j];
+        coords[2 * j] = x;
+        double y = coords[2 * i + 1];
+        coords[2 * i + 1] = coords[2 * j + 1];
+        coords[2 * j + 1] = y;
+    }
+}
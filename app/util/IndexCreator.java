@@ -6,21 +6,48 @@ public class IndexCreator {
             case "GridIndex":
                 System.out.println("[IndexCreator] is creating GridIndex with step = " + step + " ...");
                 return new GridIndex<>(step);
+            case "FlatGridIndex":
+                System.out.println("[IndexCreator] is creating FlatGridIndex with step = " + step + " ...");
+                return new FlatGridIndex<>(step);
             case "KDTree":
                 System.out.println("[IndexCreator] is creating KDTree ...");
                 return new KDTree<>();
+            case "StaticKDTree":
+                System.out.println("[IndexCreator] is creating StaticKDTree ...");
+                return new StaticKDTree<>();
         }
         return new KDTree<>();
     }
 
+    /**
+     * Algorithms updating their indexes after they are built, e.g. BiSuperCluster, call insert / delete on them,
+     *   an index type that only supports load is replaced by KDTree for them
+     *
+     * @param indexType
+     * @return indexType if its indexes support insert and delete, otherwise KDTree
+     */
+    public static String updatableIndexType(String indexType) {
+        if ("StaticKDTree".equals(indexType) || "FlatGridIndex".equals(indexType)) {
+            System.out.println("[IndexCreator] " + indexType + " does not support insert / delete, uses KDTree instead ...");
+            return "KDTree";
+        }
+        return indexType;
+    }
+
     public static I2DIndex[] createIndexArray(String indexType, int size) {
         switch (indexType) {
             case "GridIndex":
                 System.out.println("[IndexCreator] is creating GridIndex[" + size + "] array ...");
                 return new GridIndex[size];
+            case "FlatGridIndex":
+                System.out.println("[IndexCreator] is creating FlatGridIndex[" + size + "] array ...");
+                return new FlatGridIndex[size];
             case "KDTree":
                 System.out.println("[IndexCreator] is creating KDTree[" + size + "] array ...");
                 return new KDTree[size];
+            case "StaticKDTree":
+                System.out.println("[IndexCreator] is creating StaticKDTree[" + size + "] array ...");
+                return new StaticKDTree[size];
         }
         return new KDTree[size];
     }
@@ -14,12 +14,15 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
         Node left = null;
         Node right = null;
         boolean deleted = false;
+        // smallest id in this sub-tree, deletes do not raise it, so it is a lower bound
+        int minId;
 
         public Node(PointType point, boolean align, int depth) {
             this.point = point;
             this.align = align;
             this.depth = depth;
             this.duplicates = new LinkedList<>();
+            this.minId = point.getId();
         }
 
         public PointType getPoint() {
@@ -32,6 +35,9 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
 
         public void addDuplicate(PointType point) {
             this.duplicates.add(point);
+            if (point.getId() < this.minId) {
+                this.minId = point.getId();
+            }
         }
     }
 
@@ -39,6 +45,11 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
     private int height = 0;
     private int size = 0;
 
+    // queue reused by within / range searches, so that a search does not allocate a new queue every time
+    private Queue<Node> searchQueue = new ArrayDeque<>();
+    // stack reused by earliestWithin searches
+    private Deque<Node> searchStack = new ArrayDeque<>();
+
     public KDTree() {
         this.root = null;
     }
@@ -61,6 +72,9 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
         // find the position to insert
         while (currentNode != null) {
             I2DPoint currentPoint = currentNode.getPoint();
+            if (point.getId() < currentNode.minId) {
+                currentNode.minId = point.getId();
+            }
             // duplicate
             if (currentPoint.equalsTo(point)) {
                 if (currentNode.deleted) {
@@ -113,10 +127,97 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
         }
     }
 
+    /**
+     * Load given points into the tree
+     *
+     *   - if the tree is empty, bulk load the points as a balanced tree by splitting at the median point
+     *     on alternating x/y axis, so that the tree depth is O(log n) regardless of the input order;
+     *   - otherwise, insert the points one by one.
+     *
+     * @param points - the array itself is not modified
+     */
     public void load(PointType[] points) {
+        if (root != null) {
+            for (int i = 0; i < points.length; i ++) {
+                this.insert(points[i]);
+            }
+            return;
+        }
+        if (points.length == 0) {
+            return;
+        }
+        // points are moved around by their indexes and coordinates, see ImplicitKDTree
+        int[] ids = new int[points.length];
+        double[] coords = new double[2 * points.length];
         for (int i = 0; i < points.length; i ++) {
-            this.insert(points[i]);
+            ids[i] = i;
+            coords[2 * i] = points[i].getX();
+            coords[2 * i + 1] = points[i].getY();
+        }
+        root = build(points, ids, coords, 0, points.length - 1, true, 0);
+        size = points.length;
+    }
+
+    /**
+     * Build a balanced sub-tree for positions [lo..hi] aligned with given axis
+     *
+     *   - the node takes the median point, left sub-tree takes points strictly less than the median on given axis,
+     *     right sub-tree takes points greater than or equal to the median on given axis,
+     *     the same invariant as insert() keeps, so insert/delete/within/range work on the built tree as usual;
+     *   - points at exactly the same location as the median point become its duplicates.
+     *
+     * @param points - not modified
+     * @param ids - ids[i] is the index in points at position i
+     * @param coords - coords[2*i] and coords[2*i+1] are x and y at position i
+     * @param lo
+     * @param hi
+     * @param align - true-x, false-y
+     * @param depth
+     * @return
+     */
+    private Node build(PointType[] points, int[] ids, double[] coords, int lo, int hi, boolean align, int depth) {
+        if (lo > hi) {
+            return null;
+        }
+        if (depth + 1 > height) {
+            height = depth + 1;
+        }
+        int axis = align? 0: 1;
+
+        // move the median to position k, [lo, k) <= median <= (k, hi]
+        int k = (lo + hi) >>> 1;
+        ImplicitKDTree.select(ids, coords, k, lo, hi, axis);
+        double key = coords[2 * k + axis];
+
+        // move points equal to the median on this axis from the left part to right next to k,
+        // so that [lo, m) < median == [m, k]
+        int m = k;
+        for (int i = k - 1; i >= lo; i --) {
+            if (coords[2 * i + axis] == key) {
+                m --;
+                ImplicitKDTree.swap(ids, coords, i, m);
+            }
+        }
+        ImplicitKDTree.swap(ids, coords, m, k);
+        Node node = new Node(points[ids[m]], align, depth);
+
+        // move duplicates of the median point to the tail of right part, and keep them inside node
+        int right = hi;
+        for (int i = hi; i > m; i --) {
+            if (points[ids[i]].equalsTo(node.getPoint())) {
+                ImplicitKDTree.swap(ids, coords, i, right);
+                right --;
+            }
         }
+        for (int i = right + 1; i <= hi; i ++) {
+            node.addDuplicate(points[ids[i]]);
+        }
+
+        node.left = build(points, ids, coords, lo, m - 1, !align, depth + 1);
+        node.right = build(points, ids, coords, m + 1, right, !align, depth + 1);
+        if (node.left != null && node.left.minId < node.minId) node.minId = node.left.minId;
+        if (node.right != null && node.right.minId < node.minId) node.minId = node.right.minId;
+        return node;
     }
 
     public void delete(PointType point) {
@@ -173,21 +274,28 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
 
     public List<PointType> within(I2DPoint center, double radius) {
         List<PointType> result = new ArrayList<>();
+        within(center, radius, result);
+        return result;
+    }
+
+    public void within(I2DPoint center, double radius, List<PointType> result) {
         if (root == null) {
-            return result;
+            return;
         }
-        Queue<Node> queue = new LinkedList<>();
+        double radius2 = radius * radius;
+        Queue<Node> queue = this.searchQueue;
+        queue.clear();
         queue.add(root);
         while (queue.size() > 0) {
             Node currentNode = queue.poll();
             boolean align = currentNode.align;
             PointType currentPoint = currentNode.getPoint();
             // if current node within range, put it into result, and put both children to queue
-            if (currentPoint.distanceTo(center) <= radius) {
+            if (currentPoint.squareDistanceTo(center) <= radius2) {
                 if (!currentNode.deleted) {
                     result.add(currentPoint);
                 }
-                // also add duplicates inside current node
+                // also add duplicates inside current node, one by one, addAll copies them into an array first
                 for (PointType duplicate: currentNode.getDuplicates()) {
                     result.add(duplicate);
                 }
@@ -232,15 +340,74 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
                 }
             }
         }
-        return result;
+    }
+
+    /**
+     * Find the point with the smallest id within radius of center
+     *
+     *   - depth-first, the child with the smaller minId is searched first,
+     *     sub-trees whose minId is not smaller than the best id found so far are skipped,
+     *     so the cost does not grow with the number of points within radius.
+     *
+     * @param center
+     * @param radius
+     * @return null if no point within radius
+     */
+    public PointType earliestWithin(I2DPoint center, double radius) {
+        if (root == null) {
+            return null;
+        }
+        double radius2 = radius * radius;
+        PointType earliest = null;
+        Deque<Node> stack = this.searchStack;
+        stack.clear();
+        stack.push(root);
+        while (stack.size() > 0) {
+            Node currentNode = stack.pop();
+            // no smaller id in this sub-tree
+            if (earliest != null && currentNode.minId >= earliest.getId()) {
+                continue;
+            }
+            PointType currentPoint = currentNode.getPoint();
+            if (currentPoint.squareDistanceTo(center) <= radius2) {
+                if (!currentNode.deleted && (earliest == null || currentPoint.getId() < earliest.getId())) {
+                    earliest = currentPoint;
+                }
+                for (PointType duplicate: currentNode.getDuplicates()) {
+                    if (earliest == null || duplicate.getId() < earliest.getId()) {
+                        earliest = duplicate;
+                    }
+                }
+            }
+            double key = currentNode.align? currentPoint.getX(): currentPoint.getY();
+            double target = currentNode.align? center.getX(): center.getY();
+            // the same pruning as within
+            Node left = key + radius >= target? currentNode.left: null;
+            Node right = target >= key - radius? currentNode.right: null;
+            if (left != null && right != null && left.minId < right.minId) {
+                stack.push(right);
+                stack.push(left);
+            }
+            else {
+                if (left != null) stack.push(left);
+                if (right != null) stack.push(right);
+            }
+        }
+        return earliest;
     }
 
     public List<PointType> range(I2DPoint leftBottom, I2DPoint rightTop) {
         List<PointType> result = new ArrayList<>();
+        range(leftBottom, rightTop, result);
+        return result;
+    }
+
+    public void range(I2DPoint leftBottom, I2DPoint rightTop, List<PointType> result) {
         if (root == null) {
-            return result;
+            return;
         }
-        Queue<Node> queue = new LinkedList<>();
+        Queue<Node> queue = this.searchQueue;
+        queue.clear();
         queue.add(root);
         while (queue.size() > 0) {
             Node currentNode = queue.poll();
@@ -251,7 +418,7 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
                 if (!currentNode.deleted) {
                     result.add(currentPoint);
                 }
-                // also add duplicates inside current node
+                // also add duplicates inside current node, one by one, addAll copies them into an array first
                 for (PointType duplicate: currentNode.getDuplicates()) {
                     result.add(duplicate);
                 }
@@ -314,7 +481,6 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
                 }
             }
         }
-        return result;
     }
 
     public void print() {
@@ -374,4 +540,8 @@ public class KDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
     public int size() {
         return this.size;
     }
+
+    public int height() {
+        return this.height;
+    }
 }
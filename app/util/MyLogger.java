@@ -5,13 +5,14 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 public class MyLogger {
-    private static final DateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    // SimpleDateFormat is not thread-safe, agents and build threads log at the same time
+    private static final ThreadLocal<DateFormat> sdf = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
 
     public static void info(Class c, String message) {
-        System.out.println("[" + sdf.format(new Date()) + "][" + c.getName() + "] " + message);
+        System.out.println("[" + sdf.get().format(new Date()) + "][" + c.getName() + "] " + message);
     }
 
     public static void error(Class c, String message) {
-        System.err.println("[" + sdf.format(new Date()) + "][" + c.getName() + "] " + message);
+        System.err.println("[" + sdf.get().format(new Date()) + "][" + c.getName() + "] " + message);
     }
 }
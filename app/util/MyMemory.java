@@ -1,15 +1,9 @@
 package util;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class MyMemory {
 
     static final int mb = 1024*1024;
 
-    public static List<Integer> progressUsedMemory = new ArrayList<>();
-    public static List<Integer> porgressTotalMemory = new ArrayList<>();
-
     public static void printMemory() {
 
         //Getting the runtime reference from system
@@ -3,23 +3,40 @@ package util;
 import java.util.*;
 
 public class MyTimer {
-    public static Map<String, List<Double>> progressTimer = new HashMap<>();
-    public static Map<String, Double> temporaryTimer = new HashMap<>();
-    private static Stack<Long> startTimes = new Stack<>();
-    private static Queue<Double> durations = new LinkedList<>();
+    // per thread, SuperClusters are timed on build threads and actor threads at the same time
+    private static ThreadLocal<Stack<Long>> startTimes = ThreadLocal.withInitial(Stack::new);
+    private static ThreadLocal<Queue<Double>> durations = ThreadLocal.withInitial(LinkedList::new);
+    // times of stages inside one call, e.g. tree-cut inside getClusters, read back by its caller on the same thread
+    private static ThreadLocal<Map<String, Double>> temporaryTimes = ThreadLocal.withInitial(HashMap::new);
 
     public static void startTimer() {
         long startTime = System.nanoTime();
-        startTimes.push(startTime);
+        startTimes.get().push(startTime);
     }
 
     public static void stopTimer() {
         long endTime = System.nanoTime();
-        long startTime = startTimes.pop();
-        durations.add((double) (endTime - startTime) / 1000000000.0);
+        long startTime = startTimes.get().pop();
+        durations.get().add((double) (endTime - startTime) / 1000000000.0);
     }
 
     public static double durationSeconds() {
-        return durations.poll();
+        return durations.get().poll();
+    }
+
+    public static void clearTemporaryTimes() {
+        temporaryTimes.get().clear();
+    }
+
+    public static void putTemporaryTime(String name, double seconds) {
+        temporaryTimes.get().put(name, seconds);
+    }
+
+    /**
+     * @param name
+     * @return seconds put by putTemporaryTime on this thread, 0 if none
+     */
+    public static double getTemporaryTime(String name) {
+        return temporaryTimes.get().getOrDefault(name, 0.0);
     }
 }
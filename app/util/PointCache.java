@@ -0,0 +1,470 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk cache of keyword query results, one file of columns (x, y, tid, create_at) per keyword
+ *
+ *     (1) file - a header followed by the 4 columns, each an array of count little-endian 8-byte values,
+ *                columns are memory-mapped when read, so a hit costs no parsing and no copy into the heap;
+ *     (2) coverage - an entry is valid for create_at in [validFrom, validTo], at first all times,
+ *                    invalidate(sd, ed) shrinks the coverage of entries overlapping [sd, ed] (e.g. tweets inserted there),
+ *                    entries with nothing left are deleted, queries outside the coverage go to the database;
+ *     (3) budget - total bytes of files are bounded by point.cache.budget,
+ *                  the least recently used files are deleted first, last use is kept as the file's modified time.
+ *
+ *     Files are grouped in one directory per point source (namespace), e.g. the table name.
+ */
+public class PointCache {
+
+    private static final int MAGIC = 0x31435050; // "PPC1" in little-endian
+    private static final int HEADER_BYTES = 64;
+    private static final int FLAG_SORTED = 1;
+    private static final String SUFFIX = ".points";
+
+    private static PointCache instance = null;
+
+    public static synchronized PointCache getInstance() {
+        if (instance == null) {
+            instance = new PointCache(new File(Constants.POINT_CACHE_DIR), Constants.POINT_CACHE_BUDGET);
+        }
+        return instance;
+    }
+
+    class Entry {
+        File file;
+        long bytes;
+        long lastUse;
+    }
+
+    private File dir;
+    private long budget;
+    private long bytes = 0;
+    private Map<String, Entry> entries = new HashMap<>();
+
+    // statistics
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param dir - directory of cache files, created if not exists, files left in it are reused
+     * @param budget - bytes of all cache files
+     */
+    public PointCache(File dir, long budget) {
+        this.dir = dir;
+        this.budget = budget;
+        File[] namespaces = dir.listFiles(File::isDirectory);
+        if (namespaces == null) {
+            return;
+        }
+        for (File namespace: namespaces) {
+            File[] files = namespace.listFiles();
+            if (files == null) continue;
+            for (File file: files) {
+                // files of interrupted writes or unknown formats
+                if (!file.getName().endsWith(SUFFIX) || readHeader(file) == null) {
+                    file.delete();
+                    continue;
+                }
+                Entry entry = new Entry();
+                entry.file = file;
+                entry.bytes = file.length();
+                entry.lastUse = file.lastModified();
+                entries.put(namespace.getName() + "/" + file.getName(), entry);
+                bytes += entry.bytes;
+            }
+        }
+        System.out.println("[PointCache] opened " + dir + ", " + this);
+    }
+
+    /**
+     * @param namespace
+     * @param keyword
+     * @param sd - in milliseconds
+     * @param ed - in milliseconds
+     * @return memory-mapped columns of keyword, null if not cached or [sd, ed] is not covered
+     */
+    public synchronized Columns get(String namespace, String keyword, long sd, long ed) {
+        Entry entry = entries.get(key(namespace, keyword));
+        if (entry == null) {
+            misses ++;
+            return null;
+        }
+        Columns columns;
+        try {
+            columns = map(entry.file);
+        } catch (IOException e) {
+            System.err.println("[PointCache] reading " + entry.file + " failed: " + e.getMessage());
+            remove(key(namespace, keyword));
+            misses ++;
+            return null;
+        }
+        if (!columns.covers(sd, ed)) {
+            misses ++;
+            return null;
+        }
+        hits ++;
+        entry.lastUse = System.currentTimeMillis();
+        entry.file.setLastModified(entry.lastUse);
+        return columns;
+    }
+
+    /**
+     * @param namespace
+     * @param keyword
+     * @return a writer collecting the result of keyword, commit() puts it into the cache
+     */
+    public Writer writer(String namespace, String keyword) {
+        return new Writer(namespace, keyword);
+    }
+
+    /**
+     * Shrink coverage of entries overlapping [sd, ed], keeping the part before sd if any, otherwise the part after ed,
+     *   entries with nothing left are deleted
+     *
+     * @param sd - in milliseconds
+     * @param ed - in milliseconds
+     * @return number of entries changed or deleted
+     */
+    public synchronized int invalidate(long sd, long ed) {
+        int changed = 0;
+        for (String key: entries.keySet().toArray(new String[0])) {
+            Entry entry = entries.get(key);
+            long[] header = readHeader(entry.file);
+            if (header == null) {
+                remove(key);
+                changed ++;
+                continue;
+            }
+            long validFrom = header[2], validTo = header[3];
+            if (ed < validFrom || sd > validTo) continue;
+            changed ++;
+            if (sd > validFrom) {
+                validTo = sd - 1;
+            }
+            else if (ed < validTo) {
+                validFrom = ed + 1;
+            }
+            else {
+                remove(key);
+                continue;
+            }
+            try {
+                writeCoverage(entry.file, validFrom, validTo);
+            } catch (IOException e) {
+                remove(key);
+            }
+        }
+        System.out.println("[PointCache] invalidated [" + sd + ", " + ed + "], " + changed + " entries changed, " + this);
+        return changed;
+    }
+
+    private void put(String key, File file) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.bytes;
+        }
+        Entry entry = new Entry();
+        entry.file = file;
+        entry.bytes = file.length();
+        entry.lastUse = System.currentTimeMillis();
+        entries.put(key, entry);
+        bytes += entry.bytes;
+        // delete least recently used files until within the budget, the new one last
+        while (bytes > budget && !entries.isEmpty()) {
+            String victim = null;
+            for (Map.Entry<String, Entry> candidate: entries.entrySet()) {
+                if (candidate.getKey().equals(key) && entries.size() > 1) continue;
+                if (victim == null || candidate.getValue().lastUse < entries.get(victim).lastUse) {
+                    victim = candidate.getKey();
+                }
+            }
+            remove(victim);
+            evictions ++;
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        bytes -= entry.bytes;
+        // a file still mapped by a reader stays readable until unmapped
+        entry.file.delete();
+    }
+
+    private static String key(String namespace, String keyword) {
+        return namespace + "/" + fileName(keyword);
+    }
+
+    private static String fileName(String keyword) {
+        try {
+            return URLEncoder.encode(keyword, "UTF-8").replace("*", "%2A") + SUFFIX;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param file
+     * @return [flags, count, validFrom, validTo], null if it is not a cache file
+     */
+    private static long[] readHeader(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0);
+            if (header.hasRemaining()) {
+                return null;
+            }
+            header.flip();
+            if (header.getInt(0) != MAGIC) {
+                return null;
+            }
+            long count = header.getLong(8);
+            if (channel.size() != HEADER_BYTES + 4 * 8 * count) {
+                return null;
+            }
+            return new long[] {header.getInt(4), count, header.getLong(16), header.getLong(24)};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeCoverage(File file, long validFrom, long validTo) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer coverage = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            coverage.putLong(validFrom).putLong(validTo).flip();
+            channel.write(coverage, 16);
+        }
+    }
+
+    private static Columns map(File file) throws IOException {
+        long[] header = readHeader(file);
+        if (header == null) {
+            throw new IOException("not a point cache file");
+        }
+        int count = (int) header[1];
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long offset = HEADER_BYTES;
+            DoubleBuffer x = mapColumn(channel, FileChannel.MapMode.READ_ONLY, offset, count).asDoubleBuffer();
+            offset += 8L * count;
+            DoubleBuffer y = mapColumn(channel, FileChannel.MapMode.READ_ONLY, offset, count).asDoubleBuffer();
+            offset += 8L * count;
+            LongBuffer tid = mapColumn(channel, FileChannel.MapMode.READ_ONLY, offset, count).asLongBuffer();
+            offset += 8L * count;
+            LongBuffer time = mapColumn(channel, FileChannel.MapMode.READ_ONLY, offset, count).asLongBuffer();
+            // the mappings stay valid after the channel is closed
+            return new Columns(count, x, y, tid, time, (header[0] & FLAG_SORTED) != 0, header[2], header[3]);
+        }
+    }
+
+    // each column is mapped on its own, a mapping holds at most 2 GB
+    private static MappedByteBuffer mapColumn(FileChannel channel, FileChannel.MapMode mode, long offset, int count) throws IOException {
+        MappedByteBuffer column = channel.map(mode, offset, 8L * count);
+        column.order(ByteOrder.LITTLE_ENDIAN);
+        return column;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized String toString() {
+        return "size = " + entries.size() + ", bytes = " + bytes + " / " + budget
+                + ", hits = " + hits + ", misses = " + misses + ", evictions = " + evictions;
+    }
+
+    /**
+     * Result of one keyword, column by column, either mapped from a cache file or wrapping the arrays of a Writer
+     */
+    public static class Columns {
+        int size;
+        DoubleBuffer x;
+        DoubleBuffer y;
+        LongBuffer tid;
+        LongBuffer time;
+        boolean sorted;
+        long validFrom;
+        long validTo;
+
+        Columns(int size, DoubleBuffer x, DoubleBuffer y, LongBuffer tid, LongBuffer time, boolean sorted, long validFrom, long validTo) {
+            this.size = size;
+            this.x = x;
+            this.y = y;
+            this.tid = tid;
+            this.time = time;
+            this.sorted = sorted;
+            this.validFrom = validFrom;
+            this.validTo = validTo;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double getX(int i) {
+            return x.get(i);
+        }
+
+        public double getY(int i) {
+            return y.get(i);
+        }
+
+        public long getTid(int i) {
+            return tid.get(i);
+        }
+
+        public long getTime(int i) {
+            return time.get(i);
+        }
+
+        /**
+         * @return true if rows are in the order of create_at, then rows of a time range are consecutive
+         */
+        public boolean isSorted() {
+            return sorted;
+        }
+
+        public boolean covers(long sd, long ed) {
+            return validFrom <= sd && ed <= validTo;
+        }
+
+        /**
+         * @param t - in milliseconds
+         * @return the first i with getTime(i) >= t, only if sorted
+         */
+        public int lowerBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (time.get(mid) < t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Collect rows of one keyword in growable arrays, then write them to a cache file
+     */
+    public class Writer {
+        private String namespace;
+        private String keyword;
+        private int size = 0;
+        private double[] x = new double[1024];
+        private double[] y = new double[1024];
+        private long[] tid = new long[1024];
+        private long[] time = new long[1024];
+        private boolean sorted = true;
+
+        Writer(String namespace, String keyword) {
+            this.namespace = namespace;
+            this.keyword = keyword;
+        }
+
+        public void add(double _x, double _y, long _tid, long _time) {
+            if (size == x.length) {
+                int capacity = x.length + (x.length >> 1);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                tid = Arrays.copyOf(tid, capacity);
+                time = Arrays.copyOf(time, capacity);
+            }
+            if (size > 0 && _time < time[size - 1]) {
+                sorted = false;
+            }
+            x[size] = _x;
+            y[size] = _y;
+            tid[size] = _tid;
+            time[size] = _time;
+            size ++;
+        }
+
+        /**
+         * Write the rows to the cache file of keyword,
+         *   if writing fails or the file alone exceeds the budget, the rows are still returned from memory
+         *
+         * @return columns of the rows, covering all times
+         */
+        public Columns commit() {
+            Columns columns = new Columns(size, DoubleBuffer.wrap(x, 0, size).slice(), DoubleBuffer.wrap(y, 0, size).slice(),
+                    LongBuffer.wrap(tid, 0, size).slice(), LongBuffer.wrap(time, 0, size).slice(),
+                    sorted, Long.MIN_VALUE, Long.MAX_VALUE);
+            long fileBytes = HEADER_BYTES + 4L * 8 * size;
+            if (fileBytes > budget) {
+                return columns;
+            }
+            File namespaceDir = new File(dir, namespace);
+            File file = new File(namespaceDir, fileName(keyword));
+            File tmp = new File(namespaceDir, fileName(keyword) + ".tmp" + Thread.currentThread().getId());
+            try {
+                Files.createDirectories(namespaceDir.toPath());
+                write(tmp);
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("[PointCache] writing " + file + " failed: " + e.getMessage());
+                tmp.delete();
+                return columns;
+            }
+            synchronized (PointCache.this) {
+                put(key(namespace, keyword), file);
+            }
+            return columns;
+        }
+
+        private void write(File file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(sorted? FLAG_SORTED: 0).putLong(size).putLong(Long.MIN_VALUE).putLong(Long.MAX_VALUE);
+                header.clear();
+                channel.write(header, 0);
+                long offset = HEADER_BYTES;
+                mapColumn(channel, FileChannel.MapMode.READ_WRITE, offset, size).asDoubleBuffer().put(x, 0, size);
+                offset += 8L * size;
+                mapColumn(channel, FileChannel.MapMode.READ_WRITE, offset, size).asDoubleBuffer().put(y, 0, size);
+                offset += 8L * size;
+                mapColumn(channel, FileChannel.MapMode.READ_WRITE, offset, size).asLongBuffer().put(tid, 0, size);
+                offset += 8L * size;
+                mapColumn(channel, FileChannel.MapMode.READ_WRITE, offset, size).asLongBuffer().put(time, 0, size);
+            }
+        }
+    }
+}
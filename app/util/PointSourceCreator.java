@@ -0,0 +1,46 @@
+package util;
+
+public class PointSourceCreator {
+    public static IPointSource createPointSource(String sourceType) {
+        IPointSource source;
+        switch (sourceType) {
+            case "synthetic":
+                System.out.println("[PointSourceCreator] is creating SyntheticTweets with size = " + Constants.SYNTHETIC_SIZE + " ...");
+                source = new SyntheticTweets(Constants.SYNTHETIC_SIZE, Constants.SYNTHETIC_SEED,
+                        Constants.SYNTHETIC_START, Constants.SYNTHETIC_END);
+                break;
+            case "postgresql":
+            default:
+                System.out.println("[PointSourceCreator] is creating PostgreSQL ...");
+                source = new PostgreSQL();
+        }
+        if (Constants.POINT_CACHE_BUDGET > 0) {
+            String namespace = namespace(sourceType);
+            System.out.println("[PointSourceCreator] is caching keyword results in " + Constants.POINT_CACHE_DIR + "/" + namespace + " ...");
+            return new CachedPointSource(source, PointCache.getInstance(), namespace);
+        }
+        return source;
+    }
+
+    public static IPointSource createPointSource() {
+        return createPointSource(Constants.DATA_SOURCE);
+    }
+
+    /**
+     * @param sourceType
+     * @return name of the data behind the point source, data derived from different sources must not be mixed on disk
+     */
+    public static String namespace(String sourceType) {
+        switch (sourceType) {
+            case "synthetic":
+                return "synthetic-" + Constants.SYNTHETIC_SIZE + "-" + Constants.SYNTHETIC_SEED;
+            case "postgresql":
+            default:
+                return "postgresql-" + Constants.DB_TABLENAME;
+        }
+    }
+
+    public static String namespace() {
+        return namespace(Constants.DATA_SOURCE);
+    }
+}
@@ -1,45 +1,59 @@
 package util;
 
+import model.CoordinateBuffer;
 import model.PointTuple;
 import model.PointTupleListFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.*;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-public class PostgreSQL {
+public class PostgreSQL implements IPointSource {
 
-    public Connection conn = null;
+    // header of binary COPY output: signature, flags and header extension length
+    static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
 
-    public boolean connectDB() {
+    /**
+     * Borrow a connection from the pool shared by all PostgreSQL instances,
+     *   a connection is held only during a query, so instances of concurrent agents do not hold idle connections
+     *
+     * @return null if no connection is available
+     */
+    private ConnectionPool.Lease connectDB() {
         try {
-            conn = DriverManager.getConnection(Constants.DB_URL, Constants.DB_USERNAME, Constants.DB_PASSWORD);
-            System.out.println("Connected to the PostgreSQL server successfully.");
-            return true;
+            return ConnectionPool.getInstance().borrow();
         } catch (SQLException e) {
             System.err.println("Connecting to the PostgreSQL server failed. Exceptions:");
             System.err.println(e.getMessage());
-            return false;
+            return null;
         }
     }
 
+    /**
+     * Close idle connections of the pool, connections borrowed by other instances are closed when returned
+     */
     public void disconnectDB() {
-        try {
-            conn.close();
-            System.out.println("Disconnected from the PostgreSQL server successfully.");
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        ConnectionPool.getInstance().close();
     }
 
     public List<PointTuple> queryPointTuplesForKeyword(String keyword) {
 
-        if (this.conn == null) {
-            if(!this.connectDB()) {
-                return null;
-            }
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return null;
         }
 
         System.out.println("Querying PostgreSQL with keyword: [" + keyword + "] ... ...");
@@ -50,32 +64,18 @@ public class PostgreSQL {
         String sql = "SELECT x, y, id FROM " + Constants.DB_TABLENAME + " WHERE to_tsvector('english', text)@@to_tsquery('english', ?)";
         long start = System.nanoTime();
         try {
-            PreparedStatement statement = conn.prepareStatement(sql);
+            PreparedStatement statement = prepareRead(lease, sql);
             statement.setString(1, keyword);
             System.out.println("SQL: " + statement);
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                Double x = rs.getDouble(1);
-                Double y = rs.getDouble(2);
-                long tid = rs.getLong(3);
-                // still enough objects in list can be reused
-                if (i < result.size()) {
-                    result.get(i).setX(x);
-                    result.get(i).setY(y);
-                    result.get(i).tid = tid;
-                }
-                // no more objects can be reused
-                else {
-                    PointTuple pt = new PointTuple();
-                    pt.setX(x);
-                    pt.setY(y);
-                    pt.tid = tid;
-                    result.add(pt);
-                }
-                i ++;
+            try (ResultSet rs = statement.executeQuery()) {
+                i = readPointTuples(rs, result);
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            lease.failed(e);
+        } finally {
+            endRead(lease);
+            lease.close();
         }
         // remove additional objects in the tail of the list
         while (i < result.size()) {
@@ -88,12 +88,81 @@ public class PostgreSQL {
         return result;
     }
 
-    public List<PointTuple> queryPointTuplesForKeywordAndTime(String keyword, Date sd, Date ed) {
+    public int queryPointTuplesForKeyword(String keyword, int chunkSize, Consumer<List<PointTuple>> consumer) {
 
-        if (this.conn == null) {
-            if(!this.connectDB()) {
-                return null;
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return -1;
+        }
+
+        System.out.println("Streaming PostgreSQL with keyword: [" + keyword + "] in chunks of " + chunkSize + " ... ...");
+        int count = -1;
+        String sql = "SELECT x, y, id FROM " + Constants.DB_TABLENAME + " WHERE to_tsvector('english', text)@@to_tsquery('english', ?)";
+        long start = System.nanoTime();
+        try {
+            PreparedStatement statement = prepareRead(lease, sql);
+            statement.setString(1, keyword);
+            System.out.println("SQL: " + statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                count = streamPointTuples(rs, chunkSize, consumer);
             }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            lease.failed(e);
+            count = -1;
+        } finally {
+            endRead(lease);
+            lease.close();
+        }
+        long end = System.nanoTime();
+        System.out.println("Streaming PostgreSQL with keyword: [" + keyword + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + count);
+        return count;
+    }
+
+    public int scanPointsForKeyword(String keyword, RowConsumer consumer) {
+
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return -1;
+        }
+
+        System.out.println("Scanning PostgreSQL with keyword: [" + keyword + "] ... ...");
+        int count = 0;
+        String sql = "SELECT x, y, id, create_at FROM " + Constants.DB_TABLENAME + " WHERE to_tsvector('english', text)@@to_tsquery('english', ?) ORDER BY create_at";
+        long start = System.nanoTime();
+        try {
+            PreparedStatement statement = prepareRead(lease, sql);
+            statement.setString(1, keyword);
+            System.out.println("SQL: " + statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp createAt = rs.getTimestamp(4);
+                    consumer.accept(rs.getDouble(1), rs.getDouble(2), rs.getLong(3), createAt == null? Long.MIN_VALUE: createAt.getTime());
+                    count ++;
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            lease.failed(e);
+            count = -1;
+        } finally {
+            endRead(lease);
+            lease.close();
+        }
+        long end = System.nanoTime();
+        System.out.println("Scanning PostgreSQL with keyword: [" + keyword + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + count);
+        return count;
+    }
+
+    public List<PointTuple> queryPointTuplesForKeywordAndTime(String keyword, Date sd, Date ed) {
+
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return null;
         }
 
         System.out.println("Querying PostgreSQL with keyword: [" + keyword + "] and time [" + sd + ", " + ed + "]... ...");
@@ -110,34 +179,20 @@ public class PostgreSQL {
         String sql = "SELECT x, y, id FROM " + Constants.DB_TABLENAME + " WHERE to_tsvector('english', text)@@to_tsquery('english', ?) and create_at between ? and ?";
         long start = System.nanoTime();
         try {
-            PreparedStatement statement = conn.prepareStatement(sql);
+            PreparedStatement statement = prepareRead(lease, sql);
             statement.setString(1, keyword);
             statement.setTimestamp(2, new Timestamp(sd.getTime()));
             statement.setTimestamp(3, new Timestamp(ed.getTime()));
             System.out.println("SQL: " + statement);
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                Double x = rs.getDouble(1);
-                Double y = rs.getDouble(2);
-                long tid = rs.getLong(3);
-                // still enough objects in list can be reused
-                if (i < result.size()) {
-                    result.get(i).setX(x);
-                    result.get(i).setY(y);
-                    result.get(i).tid = tid;
-                }
-                // no more objects can be reused
-                else {
-                    PointTuple pt = new PointTuple();
-                    pt.setX(x);
-                    pt.setY(y);
-                    pt.tid = tid;
-                    result.add(pt);
-                }
-                i ++;
+            try (ResultSet rs = statement.executeQuery()) {
+                i = readPointTuples(rs, result);
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            lease.failed(e);
+        } finally {
+            endRead(lease);
+            lease.close();
         }
         //-DEBUG-//
 //        if (result.size() > size) {
@@ -157,10 +212,9 @@ public class PostgreSQL {
 
     public List<PointTuple> queryPointTuplesForTime(Date sd, Date ed) {
 
-        if (this.conn == null) {
-            if(!this.connectDB()) {
-                return null;
-            }
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return null;
         }
 
         System.out.println("Querying PostgreSQL with time [" + sd + ", " + ed + "]... ...");
@@ -176,33 +230,19 @@ public class PostgreSQL {
         String sql = "SELECT x, y, id FROM " + Constants.DB_TABLENAME + " WHERE create_at between ? and ?";
         long start = System.nanoTime();
         try {
-            PreparedStatement statement = conn.prepareStatement(sql);
+            PreparedStatement statement = prepareRead(lease, sql);
             statement.setTimestamp(1, new Timestamp(sd.getTime()));
             statement.setTimestamp(2, new Timestamp(ed.getTime()));
             System.out.println("SQL: " + statement);
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                Double x = rs.getDouble(1);
-                Double y = rs.getDouble(2);
-                long tid = rs.getLong(3);
-                // still enough objects in list can be reused
-                if (i < result.size()) {
-                    result.get(i).setX(x);
-                    result.get(i).setY(y);
-                    result.get(i).tid = tid;
-                }
-                // no more objects can be reused
-                else {
-                    PointTuple pt = new PointTuple();
-                    pt.setX(x);
-                    pt.setY(y);
-                    pt.tid = tid;
-                    result.add(pt);
-                }
-                i ++;
+            try (ResultSet rs = statement.executeQuery()) {
+                i = readPointTuples(rs, result);
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            lease.failed(e);
+        } finally {
+            endRead(lease);
+            lease.close();
         }
         //-DEBUG-//
 //        if (result.size() > size) {
@@ -221,10 +261,9 @@ public class PostgreSQL {
     }
 
     public PointTuple[] queryPointTuplesForLimit(int limit) {
-        if (this.conn == null) {
-            if(!this.connectDB()) {
-                return null;
-            }
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return null;
         }
 
         System.out.println("Querying PostgreSQL with limit: [" + limit + "] ... ...");
@@ -232,21 +271,17 @@ public class PostgreSQL {
         String sql = "SELECT x, y, id FROM " + Constants.DB_TABLENAME + " limit ?";
         long start = System.nanoTime();
         try {
-            PreparedStatement statement = conn.prepareStatement(sql);
+            PreparedStatement statement = prepareRead(lease, sql);
             statement.setInt(1, limit);
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                Double x = rs.getDouble(1);
-                Double y = rs.getDouble(2);
-                long tid = rs.getLong(3);
-                PointTuple pt = new PointTuple();
-                pt.setX(x);
-                pt.setY(y);
-                pt.tid = tid;
-                result.add(pt);
+            try (ResultSet rs = statement.executeQuery()) {
+                readPointTuples(rs, result);
             }
         } catch (SQLException e) {
             System.err.println(e.getMessage());
+            lease.failed(e);
+        } finally {
+            endRead(lease);
+            lease.close();
         }
         long end = System.nanoTime();
         System.out.println("Querying PostgreSQL with limit: [" + limit + "] is done! ");
@@ -254,4 +289,210 @@ public class PostgreSQL {
         System.out.println("Result size: " + result.size());
         return result.toArray(new PointTuple[result.size()]);
     }
+
+    public CoordinateBuffer queryCoordinatesForTime(Date sd, Date ed) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        String sql = "SELECT x, y FROM " + Constants.DB_TABLENAME
+                + " WHERE create_at between '" + sdf.format(sd) + "' and '" + sdf.format(ed) + "'";
+        System.out.println("Copying PostgreSQL with time [" + sd + ", " + ed + "]... ...");
+        long start = System.nanoTime();
+        CoordinateBuffer result = copyCoordinates(sql);
+        long end = System.nanoTime();
+        System.out.println("Copying PostgreSQL with time [" + sd + ", " + ed + "] is done! ");
+        System.out.println("Database time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + (result == null? 0: result.size()));
+        return result;
+    }
+
+    public CoordinateBuffer queryCoordinatesForLimit(int limit) {
+        String sql = "SELECT x, y FROM " + Constants.DB_TABLENAME + " limit " + limit;
+        System.out.println("Copying PostgreSQL with limit: [" + limit + "] ... ...");
+        long start = System.nanoTime();
+        CoordinateBuffer result = copyCoordinates(sql);
+        long end = System.nanoTime();
+        System.out.println("Copying PostgreSQL with limit: [" + limit + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + (result == null? 0: result.size()));
+        return result;
+    }
+
+    /**
+     * Run COPY (query) TO STDOUT (FORMAT binary) through the driver's CopyManager,
+     *   and decode (x, y) of each row from the binary stream into primitive arrays,
+     *   no ResultSet, boxed values or PointTuple objects are created per row
+     *
+     * @param query - SELECT with two columns (x, y), COPY takes no parameters so values must be inlined
+     * @return null if the copy fails
+     */
+    private CoordinateBuffer copyCoordinates(String query) {
+        ConnectionPool.Lease lease = this.connectDB();
+        if (lease == null) {
+            return null;
+        }
+
+        String sql = "COPY (SELECT x::float8, y::float8 FROM (" + query + ") q) TO STDOUT (FORMAT binary)";
+        System.out.println("SQL: " + sql);
+        try (InputStream in = new PGCopyInputStream(lease.getConnection().unwrap(PGConnection.class), sql)) {
+            return readCopyCoordinates(in, Math.max(1, Constants.DB_FETCH_SIZE));
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            lease.failed(e);
+            return null;
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return null;
+        } finally {
+            endRead(lease);
+            lease.close();
+        }
+    }
+
+    /**
+     * Decode binary COPY output of rows (x float8, y float8)
+     *
+     * @param copy - the whole output, header, rows and trailer
+     * @param capacity - initial capacity of the result
+     * @return
+     * @throws IOException
+     */
+    static CoordinateBuffer readCopyCoordinates(InputStream copy, int capacity) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(copy, COPY_BUFFER_SIZE));
+        CoordinateBuffer result = new CoordinateBuffer(capacity);
+        readCopyHeader(in);
+        while (true) {
+            short fields = in.readShort();
+            // trailer
+            if (fields == -1) {
+                break;
+            }
+            if (fields != 2) {
+                throw new IOException("unexpected number of fields in COPY row: " + fields);
+            }
+            int xLength = in.readInt();
+            double x = xLength == 8? in.readDouble(): Double.NaN;
+            int yLength = in.readInt();
+            double y = yLength == 8? in.readDouble(): Double.NaN;
+            // rows with null coordinates are skipped, the same as a WHERE x is not null
+            if (xLength == 8 && yLength == 8) {
+                result.add(x, y);
+            }
+        }
+        return result;
+    }
+
+    private static void readCopyHeader(DataInputStream in) throws IOException {
+        byte[] signature = new byte[COPY_SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, COPY_SIGNATURE)) {
+            throw new IOException("unexpected COPY binary signature");
+        }
+        // flags
+        in.readInt();
+        int extension = in.readInt();
+        if (in.skipBytes(extension) < extension) {
+            throw new EOFException("truncated COPY header extension");
+        }
+    }
+
+    /**
+     * Prepare a read-only, forward-only statement whose result set is read through a server-side cursor,
+     *   Constants.DB_FETCH_SIZE rows are transferred at a time instead of the whole result set,
+     *   the driver only uses cursors outside autocommit, so a transaction is open until endRead(),
+     *   the statement is cached by the connection, it must not be closed
+     *
+     * @param lease
+     * @param sql
+     * @return
+     * @throws SQLException
+     */
+    private PreparedStatement prepareRead(ConnectionPool.Lease lease, String sql) throws SQLException {
+        PreparedStatement statement = lease.prepare(sql);
+        if (Constants.DB_FETCH_SIZE > 0) {
+            lease.getConnection().setAutoCommit(false);
+            statement.setFetchSize(Constants.DB_FETCH_SIZE);
+        }
+        return statement;
+    }
+
+    /**
+     * End the transaction opened by prepareRead(), which closes its cursor on the server
+     */
+    private void endRead(ConnectionPool.Lease lease) {
+        try {
+            if (!lease.getConnection().getAutoCommit()) {
+                lease.getConnection().commit();
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getMessage());
+            lease.failed(e);
+        }
+    }
+
+    /**
+     * Read rows (x, y, id) into result, reusing PointTuple objects already in it
+     *
+     * @param rs
+     * @param result
+     * @return number of rows read, objects after that in result are not touched
+     * @throws SQLException
+     */
+    private int readPointTuples(ResultSet rs, List<PointTuple> result) throws SQLException {
+        int i = 0;
+        while (rs.next()) {
+            double x = rs.getDouble(1);
+            double y = rs.getDouble(2);
+            long tid = rs.getLong(3);
+            // still enough objects in list can be reused
+            if (i < result.size()) {
+                result.get(i).setX(x);
+                result.get(i).setY(y);
+                result.get(i).tid = tid;
+            }
+            // no more objects can be reused
+            else {
+                PointTuple pt = new PointTuple();
+                pt.setX(x);
+                pt.setY(y);
+                pt.tid = tid;
+                result.add(pt);
+            }
+            i ++;
+        }
+        return i;
+    }
+
+    /**
+     * Read rows (x, y, id) chunk by chunk, the same chunk list and PointTuple objects are reused for every chunk
+     *
+     * @param rs
+     * @param chunkSize - rows in a chunk, <= 0 - all rows in one chunk
+     * @param consumer
+     * @return number of rows read
+     * @throws SQLException
+     */
+    private int streamPointTuples(ResultSet rs, int chunkSize, Consumer<List<PointTuple>> consumer) throws SQLException {
+        List<PointTuple> chunk = chunkSize > 0? new ArrayList<>(chunkSize): new ArrayList<>();
+        int count = 0;
+        int i = 0;
+        while (rs.next()) {
+            if (chunkSize > 0 && i == chunkSize) {
+                consumer.accept(chunk);
+                i = 0;
+            }
+            if (i == chunk.size()) {
+                chunk.add(new PointTuple());
+            }
+            PointTuple pt = chunk.get(i);
+            pt.setX(rs.getDouble(1));
+            pt.setY(rs.getDouble(2));
+            pt.tid = rs.getLong(3);
+            i ++;
+            count ++;
+        }
+        if (i > 0) {
+            chunk.subList(i, chunk.size()).clear();
+            consumer.accept(chunk);
+        }
+        return count;
+    }
 }
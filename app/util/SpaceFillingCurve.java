@@ -0,0 +1,93 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Space filling curves over the unit square [0, 1] x [0, 1]
+ *
+ *     Coordinates are quantized to ORDER bits on each axis, so a key fits in 2 * ORDER = 32 bits,
+ *     (1) Morton (Z-order) key interleaves the bits of x and y;
+ *     (2) Hilbert key is the distance along the Hilbert curve, which has no jumps between adjacent cells.
+ */
+public class SpaceFillingCurve {
+
+    public static final String MORTON = "morton";
+    public static final String HILBERT = "hilbert";
+
+    // number of bits on each axis
+    private static final int ORDER = 16;
+    private static final int SIDE = 1 << ORDER;
+
+    private static int quantize(double v) {
+        int q = (int) (v * SIDE);
+        return q < 0? 0: q > SIDE - 1? SIDE - 1: q;
+    }
+
+    /**
+     * @param x - in [0, 1]
+     * @param y - in [0, 1]
+     * @return Morton key in [0, 2^32)
+     */
+    public static long morton(double x, double y) {
+        return (spread(quantize(y)) << 1) | spread(quantize(x));
+    }
+
+    // insert a 0 bit between each of the lower 16 bits of v
+    private static long spread(long v) {
+        v = (v | (v << 8)) & 0x00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0FL;
+        v = (v | (v << 2)) & 0x33333333L;
+        v = (v | (v << 1)) & 0x55555555L;
+        return v;
+    }
+
+    /**
+     * @param x - in [0, 1]
+     * @param y - in [0, 1]
+     * @return Hilbert key in [0, 2^32)
+     */
+    public static long hilbert(double x, double y) {
+        int qx = quantize(x);
+        int qy = quantize(y);
+        long d = 0;
+        for (int s = SIDE / 2; s > 0; s /= 2) {
+            int rx = (qx & s) > 0? 1: 0;
+            int ry = (qy & s) > 0? 1: 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    qx = SIDE - 1 - qx;
+                    qy = SIDE - 1 - qy;
+                }
+                int t = qx;
+                qx = qy;
+                qy = t;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Order points along given curve, points with the same key keep their original order
+     *
+     * @param xs - x coordinates in [0, 1]
+     * @param ys - y coordinates in [0, 1]
+     * @param curve - MORTON / HILBERT
+     * @return order[i] = index of the point that goes to position i
+     */
+    public static int[] order(double[] xs, double[] ys, String curve) {
+        // pack the 32-bit key and the 31-bit index into one long, so that sorting primitives does the job
+        long[] keys = new long[xs.length];
+        for (int i = 0; i < xs.length; i ++) {
+            long key = HILBERT.equals(curve)? hilbert(xs[i], ys[i]): morton(xs[i], ys[i]);
+            keys[i] = (key << 31) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[xs.length];
+        for (int i = 0; i < xs.length; i ++) {
+            order[i] = (int) (keys[i] & 0x7FFFFFFFL);
+        }
+        return order;
+    }
+}
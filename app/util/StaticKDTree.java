@@ -0,0 +1,261 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static KD-Tree for I2DPoint
+ *
+ *     Built once by load(), it does not support insert or delete.
+ *
+ *     Layout:
+ *         no Node objects, the tree is implicit in the order of arrays points and coords,
+ *         (1) the sub-tree of range [left, right] splits at m = (left + right) / 2,
+ *                points[left..m-1] <= points[m] <= points[m+1..right] on the axis of this level;
+ *         (2) axis alternates between x and y level by level, root aligns with x;
+ *         (3) ranges with no more than NODE_SIZE points are leaves and are scanned linearly;
+ *         (4) coords[2*i] and coords[2*i+1] are x and y of points[i];
+ *         the layout is sorted by ImplicitKDTree.sort().
+ */
+public class StaticKDTree<PointType extends I2DPoint> implements I2DIndex<PointType> {
+
+    // ranges with no more than NODE_SIZE points are not split further
+    private static final int NODE_SIZE = ImplicitKDTree.NODE_SIZE;
+
+    private PointType[] points;
+    private double[] coords;
+    private int size = 0;
+
+    // stack reused by within / range searches, each entry is a triple [left, right, axis]
+    private int[] stack = new int[3 * 64];
+
+    public StaticKDTree() {
+    }
+
+    @Override
+    public void insert(PointType point) {
+        throw new UnsupportedOperationException("StaticKDTree does not support insert, use load instead.");
+    }
+
+    /**
+     * Build the tree with given points
+     *
+     * @param points - the array itself is not modified
+     */
+    @Override
+    public void load(PointType[] points) {
+        this.size = points.length;
+        int[] ids = new int[size];
+        this.coords = new double[2 * size];
+        for (int i = 0; i < size; i ++) {
+            ids[i] = i;
+            this.coords[2 * i] = points[i].getX();
+            this.coords[2 * i + 1] = points[i].getY();
+        }
+        ImplicitKDTree.sort(ids, coords, 0, size - 1, 0);
+        this.points = points.clone();
+        for (int i = 0; i < size; i ++) {
+            this.points[i] = points[ids[i]];
+        }
+    }
+
+    @Override
+    public void delete(PointType point) {
+        throw new UnsupportedOperationException("StaticKDTree does not support delete.");
+    }
+
+    @Override
+    public List<PointType> within(I2DPoint center, double radius) {
+        List<PointType> result = new ArrayList<>();
+        within(center, radius, result);
+        return result;
+    }
+
+    @Override
+    public void within(I2DPoint center, double radius, List<PointType> result) {
+        if (size == 0) {
+            return;
+        }
+        double qx = center.getX();
+        double qy = center.getY();
+        double radius2 = radius * radius;
+
+        int top = push(0, 0, size - 1, 0);
+        while (top > 0) {
+            int axis = stack[-- top];
+            int right = stack[-- top];
+            int left = stack[-- top];
+
+            // leaf, scan all points
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i ++) {
+                    if (squareDistance(coords[2 * i], coords[2 * i + 1], qx, qy) <= radius2) {
+                        result.add(points[i]);
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >>> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if (squareDistance(x, y, qx, qy) <= radius2) {
+                result.add(points[m]);
+            }
+
+            // left part can have points within range
+            if (axis == 0? qx - radius <= x: qy - radius <= y) {
+                top = push(top, left, m - 1, 1 - axis);
+            }
+            // right part can have points within range
+            if (axis == 0? qx + radius >= x: qy + radius >= y) {
+                top = push(top, m + 1, right, 1 - axis);
+            }
+        }
+    }
+
+    @Override
+    public PointType earliestWithin(I2DPoint center, double radius) {
+        if (size == 0) {
+            return null;
+        }
+        double qx = center.getX();
+        double qy = center.getY();
+        double radius2 = radius * radius;
+        PointType earliest = null;
+
+        int top = push(0, 0, size - 1, 0);
+        while (top > 0) {
+            int axis = stack[-- top];
+            int right = stack[-- top];
+            int left = stack[-- top];
+
+            // leaf, scan all points
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i ++) {
+                    if ((earliest == null || points[i].getId() < earliest.getId())
+                            && squareDistance(coords[2 * i], coords[2 * i + 1], qx, qy) <= radius2) {
+                        earliest = points[i];
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >>> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if ((earliest == null || points[m].getId() < earliest.getId())
+                    && squareDistance(x, y, qx, qy) <= radius2) {
+                earliest = points[m];
+            }
+
+            if (axis == 0? qx - radius <= x: qy - radius <= y) {
+                top = push(top, left, m - 1, 1 - axis);
+            }
+            if (axis == 0? qx + radius >= x: qy + radius >= y) {
+                top = push(top, m + 1, right, 1 - axis);
+            }
+        }
+        return earliest;
+    }
+
+    @Override
+    public List<PointType> range(I2DPoint leftBottom, I2DPoint rightTop) {
+        List<PointType> result = new ArrayList<>();
+        range(leftBottom, rightTop, result);
+        return result;
+    }
+
+    @Override
+    public void range(I2DPoint leftBottom, I2DPoint rightTop, List<PointType> result) {
+        if (size == 0) {
+            return;
+        }
+        double minX = leftBottom.getX();
+        double minY = leftBottom.getY();
+        double maxX = rightTop.getX();
+        double maxY = rightTop.getY();
+
+        int top = push(0, 0, size - 1, 0);
+        while (top > 0) {
+            int axis = stack[-- top];
+            int right = stack[-- top];
+            int left = stack[-- top];
+
+            // leaf, scan all points
+            if (right - left <= NODE_SIZE) {
+                for (int i = left; i <= right; i ++) {
+                    double x = coords[2 * i];
+                    double y = coords[2 * i + 1];
+                    if (x > minX && y > minY && x < maxX && y < maxY) {
+                        result.add(points[i]);
+                    }
+                }
+                continue;
+            }
+
+            int m = (left + right) >>> 1;
+            double x = coords[2 * m];
+            double y = coords[2 * m + 1];
+            if (x > minX && y > minY && x < maxX && y < maxY) {
+                result.add(points[m]);
+            }
+
+            // left part can have points within range
+            if (axis == 0? minX <= x: minY <= y) {
+                top = push(top, left, m - 1, 1 - axis);
+            }
+            // right part can have points within range
+            if (axis == 0? maxX >= x: maxY >= y) {
+                top = push(top, m + 1, right, 1 - axis);
+            }
+        }
+    }
+
+    private double squareDistance(double x1, double y1, double x2, double y2) {
+        return (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+    }
+
+    /**
+     * push triple [left, right, axis] on top of search stack, grow the stack if it is full
+     *
+     * @return new top of the stack
+     */
+    private int push(int top, int left, int right, int axis) {
+        if (top + 3 > stack.length) {
+            int[] newStack = new int[stack.length * 2];
+            System.arraycopy(stack, 0, newStack, 0, top);
+            stack = newStack;
+        }
+        stack[top] = left;
+        stack[top + 1] = right;
+        stack[top + 2] = axis;
+        return top + 3;
+    }
+
+    @Override
+    public void print() {
+        System.out.println("=================== StaticKDTree ===================");
+        System.out.println("size = " + size);
+        System.out.println("depth = " + depth());
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * depth of the implicit tree, counting the leaf level
+     *
+     * @return
+     */
+    public int depth() {
+        int depth = 0;
+        int n = size;
+        while (n > NODE_SIZE + 1) {
+            n = n / 2;
+            depth ++;
+        }
+        return size == 0? 0: depth + 1;
+    }
+}
@@ -0,0 +1,398 @@
+package util;
+
+import model.CoordinateBuffer;
+import model.PointTuple;
+import model.PointTupleListFactory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Synthetic tweets table, a stand-in for PostgreSQL when no database is available
+ *
+ *     Tweet i is generated from (seed, i) only, so nothing is stored and the table can have 100M rows,
+ *     (1) location - 70% around US metros weighted by population,
+ *                    20% around random towns with Zipf weights,
+ *                    10% uniformly in the US bounding box,
+ *                    offsets to the center follow a heavy-tailed Lomax distribution;
+ *     (2) create_at - evenly spread in [start, end] in the order of i,
+ *                     so a time range is a range of i;
+ *     (3) text - a keyword matches a fixed fraction (1% ~ 20%) of tweets decided by the hash of the keyword,
+ *                "%" matches all tweets.
+ */
+public class SyntheticTweets implements IPointSource {
+
+    public static final double MIN_LNG = -125.0;
+    public static final double MAX_LNG = -65.0;
+    public static final double MIN_LAT = 25.0;
+    public static final double MAX_LAT = 50.0;
+
+    // [lng, lat, population in millions]
+    private static final double[][] METROS = {
+            {-74.01, 40.71, 19.5}, {-118.24, 34.05, 13.2}, {-87.63, 41.88, 9.5}, {-96.80, 32.78, 7.6},
+            {-95.37, 29.76, 7.1}, {-77.04, 38.90, 6.3}, {-80.19, 25.76, 6.2}, {-75.17, 39.95, 6.1},
+            {-84.39, 33.75, 6.0}, {-71.06, 42.36, 4.9}, {-112.07, 33.45, 4.9}, {-122.42, 37.77, 4.7},
+            {-117.40, 33.95, 4.6}, {-83.05, 42.33, 4.3}, {-122.33, 47.61, 4.0}, {-93.27, 44.98, 3.6},
+            {-117.16, 32.72, 3.3}, {-82.46, 27.95, 3.2}, {-104.99, 39.74, 3.0}, {-90.20, 38.63, 2.8},
+            {-76.61, 39.29, 2.8}, {-81.38, 28.54, 2.6}, {-80.84, 35.23, 2.6}, {-98.49, 29.42, 2.5},
+            {-122.68, 45.52, 2.5}, {-121.49, 38.58, 2.4}, {-80.00, 40.44, 2.3}, {-115.14, 36.17, 2.3},
+            {-97.74, 30.27, 2.2}, {-84.51, 39.10, 2.2}, {-94.58, 39.10, 2.2}, {-83.00, 39.96, 2.1},
+            {-86.16, 39.77, 2.1}, {-81.69, 41.50, 2.1}, {-86.78, 36.16, 1.9}, {-90.07, 29.95, 1.3},
+            {-111.89, 40.76, 1.2}
+    };
+    private static final int TOWNS = 1000;
+
+    private static final double METRO_SHARE = 0.7;
+    private static final double TOWN_SHARE = 0.2;
+
+    // Lomax offsets in degrees: scale * ((1 - u)^(-1/alpha) - 1), capped
+    private static final double METRO_SCALE = 0.05;
+    private static final double TOWN_SCALE = 0.01;
+    private static final double ALPHA = 1.5;
+    private static final double MAX_OFFSET = 2.0;
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    int size;
+    long seed;
+    long startTime;
+    long endTime;
+
+    double[][] metros;
+    double[] metroWeights;
+    double[][] towns;
+    double[] townWeights;
+
+    /**
+     * @param size - number of tweets
+     * @param seed
+     * @param start - create_at of the first tweet
+     * @param end - create_at of the last tweet
+     */
+    public SyntheticTweets(int size, long seed, Date start, Date end) {
+        this.size = size;
+        this.seed = seed;
+        this.startTime = start.getTime();
+        this.endTime = end.getTime();
+
+        this.metros = METROS;
+        this.metroWeights = new double[METROS.length];
+        double total = 0.0;
+        for (int k = 0; k < METROS.length; k ++) {
+            total += METROS[k][2];
+            this.metroWeights[k] = total;
+        }
+
+        this.towns = new double[TOWNS][2];
+        this.townWeights = new double[TOWNS];
+        long state = mix(seed ^ GOLDEN);
+        total = 0.0;
+        for (int k = 0; k < TOWNS; k ++) {
+            state += GOLDEN;
+            this.towns[k][0] = MIN_LNG + unit(mix(state)) * (MAX_LNG - MIN_LNG);
+            state += GOLDEN;
+            this.towns[k][1] = MIN_LAT + unit(mix(state)) * (MAX_LAT - MIN_LAT);
+            total += 1.0 / (k + 1);
+            this.townWeights[k] = total;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i
+     * @return create_at of tweet i in milliseconds
+     */
+    public long timeOf(int i) {
+        if (size <= 1) return startTime;
+        return startTime + (long) ((double) (endTime - startTime) * i / (size - 1));
+    }
+
+    /**
+     * @param time
+     * @return the first i with timeOf(i) >= time
+     */
+    int lowerBound(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timeOf(mid) < time) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @param i
+     * @param pointTuple - set x, y and tid of tweet i into it
+     */
+    public void tweet(int i, PointTuple pointTuple) {
+        long state = mix(seed + GOLDEN * (i + 1L));
+        double dice = unit(state);
+        double x, y;
+        if (dice < METRO_SHARE + TOWN_SHARE) {
+            double[] center;
+            double scale;
+            state = mix(state + GOLDEN);
+            if (dice < METRO_SHARE) {
+                center = metros[pick(metroWeights, unit(state))];
+                scale = METRO_SCALE;
+            }
+            else {
+                center = towns[pick(townWeights, unit(state))];
+                scale = TOWN_SCALE;
+            }
+            state = mix(state + GOLDEN);
+            double offset = scale * (Math.pow(1.0 - unit(state), -1.0 / ALPHA) - 1.0);
+            if (offset > MAX_OFFSET) offset = MAX_OFFSET;
+            state = mix(state + GOLDEN);
+            double theta = 2.0 * Math.PI * unit(state);
+            y = center[1] + offset * Math.sin(theta);
+            x = center[0] + offset * Math.cos(theta) / Math.cos(Math.toRadians(center[1]));
+        }
+        else {
+            state = mix(state + GOLDEN);
+            x = MIN_LNG + unit(state) * (MAX_LNG - MIN_LNG);
+            state = mix(state + GOLDEN);
+            y = MIN_LAT + unit(state) * (MAX_LAT - MIN_LAT);
+        }
+        pointTuple.setX(clamp(x, MIN_LNG, MAX_LNG));
+        pointTuple.setY(clamp(y, MIN_LAT, MAX_LAT));
+        pointTuple.tid = i;
+    }
+
+    /**
+     * @param keyword
+     * @return fraction of tweets matching the keyword, in [0.01, 0.2]
+     */
+    public double selectivity(String keyword) {
+        return 0.01 + 0.19 * unit(mix(keywordHash(keyword)));
+    }
+
+    boolean matches(long keywordHash, double selectivity, int i) {
+        return unit(mix(keywordHash ^ (GOLDEN * (i + 1L)))) < selectivity;
+    }
+
+    private long keywordHash(String keyword) {
+        return mix(seed ^ keyword.toLowerCase().hashCode());
+    }
+
+    public void disconnectDB() {
+    }
+
+    public List<PointTuple> queryPointTuplesForKeyword(String keyword) {
+        System.out.println("Querying SyntheticTweets with keyword: [" + keyword + "] ... ...");
+        long start = System.nanoTime();
+        List<PointTuple> result = query(keyword, 0, size);
+        long end = System.nanoTime();
+        System.out.println("Querying SyntheticTweets with keyword: [" + keyword + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.size());
+        return result;
+    }
+
+    public int queryPointTuplesForKeyword(String keyword, int chunkSize, Consumer<List<PointTuple>> consumer) {
+        System.out.println("Streaming SyntheticTweets with keyword: [" + keyword + "] in chunks of " + chunkSize + " ... ...");
+        long start = System.nanoTime();
+        boolean all = keyword == null || keyword.equals("%");
+        long hash = all? 0: keywordHash(keyword);
+        double selectivity = all? 1.0: selectivity(keyword);
+        List<PointTuple> chunk = chunkSize > 0? new ArrayList<>(chunkSize): new ArrayList<>();
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < size; i ++) {
+            if (!all && !matches(hash, selectivity, i)) continue;
+            if (chunkSize > 0 && j == chunkSize) {
+                consumer.accept(chunk);
+                j = 0;
+            }
+            if (j == chunk.size()) {
+                chunk.add(new PointTuple());
+            }
+            tweet(i, chunk.get(j));
+            j ++;
+            count ++;
+        }
+        if (j > 0) {
+            chunk.subList(j, chunk.size()).clear();
+            consumer.accept(chunk);
+        }
+        long end = System.nanoTime();
+        System.out.println("Streaming SyntheticTweets with keyword: [" + keyword + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + count);
+        return count;
+    }
+
+    public int scanPointsForKeyword(String keyword, RowConsumer consumer) {
+        System.out.println("Scanning SyntheticTweets with keyword: [" + keyword + "] ... ...");
+        long start = System.nanoTime();
+        boolean all = keyword == null || keyword.equals("%");
+        long hash = all? 0: keywordHash(keyword);
+        double selectivity = all? 1.0: selectivity(keyword);
+        PointTuple pt = new PointTuple();
+        int count = 0;
+        // create_at grows with i
+        for (int i = 0; i < size; i ++) {
+            if (!all && !matches(hash, selectivity, i)) continue;
+            tweet(i, pt);
+            consumer.accept(pt.getX(), pt.getY(), pt.tid, timeOf(i));
+            count ++;
+        }
+        long end = System.nanoTime();
+        System.out.println("Scanning SyntheticTweets with keyword: [" + keyword + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + count);
+        return count;
+    }
+
+    public List<PointTuple> queryPointTuplesForKeywordAndTime(String keyword, Date sd, Date ed) {
+        System.out.println("Querying SyntheticTweets with keyword: [" + keyword + "] and time [" + sd + ", " + ed + "]... ...");
+        long start = System.nanoTime();
+        // create_at between sd and ed
+        List<PointTuple> result = query(keyword, lowerBound(sd.getTime()), lowerBound(ed.getTime() + 1));
+        long end = System.nanoTime();
+        System.out.println("Querying SyntheticTweets with keyword: [" + keyword + "] and time [" + sd + ", " + ed + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.size());
+        return result;
+    }
+
+    public List<PointTuple> queryPointTuplesForTime(Date sd, Date ed) {
+        System.out.println("Querying SyntheticTweets with time [" + sd + ", " + ed + "]... ...");
+        long start = System.nanoTime();
+        List<PointTuple> result = query(null, lowerBound(sd.getTime()), lowerBound(ed.getTime() + 1));
+        long end = System.nanoTime();
+        System.out.println("Querying SyntheticTweets with time [" + sd + ", " + ed + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.size());
+        return result;
+    }
+
+    public PointTuple[] queryPointTuplesForLimit(int limit) {
+        System.out.println("Querying SyntheticTweets with limit: [" + limit + "] ... ...");
+        long start = System.nanoTime();
+        int count = Math.min(limit, size);
+        PointTuple[] result = new PointTuple[count];
+        for (int i = 0; i < count; i ++) {
+            result[i] = new PointTuple();
+            tweet(i, result[i]);
+        }
+        long end = System.nanoTime();
+        System.out.println("Querying SyntheticTweets with limit: [" + limit + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.length);
+        return result;
+    }
+
+    public CoordinateBuffer queryCoordinatesForTime(Date sd, Date ed) {
+        System.out.println("Copying SyntheticTweets with time [" + sd + ", " + ed + "]... ...");
+        long start = System.nanoTime();
+        CoordinateBuffer result = coordinates(lowerBound(sd.getTime()), lowerBound(ed.getTime() + 1));
+        long end = System.nanoTime();
+        System.out.println("Copying SyntheticTweets with time [" + sd + ", " + ed + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.size());
+        return result;
+    }
+
+    public CoordinateBuffer queryCoordinatesForLimit(int limit) {
+        System.out.println("Copying SyntheticTweets with limit: [" + limit + "] ... ...");
+        long start = System.nanoTime();
+        CoordinateBuffer result = coordinates(0, Math.min(limit, size));
+        long end = System.nanoTime();
+        System.out.println("Copying SyntheticTweets with limit: [" + limit + "] is done! ");
+        System.out.println("Takes time: " + TimeUnit.SECONDS.convert(end - start, TimeUnit.NANOSECONDS) + " seconds");
+        System.out.println("Result size: " + result.size());
+        return result;
+    }
+
+    /**
+     * @param from - inclusive
+     * @param to - exclusive
+     * @return coordinates of all tweets in [from, to)
+     */
+    private CoordinateBuffer coordinates(int from, int to) {
+        CoordinateBuffer result = new CoordinateBuffer(to - from);
+        PointTuple pt = new PointTuple();
+        for (int i = from; i < to; i ++) {
+            tweet(i, pt);
+            result.add(pt.getX(), pt.getY());
+        }
+        return result;
+    }
+
+    /**
+     * @param keyword - null or "%" matches all tweets
+     * @param from - inclusive
+     * @param to - exclusive
+     * @return tweets in [from, to) matching the keyword
+     */
+    private List<PointTuple> query(String keyword, int from, int to) {
+        // reuse array list of PointTuple
+        List<PointTuple> result = PointTupleListFactory.newPointTupleList();
+        boolean all = keyword == null || keyword.equals("%");
+        long hash = all? 0: keywordHash(keyword);
+        double selectivity = all? 1.0: selectivity(keyword);
+        int j = 0;
+        for (int i = from; i < to; i ++) {
+            if (!all && !matches(hash, selectivity, i)) continue;
+            // still enough objects in list can be reused
+            if (j < result.size()) {
+                tweet(i, result.get(j));
+            }
+            // no more objects can be reused
+            else {
+                PointTuple pt = new PointTuple();
+                tweet(i, pt);
+                result.add(pt);
+            }
+            j ++;
+        }
+        // remove additional objects in the tail of the list
+        if (j < result.size()) {
+            if (result instanceof ArrayList) {
+                result.subList(j, result.size()).clear();
+            }
+            else {
+                while (j < result.size()) {
+                    result.remove(result.size() - 1);
+                }
+            }
+        }
+        return result;
+    }
+
+    // find the first k whose cumulative weight >= u * total
+    private static int pick(double[] cumulative, double u) {
+        double w = u * cumulative[cumulative.length - 1];
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] < w) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // uniform in [0, 1)
+    private static double unit(long z) {
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return v < min? min: v > max? max: v;
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import clustering.AiSuperCluster;
+import clustering.LBiSuperCluster;
+import clustering.SuperCluster;
+import clustering.iSuperCluster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One incremental batch of the incremental algorithms,
+ *     each invocation starts with a cluster that has already taken the first batches,
+ *     and measures loading the next batch, the same as one step of a progressive query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class IncrementalBenchmark {
+
+    @Param({"iSuperCluster", "AiSuperCluster", "LBiSuperCluster"})
+    String algorithm;
+
+    @Param({"twitter"})
+    String distribution;
+
+    @Param({"50000"})
+    int batchSize;
+
+    // number of batches loaded before the measured one
+    @Param({"4"})
+    int loadedBatches;
+
+    double[][][] batches;
+    SuperCluster cluster;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Workloads.initConstants();
+        double[][] points = Workloads.generate(distribution, batchSize * (loadedBatches + 1), 0);
+        batches = Workloads.batches(points, batchSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        switch (algorithm) {
+            case "iSuperCluster":
+                cluster = new iSuperCluster(0, 17, false);
+                break;
+            case "AiSuperCluster":
+                cluster = new AiSuperCluster(0, 17, false);
+                break;
+            case "LBiSuperCluster":
+                cluster = new LBiSuperCluster(0, 17, "KDTree", false);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown algorithm: " + algorithm);
+        }
+        for (int b = 0; b < loadedBatches; b ++) {
+            cluster.load(batches[b]);
+        }
+    }
+
+    @Benchmark
+    public SuperCluster nextBatch() {
+        cluster.load(batches[loadedBatches]);
+        return cluster;
+    }
+}
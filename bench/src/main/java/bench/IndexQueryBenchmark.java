@@ -0,0 +1,79 @@
+package bench;
+
+import clustering.SuperCluster;
+import model.Point;
+import org.openjdk.jmh.annotations.*;
+import util.I2DIndex;
+import util.IndexCreator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * within / range queries of each index type,
+ *     query centers are sampled from the data, radius is the clustering radius of given zoom level.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexQueryBenchmark {
+
+    @Param({"KDTree", "GridIndex", "StaticKDTree", "FlatGridIndex"})
+    String indexType;
+
+    @Param({"uniform", "clustered", "twitter"})
+    String distribution;
+
+    @Param({"1000000"})
+    int n;
+
+    @Param({"8", "12"})
+    int zoom;
+
+    private static final int CENTERS = 1 << 16;
+
+    I2DIndex<Point> index;
+    Point[] centers;
+    double radius;
+    List<Point> result;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Workloads.initConstants();
+        Point[] points = Workloads.toMercatorPoints(Workloads.generate(distribution, n, 0));
+        radius = new SuperCluster(0, zoom, "KDTree").getRadius(zoom);
+        index = IndexCreator.createIndex(indexType, radius);
+        index.load(points);
+
+        Random random = new Random(1);
+        centers = new Point[CENTERS];
+        for (int i = 0; i < CENTERS; i ++) {
+            centers[i] = points[random.nextInt(n)];
+        }
+        result = new ArrayList<>();
+        next = 0;
+    }
+
+    @Benchmark
+    public int within() {
+        Point center = centers[next ++ & (CENTERS - 1)];
+        result.clear();
+        index.within(center, radius, result);
+        return result.size();
+    }
+
+    @Benchmark
+    public int range() {
+        Point center = centers[next ++ & (CENTERS - 1)];
+        result.clear();
+        index.range(new Point(center.getX() - radius, center.getY() - radius, -1),
+                new Point(center.getX() + radius, center.getY() + radius, -1), result);
+        return result.size();
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import clustering.SuperCluster;
+import model.Point;
+import org.openjdk.jmh.annotations.*;
+import util.I2DIndex;
+import util.IndexCreator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * insert / delete of the index types that support updates,
+ *     each invocation inserts all points into an empty index, or deletes a batch of points from a full index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexUpdateBenchmark {
+
+    @Param({"KDTree", "GridIndex"})
+    String indexType;
+
+    @Param({"uniform", "twitter"})
+    String distribution;
+
+    @Param({"100000"})
+    int n;
+
+    @Param({"10000"})
+    int deletes;
+
+    Point[] points;
+    double radius;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Workloads.initConstants();
+        points = Workloads.toMercatorPoints(Workloads.generate(distribution, n, 0));
+        radius = new SuperCluster().getRadius(10);
+    }
+
+    @State(Scope.Thread)
+    public static class Empty {
+        I2DIndex<Point> index;
+
+        @Setup(Level.Invocation)
+        public void setup(IndexUpdateBenchmark benchmark) {
+            index = IndexCreator.createIndex(benchmark.indexType, benchmark.radius);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Full {
+        I2DIndex<Point> index;
+
+        @Setup(Level.Invocation)
+        public void setup(IndexUpdateBenchmark benchmark) {
+            index = IndexCreator.createIndex(benchmark.indexType, benchmark.radius);
+            for (Point point: benchmark.points) {
+                index.insert(point);
+            }
+        }
+    }
+
+    @Benchmark
+    public I2DIndex<Point> insert(Empty empty) {
+        for (Point point: points) {
+            empty.index.insert(point);
+        }
+        return empty.index;
+    }
+
+    @Benchmark
+    public I2DIndex<Point> delete(Full full) {
+        // delete every (n / deletes)-th point
+        int stride = Math.max(1, n / deletes);
+        for (int i = 0; i < n; i += stride) {
+            full.index.delete(points[i]);
+        }
+        return full.index;
+    }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import model.Point;
+import org.openjdk.jmh.annotations.*;
+import util.DeckGLRenderer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DeckGLRenderer.render of one point onto a rendering of a quad-tree node covering the whole mercator square.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RendererBenchmark {
+
+    @Param({"twitter"})
+    String distribution;
+
+    @Param({"256"})
+    int resolution;
+
+    @Param({"1", "5"})
+    int radiusInPixels;
+
+    private static final int POINTS = 1 << 16;
+
+    DeckGLRenderer renderer;
+    byte[] rendering;
+    Point[] points;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Workloads.initConstants();
+        renderer = new DeckGLRenderer(radiusInPixels);
+        points = Workloads.toMercatorPoints(Workloads.generate(distribution, POINTS, 0));
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        rendering = renderer.createRendering(resolution);
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean render() {
+        Point point = points[next ++ & (POINTS - 1)];
+        return renderer.render(rendering, 0.5, 0.5, 0.5, resolution, point);
+    }
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import clustering.SuperCluster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SuperCluster.load, building the whole hierarchy from raw points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class SuperClusterBenchmark {
+
+    @Param({"KDTree", "GridIndex", "StaticKDTree", "FlatGridIndex"})
+    String indexType;
+
+    @Param({"uniform", "clustered", "twitter", "synthetic"})
+    String distribution;
+
+    @Param({"100000", "1000000"})
+    int n;
+
+    @Param({"1"})
+    int parallelism;
+
+    double[][] points;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Workloads.initConstants();
+        points = Workloads.generate(distribution, n, 0);
+    }
+
+    @Benchmark
+    public SuperCluster load() {
+        SuperCluster superCluster = new SuperCluster(0, 17, indexType, parallelism);
+        superCluster.load(points);
+        return superCluster;
+    }
+}
@@ -0,0 +1,52 @@
+package bench;
+
+import clustering.LBiSuperCluster;
+import model.Cluster;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getClusters with tree-cut on a loaded LBiSuperCluster, for the whole US view.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TreeCutBenchmark {
+
+    @Param({"twitter"})
+    String distribution;
+
+    @Param({"200000"})
+    int n;
+
+    @Param({"4", "8"})
+    int zoom;
+
+    @Param({"avg", "max"})
+    String measure;
+
+    @Param({"2"})
+    double pixels;
+
+    @Param({"false", "true"})
+    boolean bipartite;
+
+    LBiSuperCluster cluster;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Workloads.initConstants();
+        cluster = new LBiSuperCluster(0, 17, "KDTree", false);
+        cluster.load(Workloads.generate(distribution, n, 0));
+    }
+
+    @Benchmark
+    public Cluster[] getClusters() {
+        return cluster.getClusters(Workloads.MIN_LNG, Workloads.MIN_LAT, Workloads.MAX_LNG, Workloads.MAX_LAT,
+                zoom, true, measure, pixels, bipartite);
+    }
+}
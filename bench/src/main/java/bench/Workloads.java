@@ -0,0 +1,209 @@
+package bench;
+
+import clustering.SuperCluster;
+import model.Point;
+import model.PointTuple;
+import util.Constants;
+import util.SyntheticTweets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic point generators for benchmarks, so that they run without PostgreSQL
+ *
+ *     All generators are deterministic for a given seed and produce [lng, lat] inside the US bounding box,
+ *     (1) uniform - uniformly distributed;
+ *     (2) clustered - a few equally weighted gaussian blobs;
+ *     (3) twitter - many city-centered gaussian blobs with Zipf weights,
+ *                   a uniform background, and repeated coordinates of the same place;
+ *     (4) synthetic - the first n tweets of SyntheticTweets, the stand-in of the tweets table.
+ */
+public class Workloads {
+
+    public static final String UNIFORM = "uniform";
+    public static final String CLUSTERED = "clustered";
+    public static final String TWITTER = "twitter";
+    public static final String SYNTHETIC = "synthetic";
+
+    static final double MIN_LNG = -125.0;
+    static final double MAX_LNG = -65.0;
+    static final double MIN_LAT = 25.0;
+    static final double MAX_LAT = 50.0;
+
+    /**
+     * Initialize the same constants Agent sets from application.conf
+     */
+    public static void initConstants() {
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+        Constants.MAX_RESOLUTION = 2000;
+    }
+
+    /**
+     * @param distribution - uniform / clustered / twitter / synthetic
+     * @param n
+     * @param seed
+     * @return points[i] = [lng, lat]
+     */
+    public static double[][] generate(String distribution, int n, long seed) {
+        switch (distribution) {
+            case UNIFORM:
+                return uniform(n, seed);
+            case CLUSTERED:
+                return clustered(n, seed);
+            case TWITTER:
+                return twitter(n, seed);
+            case SYNTHETIC:
+                return synthetic(n, seed);
+        }
+        throw new IllegalArgumentException("unknown distribution: " + distribution);
+    }
+
+    public static double[][] uniform(int n, long seed) {
+        Random random = new Random(seed);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+            points[i][1] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+        }
+        return points;
+    }
+
+    public static double[][] clustered(int n, long seed) {
+        Random random = new Random(seed);
+        int blobs = 8;
+        double[][] centers = new double[blobs][2];
+        for (int k = 0; k < blobs; k ++) {
+            centers[k][0] = MIN_LNG + 5 + random.nextDouble() * (MAX_LNG - MIN_LNG - 10);
+            centers[k][1] = MIN_LAT + 3 + random.nextDouble() * (MAX_LAT - MIN_LAT - 6);
+        }
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            double[] center = centers[random.nextInt(blobs)];
+            points[i][0] = clamp(center[0] + random.nextGaussian() * 2.0, MIN_LNG, MAX_LNG);
+            points[i][1] = clamp(center[1] + random.nextGaussian() * 1.0, MIN_LAT, MAX_LAT);
+        }
+        return points;
+    }
+
+    public static double[][] twitter(int n, long seed) {
+        Random random = new Random(seed);
+        int cities = 200;
+        double[][] centers = new double[cities][2];
+        double[] sigmas = new double[cities];
+        // Zipf weights: the k-th largest city has weight 1 / k
+        double[] cumulative = new double[cities];
+        double total = 0.0;
+        for (int k = 0; k < cities; k ++) {
+            centers[k][0] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+            centers[k][1] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+            sigmas[k] = 0.05 + random.nextDouble() * 0.3;
+            total += 1.0 / (k + 1);
+            cumulative[k] = total;
+        }
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            double dice = random.nextDouble();
+            // 3% tweets are sent from exactly the same place as an earlier one
+            if (dice < 0.03 && i > 0) {
+                int j = random.nextInt(i);
+                points[i][0] = points[j][0];
+                points[i][1] = points[j][1];
+            }
+            // 7% tweets are scattered uniformly
+            else if (dice < 0.10) {
+                points[i][0] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+                points[i][1] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+            }
+            else {
+                int k = city(cumulative, random.nextDouble() * total);
+                points[i][0] = clamp(centers[k][0] + random.nextGaussian() * sigmas[k], MIN_LNG, MAX_LNG);
+                points[i][1] = clamp(centers[k][1] + random.nextGaussian() * sigmas[k], MIN_LAT, MAX_LAT);
+            }
+        }
+        return points;
+    }
+
+    public static double[][] synthetic(int n, long seed) {
+        SyntheticTweets tweets = new SyntheticTweets(n, seed, Constants.SYNTHETIC_START, Constants.SYNTHETIC_END);
+        PointTuple pointTuple = new PointTuple();
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            tweets.tweet(i, pointTuple);
+            points[i][0] = pointTuple.getX();
+            points[i][1] = pointTuple.getY();
+        }
+        return points;
+    }
+
+    // find the first city whose cumulative weight >= w
+    private static int city(double[] cumulative, double w) {
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] < w) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static double clamp(double v, double min, double max) {
+        return v < min? min: v > max? max: v;
+    }
+
+    /**
+     * @param points - [lng, lat]
+     * @return Points in mercator coordinates, the same as what SuperCluster indexes
+     */
+    public static Point[] toMercatorPoints(double[][] points) {
+        Point[] result = new Point[points.length];
+        for (int i = 0; i < points.length; i ++) {
+            result[i] = new Point(SuperCluster.lngX(points[i][0]), SuperCluster.latY(points[i][1]), i);
+        }
+        return result;
+    }
+
+    /**
+     * @param points - [lng, lat]
+     * @return PointTuples with ids and tids set to their positions
+     */
+    public static List<PointTuple> toPointTuples(double[][] points) {
+        List<PointTuple> result = new ArrayList<>(points.length);
+        for (int i = 0; i < points.length; i ++) {
+            PointTuple pointTuple = new PointTuple();
+            pointTuple.setX(points[i][0]);
+            pointTuple.setY(points[i][1]);
+            pointTuple.setId(i);
+            pointTuple.tid = i;
+            result.add(pointTuple);
+        }
+        return result;
+    }
+
+    /**
+     * split points into batches of given size, the last batch may be smaller
+     *
+     * @param points
+     * @param batchSize
+     * @return
+     */
+    public static double[][][] batches(double[][] points, int batchSize) {
+        int count = (points.length + batchSize - 1) / batchSize;
+        double[][][] batches = new double[count][][];
+        for (int b = 0; b < count; b ++) {
+            int from = b * batchSize;
+            int to = Math.min(points.length, from + batchSize);
+            batches[b] = new double[to - from][];
+            System.arraycopy(points, from, batches[b], 0, to - from);
+        }
+        return batches;
+    }
+}
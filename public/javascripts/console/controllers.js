@@ -97,7 +97,9 @@ angular.module("clustermap.console", ["clustermap.common", "vtortola.ng-terminal
               "    - original",
               "    - reverse",
               "    - spatial",
-              "    - reverse-spatial"]
+              "    - reverse-spatial",
+              "    - hilbert",
+              "    - morton"]
           });
           break;
         default:
@@ -113,7 +115,9 @@ angular.module("clustermap.console", ["clustermap.common", "vtortola.ng-terminal
               "    - original",
               "    - reverse",
               "    - spatial",
-              "    - reverse-spatial"
+              "    - reverse-spatial",
+              "    - hilbert",
+              "    - morton"
             ]
           });
       }
@@ -152,7 +156,9 @@ angular.module("clustermap.console", ["clustermap.common", "vtortola.ng-terminal
           if (tokens[3] !== "original"
             && tokens[3] !== "reverse"
             && tokens[3] !== "spatial"
-            && tokens[3] !== "reverse-spatial") {
+            && tokens[3] !== "reverse-spatial"
+            && tokens[3] !== "hilbert"
+            && tokens[3] !== "morton") {
             $scope.showHelpForCmd(action);
             return null;
           }
@@ -32,11 +32,17 @@ angular.module("clustermap.map", ["leaflet-directive", "clustermap.common"])
     $scope.actionTimings = [];
 
     // wsFormat
-    $scope.wsFormat = "binary"; // "array" (json) / "binary"
+    $scope.wsFormat = "binary"; // "array" (json) / "binary" / "binary-compact" / "binary-deflate"
 
     // store request object for handle websocket onMessage
     $scope.request = {};
 
+    // clusters of the current view by id, kept for diff answers
+    $scope.clusterMap = new Map();
+
+    // clusters of the chunks received so far of an answer sent in chunks
+    $scope.chunkData = [];
+
     // store query object for "middleware" mode
     $scope.query = {
       clusterKey: "",
@@ -117,6 +123,8 @@ angular.module("clustermap.map", ["leaflet-directive", "clustermap.common"])
           query: $scope.query,
           format: $scope.mwVisualizationType === "cluster" ? "geojson" : $scope.wsFormat
         };
+        // answers after the first one on the same view carry only what changed, except in "binary" format
+        request.diff = request.format !== "binary";
 
         // if e.analysis is not "", comparing the given algorithm with SuperCluster using e.analysis indicated function
         if (e.analysis !== "" && request.query.algorithm.toLowerCase() !== "supercluster") {
@@ -658,8 +666,161 @@ angular.module("clustermap.map", ["leaflet-directive", "clustermap.common"])
       return response;
     };
 
+    $scope.readVarint = function(bytes, cursor) {
+      // values up to 2^53, so no 32-bit bitwise operators
+      let v = 0;
+      let scale = 1;
+      while (true) {
+        let b = bytes[cursor.j ++];
+        v += (b & 0x7f) * scale;
+        if ((b & 0x80) === 0) return v;
+        scale *= 128;
+      }
+    };
+
+    $scope.unzigzag = function(v) {
+      return v % 2 === 1 ? -(v + 1) / 2 : v / 2;
+    };
+
+    $scope.isDeflated = function(binaryData) {
+      return (new Uint8Array(binaryData, 0, 2)[1] & 1) === 1;
+    };
+
+    // returns a promise of the response with its payload inflated
+    $scope.inflate = function(binaryData) {
+      const headerSize = 1 + 1 + 4 + 8 + 8 + 8;
+      let payload = new Blob([binaryData.slice(headerSize)]).stream().pipeThrough(new DecompressionStream("deflate-raw"));
+      return new Response(payload).arrayBuffer().then(function(inflated) {
+        let result = new Uint8Array(headerSize + inflated.byteLength);
+        result.set(new Uint8Array(binaryData, 0, headerSize), 0);
+        result.set(new Uint8Array(inflated), headerSize);
+        result[1] = result[1] & ~1;
+        return result.buffer;
+      });
+    };
+
+    $scope.parseCompactBinary = function(binaryData) {
+      // ------------------------------------ data ------------------------------------
+      //  version   flags    progress  totalTime  treeCut   aggTime   payload
+      // | 1 BYTE | 1 BYTE | 4 BYTES | 8 BYTES | 8 BYTES | 8 BYTES | ...
+      // ---- payload ----
+      //   count    bits     minLng    minLat    maxLng    maxLat    clusters
+      // | varint | 1 BYTE | 8 BYTES | 8 BYTES | 8 BYTES | 8 BYTES | ...
+      // ---- clusters, quantized to bits in the bounds, delta to the previous one ----
+      //      dLng            dLat         numPoints     [dId]
+      // | zigzag varint | zigzag varint | varint | [zigzag varint] | ...(repeat)...
+      // ---- [removed ids, if a diff] ----
+      //   count   ids in ascending order, deltas from -2^31
+      // | varint | varint | ...
+      let dv = new DataView(binaryData);
+      let bytes = new Uint8Array(binaryData);
+      let response = {};
+      const flags = dv.getUint8(1);
+      const hasIds = (flags & 2) !== 0;
+      const isDiff = (flags & 4) !== 0;
+      let j = 2; // offset by bytes, after version and flags
+      response.progress = dv.getInt32(j);
+      j = j + 4;
+      response.totalTime = dv.getFloat64(j);
+      j = j + 8;
+      response.treeCutTime = dv.getFloat64(j);
+      j = j + 8;
+      response.aggregateTime = dv.getFloat64(j);
+      j = j + 8;
+      let cursor = {j: j};
+      let count = $scope.readVarint(bytes, cursor);
+      j = cursor.j;
+      let bits = dv.getUint8(j);
+      j = j + 1;
+      const minLng = dv.getFloat64(j);
+      const minLat = dv.getFloat64(j + 8);
+      const maxLng = dv.getFloat64(j + 16);
+      const maxLat = dv.getFloat64(j + 24);
+      cursor.j = j + 32;
+      const cells = Math.pow(2, bits) - 1;
+      const scaleLng = maxLng > minLng ? (maxLng - minLng) / cells : 0;
+      const scaleLat = maxLat > minLat ? (maxLat - minLat) / cells : 0;
+      let data = [];
+      let lng = 0, lat = 0, id = 0;
+      for (let i = 0; i < count; i ++) {
+        lng += $scope.unzigzag($scope.readVarint(bytes, cursor));
+        lat += $scope.unzigzag($scope.readVarint(bytes, cursor));
+        let numPoints = $scope.readVarint(bytes, cursor);
+        let record = [minLat + lat * scaleLat, minLng + lng * scaleLng, numPoints];
+        if (hasIds) {
+          id += $scope.unzigzag($scope.readVarint(bytes, cursor));
+          record.push(id);
+        }
+        data.push(record);
+      }
+      response.result = {data: data};
+      if (hasIds) {
+        response.result.diff = isDiff;
+      }
+      if (isDiff) {
+        let removed = [];
+        let removedCount = $scope.readVarint(bytes, cursor);
+        let removedId = -2147483648;
+        for (let i = 0; i < removedCount; i ++) {
+          removedId += $scope.readVarint(bytes, cursor);
+          removed.push(removedId);
+        }
+        response.result.removed = removed;
+      }
+      console.log("==== websocket received compact binary data ====");
+      console.log("size = " + dv.byteLength / (1024.0 * 1024.0) + " MB.");
+      return response;
+    };
+
+    // apply a diff answer to the clusters kept by id, and return all clusters of the view,
+    //   an answer sent in chunks is rendered chunk by chunk, each time with the chunks received before
+    $scope.applyDiff = function(result) {
+      if (!result) {
+        return result;
+      }
+      const first = !result.chunk || result.chunk.seq === 0;
+      if (!result.hasOwnProperty("diff")) {
+        if (!result.chunk) {
+          return result;
+        }
+        if (first) {
+          $scope.chunkData = [];
+        }
+        for (let i = 0; i < result.data.length; i ++) {
+          $scope.chunkData.push(result.data[i]);
+        }
+        console.log("chunk " + result.chunk.seq + (result.chunk.last? " (last)": "") + ", " + $scope.chunkData.length + " clusters so far");
+        return {data: $scope.chunkData.slice()};
+      }
+      const idOf = $scope.request.format === "geojson" ? function(d) { return d.properties.id; } : function(d) { return d[3]; };
+      if (!result.diff && first) {
+        $scope.clusterMap = new Map();
+      }
+      (result.removed || []).forEach(function(id) { $scope.clusterMap.delete(id); });
+      result.data.forEach(function(d) { $scope.clusterMap.set(idOf(d), d); });
+      console.log("diff: " + result.diff + ", received " + result.data.length + " clusters, " + $scope.clusterMap.size + " in view");
+      return {data: Array.from($scope.clusterMap.values())};
+    };
+
+    // messages handled so far, each message is chained after the previous one
+    $scope.wsQueue = Promise.resolve();
+
     $scope.ws.onmessage = function(event) {
-      $timeout(function() {
+      // compressed payloads are inflated first, then handled as uncompressed ones,
+      //   all messages go through one queue, so a diff is never applied before an earlier answer still being inflated
+      let data = event.data;
+      let deflated = $scope.request.type === "query" && $scope.request.format === "binary-deflate"
+        && typeof data !== "string" && $scope.isDeflated(data);
+      $scope.wsQueue = $scope.wsQueue.then(function() {
+        return deflated? $scope.inflate(data).then($scope.handleMessage): $scope.handleMessage(data);
+      }).catch(function(error) {
+        console.error("handling websocket message failed: " + error);
+      });
+    };
+
+    // returns a promise resolved after the message is handled
+    $scope.handleMessage = function(data) {
+      return $timeout(function() {
 
         // timing for actions
         let queryEnd = performance.now();
@@ -670,15 +831,20 @@ angular.module("clustermap.map", ["leaflet-directive", "clustermap.common"])
           case "query":
             switch ($scope.request.format) {
               case "array":
-                response = JSON.parse(event.data);
+                response = JSON.parse(data);
                 break;
               case "binary":
-                response = $scope.parseBinary(event.data);
+                // status messages (e.g. busy) are always in JSON
+                response = typeof data === "string"? JSON.parse(data): $scope.parseBinary(data);
+                break;
+              case "binary-compact":
+              case "binary-deflate":
+                response = typeof data === "string"? JSON.parse(data): $scope.parseCompactBinary(data);
                 break;
             }
             break;
           default:
-            response = JSON.parse(event.data);
+            response = JSON.parse(data);
             break;
         }
 
@@ -705,7 +871,11 @@ angular.module("clustermap.map", ["leaflet-directive", "clustermap.common"])
 
         switch ($scope.request.type) {
           case "query":
-            $scope.handleResult(response.result);
+            if (response.status === "busy" || response.status === "error") {
+              console.log("query [" + response.id + "] is " + response.status + ": " + response.result.message);
+              break;
+            }
+            $scope.handleResult($scope.applyDiff(response.result));
             if (typeof response.progress == "number") {
               document.getElementById("myBar").style.width = response.progress + "%";
             }
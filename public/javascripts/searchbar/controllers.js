@@ -39,7 +39,7 @@ angular.module("clustermap.searchbar", ["clustermap.common"])
             $scope.disableSearchButton = false;
         });
 
-        $scope.orders = ["original", "reverse", "spatial", "spatial-reverse"];
+        $scope.orders = ["original", "reverse", "spatial", "spatial-reverse", "hilbert", "morton"];
         $scope.algorithms = ["SuperCluster", "SuperClusterInBatch", "iSuperCluster",
           "AiSuperCluster", "BiSuperCluster", "LBiSuperCluster", "GQuadTreeAggregator", "QuadTreeAggregator",
           "DataExplorer", "DataAggregator", "SBiSuperCluster"];
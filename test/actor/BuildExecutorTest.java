@@ -0,0 +1,50 @@
+package actor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Submit more builds than BuildExecutor threads + queue can take at the same time,
+ *   the extra builds should be rejected right away instead of blocking the caller,
+ *   the same as an Agent answering "busy" while its actor thread keeps serving other queries.
+ *
+ * args: [number of threads] [queue size] [number of builds]
+ */
+public class BuildExecutorTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.valueOf(args[0]) : 2;
+        int queueSize = args.length > 1 ? Integer.valueOf(args[1]) : 4;
+        int builds = args.length > 2 ? Integer.valueOf(args[2]) : 20;
+
+        BuildExecutor executor = new BuildExecutor(threads, queueSize);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger finished = new AtomicInteger();
+        int accepted = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < builds; i ++) {
+            boolean success = executor.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                finished.incrementAndGet();
+            });
+            if (success) accepted ++;
+        }
+        long end = System.nanoTime();
+
+        System.out.println("========== " + threads + " threads, queue " + queueSize + ", " + builds + " builds ==========");
+        System.out.println("submitting time: " + (double) (end - start) / 1000000.0 + " ms");
+        System.out.println("accepted: " + accepted + ", expected: " + (threads + queueSize));
+        System.out.println("[BuildExecutor] " + executor);
+
+        release.countDown();
+        while (finished.get() < accepted) {
+            Thread.sleep(10);
+        }
+        System.out.println("finished: " + finished.get());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,113 @@
+package clustering;
+
+import util.Constants;
+
+import java.util.Random;
+
+/**
+ * Compare estimateBytes of SuperClusters with the heap they really take,
+ *   then run a workload of a few hot keywords mixed with a scan over many cold keywords through ClusterCache,
+ *   the hot keywords should stay cached,
+ *   then two caches share one ClusterBudget, as the caches of agents do, an instance both hold should be charged once.
+ *
+ * args: [number of points]
+ */
+public class ClusterCacheTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 200000;
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+        Constants.MAX_RESOLUTION = 2000;
+
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -125 + random.nextDouble() * 60;
+            points[i][1] = 25 + random.nextDouble() * 25;
+        }
+
+        System.out.println("========== " + n + " points ==========");
+        measure("SuperCluster", new SuperCluster(0, 17, "KDTree"), points);
+        measure("AiSuperCluster", new AiSuperCluster(0, 17, false), points);
+        measure("BiSuperCluster", new BiSuperCluster(0, 17, "KDTree", false), points);
+
+        // 3 hot keywords, each hit every round, and 1 cold keyword per round never seen again
+        double[][] small = new double[n / 10][];
+        System.arraycopy(points, 0, small, 0, small.length);
+        SuperCluster sample = sample(small);
+        ClusterCache cache = new ClusterCache(sample.estimateBytes() * 5);
+        String[] hot = {"hot0", "hot1", "hot2"};
+        int hotMisses = 0;
+        for (int round = 0; round < 50; round ++) {
+            for (String key: hot) {
+                if (!cache.containsKey(key)) {
+                    hotMisses ++;
+                    cache.put(key, sample(small));
+                    drop(cache, cache.victims(key));
+                }
+                cache.hit(key);
+            }
+            String cold = "cold" + round;
+            cache.put(cold, sample(small));
+            drop(cache, cache.victims(cold));
+            cache.hit(cold);
+        }
+        System.out.println("[ClusterCache] " + cache);
+        System.out.println("[ClusterCache] hot misses: " + hotMisses + ", within budget: " + (cache.getBytes() <= cache.getBudget()));
+
+        // room for 3 instances in all, the shared one is charged once
+        ClusterBudget budget = new ClusterBudget(sample.estimateBytes() * 3 + sample.estimateBytes() / 2);
+        ClusterCache first = new ClusterCache(budget);
+        ClusterCache second = new ClusterCache(budget);
+        first.put("shared", sample);
+        second.put("shared", sample);
+        first.put("a", sample(small));
+        drop(first, first.victims("a"));
+        second.put("b", sample(small));
+        drop(second, second.victims("b"));
+        System.out.println("[ClusterBudget] " + budget + ", shared once: " + (budget.size() == 3 && first.size() == 2 && second.size() == 2));
+        // one more instance is over the budget, the shared one frees nothing and is kept, "a" is evicted
+        first.put("c", sample(small));
+        drop(first, first.victims("c"));
+        System.out.println("[ClusterBudget] " + budget + ", evicted own entry only: "
+                + (first.containsKey("shared") && !first.containsKey("a") && budget.getBytes() <= budget.getBudget()));
+        first.remove("shared");
+        System.out.println("[ClusterBudget] still charged while the other cache holds it: " + (budget.holders(sample) == 1));
+        second.remove("shared");
+        System.out.println("[ClusterBudget] released after the last cache removes it: " + (budget.holders(sample) == 0));
+    }
+
+    private static SuperCluster sample(double[][] points) {
+        SuperCluster cluster = new SuperCluster(0, 17, "KDTree");
+        cluster.load(points);
+        return cluster;
+    }
+
+    private static void drop(ClusterCache cache, Iterable<String> victims) {
+        for (String victim: victims) {
+            cache.remove(victim);
+        }
+    }
+
+    private static void measure(String name, SuperCluster cluster, double[][] points) {
+        long before = usedMemory();
+        cluster.load(points);
+        long after = usedMemory();
+        System.out.println("[" + name + "] estimated: " + cluster.estimateBytes() / 1024 + " KB, measured: " + (after - before) / 1024 + " KB");
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i ++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,123 @@
+package clustering;
+
+import util.Constants;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many threads acquire the same key from ClusterRegistry at the same time, the same as agents of many sessions,
+ *   only one of them should build the SuperCluster and all of them should get the same instance,
+ *   and no build thread waits for another build, a key acquired during a slow build of another key is built at once.
+ *
+ * args: [number of threads] [number of points]
+ */
+public class ClusterRegistryTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.valueOf(args[0]) : 10;
+        int n = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -125 + random.nextDouble() * 60;
+            points[i][1] = 25 + random.nextDouble() * 25;
+        }
+
+        ClusterRegistry registry = ClusterRegistry.getInstance();
+        // two build threads, fewer than the threads acquiring
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        String key = ClusterRegistry.key("test", "SuperCluster", "KDTree", "original");
+        String otherKey = ClusterRegistry.key("other", "SuperCluster", "KDTree", "original");
+        AtomicInteger builds = new AtomicInteger();
+        CountDownLatch otherBuilt = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<SuperCluster>[] acquired = new CompletableFuture[threads];
+        CountDownLatch ready = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t ++) {
+            final int k = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                acquired[k] = registry.acquire(key, executor, () -> {
+                    builds.incrementAndGet();
+                    SuperCluster cluster = new SuperCluster(0, 17, "KDTree");
+                    cluster.load(points);
+                    // finish only after the other key is built, which needs a free build thread
+                    try {
+                        otherBuilt.await(30, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                    return cluster;
+                });
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        ready.countDown();
+        for (Thread worker: workers) {
+            worker.join();
+        }
+        SuperCluster other = registry.acquire(otherKey, executor, () -> new SuperCluster(0, 17, "KDTree")).join();
+        otherBuilt.countDown();
+        boolean otherFirst = other != null && !acquired[0].isDone();
+        SuperCluster[] clusters = new SuperCluster[threads];
+        for (int t = 0; t < threads; t ++) {
+            clusters[t] = acquired[t].join();
+        }
+        long end = System.nanoTime();
+
+        boolean same = clusters[0] != null;
+        for (int t = 1; t < threads; t ++) {
+            same = same && clusters[t] == clusters[0];
+        }
+        System.out.println("========== " + threads + " threads, " + n + " points ==========");
+        System.out.println("time: " + (double) (end - start) / 1000000000.0 + " seconds");
+        System.out.println("builds: " + builds.get() + ", same instance: " + same);
+        System.out.println("other key built during the build: " + otherFirst);
+        registry.release(otherKey, other);
+
+        // the SuperCluster is dropped after the last release only
+        for (int t = 0; t < threads - 1; t ++) {
+            registry.release(key, clusters[t]);
+        }
+        System.out.println("after " + (threads - 1) + " releases, size: " + registry.size());
+        registry.release(key, clusters[threads - 1]);
+        System.out.println("after " + threads + " releases, size: " + registry.size());
+
+        // failed builds are not kept
+        SuperCluster failed = registry.acquire(key, executor, () -> null).join();
+        System.out.println("failed build: " + failed + ", size: " + registry.size());
+
+        // rejected builds are not kept either
+        try {
+            registry.acquire(key, task -> { throw new RejectedExecutionException(); }, () -> null);
+            System.out.println("rejected build: not thrown");
+        } catch (RejectedExecutionException e) {
+            System.out.println("rejected build: thrown, size: " + registry.size());
+        }
+        // short names of algorithms share the key of their full names
+        System.out.println("\"sc\" shares the key of \"SuperCluster\": " + key.equals(ClusterRegistry.key("test", "sc", "KDTree", "original")));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,117 @@
+package clustering;
+
+import model.Cluster;
+import util.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Build a SuperCluster, snapshot it to a temporary file and reopen it,
+ *   the reopened one should answer the same clusters on every zoom level and the same clustering labels,
+ *   report the time to build, write, reopen, the first query on a viewport and the first queries on whole levels.
+ *
+ * args: [number of points]
+ */
+public class ClusterSnapshotTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -125 + random.nextDouble() * 60;
+            points[i][1] = 25 + random.nextDouble() * 25;
+        }
+
+        SuperCluster built = new SuperCluster(0, 17, "KDTree");
+        long start = System.nanoTime();
+        built.load(points);
+        long end = System.nanoTime();
+        double buildTime = (double) (end - start) / 1000000.0;
+
+        File file = File.createTempFile("supercluster", ".snapshot");
+        start = System.nanoTime();
+        ClusterSnapshot.write(built, file);
+        end = System.nanoTime();
+        double writeTime = (double) (end - start) / 1000000.0;
+
+        start = System.nanoTime();
+        SuperCluster reopened = ClusterSnapshot.open(file).restore();
+        end = System.nanoTime();
+        double reopenTime = (double) (end - start) / 1000000.0;
+
+        // first query on a viewport of a fresh reopen, only the clusters in view are created
+        SuperCluster viewport = ClusterSnapshot.open(file).restore();
+        start = System.nanoTime();
+        Cluster[] inView = viewport.getClusters(-100, 35, -95, 40, 11);
+        end = System.nanoTime();
+        double viewportTime = (double) (end - start) / 1000000.0;
+        boolean same = same(built.getClusters(-100, 35, -95, 40, 11), inView);
+
+        double restoreTime = 0;
+        for (int z = 0; z <= 17; z ++) {
+            start = System.nanoTime();
+            Cluster[] actual = reopened.getClusters(-180, -90, 180, 90, z);
+            end = System.nanoTime();
+            restoreTime += (double) (end - start) / 1000000.0;
+            Cluster[] expected = built.getClusters(-180, -90, 180, 90, z);
+            same = same && same(expected, actual);
+        }
+        same = same && Arrays.equals(built.getClusteringLabels(10), reopened.getClusteringLabels(10));
+        same = same && built.getClusterDistance(17, built.getClusters(17)[0].getId(), built.getClusters(17)[1].getId())
+                == reopened.getClusterDistance(17, built.getClusters(17)[0].getId(), built.getClusters(17)[1].getId());
+
+        System.out.println("========== " + n + " points, snapshot " + file.length() / 1024 + " KB ==========");
+        System.out.println("build: " + buildTime + " ms, write: " + writeTime + " ms, reopen: " + reopenTime
+                + " ms, first zoom 11 query on a viewport: " + viewportTime + " ms (" + inView.length + " clusters)"
+                + ", first query on the whole world of all levels: " + restoreTime + " ms");
+        System.out.println("estimated bytes, built: " + built.estimateBytes() + ", reopened: " + reopened.estimateBytes());
+        System.out.println("same: " + same);
+
+        // truncated files are rejected
+        try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 4);
+        }
+        try {
+            ClusterSnapshot.open(file);
+            System.out.println("truncated: accepted");
+        } catch (IOException e) {
+            System.out.println("truncated: " + e.getMessage());
+        }
+        file.delete();
+    }
+
+    private static boolean same(Cluster[] expected, Cluster[] actual) {
+        if (expected.length != actual.length) return false;
+        Comparator byId = new Comparator();
+        Arrays.sort(expected, byId);
+        Arrays.sort(actual, byId);
+        for (int i = 0; i < expected.length; i ++) {
+            Cluster a = expected[i], b = actual[i];
+            if (a.getId() != b.getId() || a.getX() != b.getX() || a.getY() != b.getY() || a.numPoints != b.numPoints
+                    || a.expansionZoom != b.expansionZoom || a.parentId != b.parentId || a.children.size() != b.children.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static class Comparator implements java.util.Comparator<Cluster> {
+        public int compare(Cluster a, Cluster b) {
+            if (a.getId() != b.getId()) return Integer.compare(a.getId(), b.getId());
+            return Double.compare(a.getX(), b.getX());
+        }
+    }
+}
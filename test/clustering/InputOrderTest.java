@@ -0,0 +1,69 @@
+package clustering;
+
+import util.MyMemory;
+import util.SpaceFillingCurve;
+
+import java.util.Random;
+
+/**
+ * Compare SuperCluster building time with input points in
+ *   (1) random order, the same as rows returned by database without ordering,
+ *   (2) Morton order,
+ *   (3) Hilbert order,
+ * over mercator coordinates, the same as "morton" / "hilbert" order in Agent.
+ *
+ * args: [number of points] [index type]
+ */
+public class InputOrderTest {
+    public static final int minZoom = 0;
+    public static final int maxZoom = 17;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        String indexType = args.length > 1 ? args[1] : "KDTree";
+
+        // a few dense gaussian blobs over US, similar to tweets
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -120 + (i % 5) * 10 + random.nextGaussian() * 3;
+            points[i][1] = 35 + random.nextGaussian() * 3;
+        }
+
+        System.out.println("========== " + n + " points, index = " + indexType + " ==========");
+        build("random", points, indexType);
+        build(SpaceFillingCurve.MORTON, order(points, SpaceFillingCurve.MORTON), indexType);
+        build(SpaceFillingCurve.HILBERT, order(points, SpaceFillingCurve.HILBERT), indexType);
+    }
+
+    private static double[][] order(double[][] points, String curve) {
+        long start = System.nanoTime();
+        double[] xs = new double[points.length];
+        double[] ys = new double[points.length];
+        for (int i = 0; i < points.length; i ++) {
+            xs[i] = SuperCluster.lngX(points[i][0]);
+            ys[i] = SuperCluster.latY(points[i][1]);
+        }
+        int[] order = SpaceFillingCurve.order(xs, ys, curve);
+        double[][] ordered = new double[points.length][];
+        for (int i = 0; i < points.length; i ++) {
+            ordered[i] = new double[]{points[order[i]][0], points[order[i]][1]};
+        }
+        long end = System.nanoTime();
+        System.out.println("[" + curve + "] sorting time: " + (double) (end - start) / 1000000000.0 + " seconds.");
+        return ordered;
+    }
+
+    private static void build(String name, double[][] points, String indexType) {
+        System.gc();
+        int before = MyMemory.getUsedMemory();
+        long start = System.nanoTime();
+        SuperCluster superCluster = new SuperCluster(minZoom, maxZoom, indexType, 1);
+        superCluster.load(points);
+        long end = System.nanoTime();
+        System.gc();
+        int after = MyMemory.getUsedMemory();
+        System.out.println("[" + name + "] build time: " + (double) (end - start) / 1000000000.0 + " seconds, " +
+                "memory: " + (after - before) + " MB, max zoom clusters # = " + superCluster.getClusters(maxZoom).length);
+    }
+}
@@ -0,0 +1,96 @@
+package clustering;
+
+import model.Cluster;
+
+import java.util.Random;
+
+/**
+ * Compare building time of SuperCluster hierarchy sequentially and in parallel,
+ *   and check that on each zoom level the parallel build
+ *   (1) covers all points exactly once,
+ *   (2) gives the same result every time.
+ *
+ * args: [number of points] [parallelism ...], e.g. 2000000 8 16 32
+ */
+public class ParallelSuperClusterTest {
+    public static final int minZoom = 0;
+    public static final int maxZoom = 17;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        int[] parallelisms;
+        if (args.length > 1) {
+            parallelisms = new int[args.length - 1];
+            for (int i = 1; i < args.length; i ++) {
+                parallelisms[i - 1] = Integer.valueOf(args[i]);
+            }
+        }
+        else {
+            parallelisms = new int[]{Runtime.getRuntime().availableProcessors()};
+        }
+
+        // a few dense gaussian blobs over US, similar to tweets
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -120 + (i % 5) * 10 + random.nextGaussian() * 3;
+            points[i][1] = 35 + random.nextGaussian() * 3;
+        }
+
+        System.out.println("========== " + n + " points, available processors = " + Runtime.getRuntime().availableProcessors() + " ==========");
+
+        long start = System.nanoTime();
+        SuperCluster sequential = new SuperCluster(minZoom, maxZoom, "KDTree", 1);
+        sequential.load(points);
+        long end = System.nanoTime();
+        double sequentialTime = (double) (end - start) / 1000000000.0;
+        System.out.println("[sequential] build time: " + sequentialTime + " seconds.");
+
+        for (int parallelism: parallelisms) {
+            start = System.nanoTime();
+            SuperCluster parallel = new SuperCluster(minZoom, maxZoom, "KDTree", parallelism);
+            parallel.load(points);
+            end = System.nanoTime();
+            double parallelTime = (double) (end - start) / 1000000000.0;
+            System.out.println("[parallelism = " + parallelism + "] build time: " + parallelTime + " seconds, speedup = " + sequentialTime / parallelTime);
+
+            SuperCluster again = new SuperCluster(minZoom, maxZoom, "KDTree", parallelism);
+            again.load(points);
+
+            for (int z = minZoom; z <= maxZoom; z ++) {
+                Cluster[] clusters = parallel.getClusters(-180, -90, 180, 90, z);
+                Cluster[] clustersAgain = again.getClusters(-180, -90, 180, 90, z);
+                if (!check(parallel, sequential, z, n, clusters, clustersAgain)) {
+                    return;
+                }
+            }
+            System.out.println("[parallelism = " + parallelism + "] all zoom levels are correct.");
+        }
+    }
+
+    private static boolean check(SuperCluster parallel, SuperCluster sequential, int z, int n, Cluster[] clusters, Cluster[] clustersAgain) {
+        long total = 0;
+        for (Cluster cluster: clusters) {
+            total += cluster.numPoints == 0 ? 1 : cluster.numPoints;
+        }
+        if (total != n) {
+            System.out.println("[Error] zoom level [" + z + "] covers " + total + " points, should be " + n);
+            return false;
+        }
+
+        if (clusters.length != clustersAgain.length) {
+            System.out.println("[Error] zoom level [" + z + "] is not deterministic, " + clusters.length + " vs " + clustersAgain.length + " clusters");
+            return false;
+        }
+        for (int i = 0; i < clusters.length; i ++) {
+            if (clusters[i].getId() != clustersAgain[i].getId() || clusters[i].numPoints != clustersAgain[i].numPoints) {
+                System.out.println("[Error] zoom level [" + z + "] is not deterministic at cluster " + clusters[i].getId());
+                return false;
+            }
+        }
+
+        Cluster[] levelClusters = parallel.clusters[z];
+        System.out.println("zoom level [" + z + "]: sequential " + sequential.clusters[z].length + " clusters, parallel " + levelClusters.length + " clusters.");
+        return true;
+    }
+}
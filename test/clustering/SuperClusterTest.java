@@ -1,7 +1,8 @@
 package clustering;
 
 import model.PointTuple;
-import util.PostgreSQL;
+import util.IPointSource;
+import util.PointSourceCreator;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -26,9 +27,9 @@ public class SuperClusterTest {
         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
         String keyword = bufferedReader.readLine();
 
-        // 0) Load original data from PostgreSQL
-        PostgreSQL postgreSQL = new PostgreSQL();
-        List<PointTuple> pointTuples = postgreSQL.queryPointTuplesForKeyword(keyword);
+        // 0) Load original data from the configured point source
+        IPointSource pointSource = PointSourceCreator.createPointSource();
+        List<PointTuple> pointTuples = pointSource.queryPointTuplesForKeyword(keyword);
         int length = pointTuples.size();
         for (int i = 0; i < length; i ++) {
             pointTuples.get(i).setId(i);
@@ -0,0 +1,78 @@
+package clustering;
+
+import model.PointTuple;
+import util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Algorithms updating their indexes by insert / delete, built with index types that only support load,
+ *   they should use KDTree instead, and loading batches should not fail.
+ *
+ * args: [number of points]
+ */
+public class UpdatableIndexTest {
+    public static final int minZoom = 0;
+    public static final int maxZoom = 17;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 20000;
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+
+        // a few dense gaussian blobs over US, in two batches as a progressive query loads them
+        Random random = new Random(0);
+        List<PointTuple> first = new ArrayList<>();
+        List<PointTuple> second = new ArrayList<>();
+        for (int i = 0; i < n; i ++) {
+            PointTuple point = new PointTuple();
+            point.setX(-120 + (i % 5) * 10 + random.nextGaussian() * 3);
+            point.setY(35 + random.nextGaussian() * 3);
+            point.setId(i);
+            (i < n / 2? first: second).add(point);
+        }
+
+        boolean allLoaded = true;
+        for (String indexType: new String[]{"StaticKDTree", "FlatGridIndex"}) {
+            for (String algorithm: new String[]{"BiSuperCluster", "LBiSuperCluster", "SBiSuperCluster", "DataAggregator"}) {
+                boolean loaded = true;
+                try {
+                    switch (algorithm) {
+                        case "BiSuperCluster":
+                            BiSuperCluster bisc = new BiSuperCluster(minZoom, maxZoom, indexType, false);
+                            bisc.load(first);
+                            bisc.load(second);
+                            break;
+                        case "LBiSuperCluster":
+                            LBiSuperCluster lbisc = new LBiSuperCluster(minZoom, maxZoom, indexType, false);
+                            lbisc.load(first);
+                            lbisc.load(second);
+                            break;
+                        case "SBiSuperCluster":
+                            SBiSuperCluster sbisc = new SBiSuperCluster(minZoom, maxZoom, indexType, false);
+                            sbisc.load(first);
+                            sbisc.load(second);
+                            break;
+                        default:
+                            DataAggregator da = new DataAggregator(minZoom, maxZoom, indexType, false);
+                            da.load(first);
+                            da.load(second);
+                    }
+                } catch (UnsupportedOperationException e) {
+                    loaded = false;
+                }
+                allLoaded = allLoaded && loaded;
+                System.out.println("index = " + indexType + ", algorithm = " + algorithm + ", loaded: " + loaded);
+            }
+        }
+        System.out.println("all loaded: " + allLoaded);
+    }
+}
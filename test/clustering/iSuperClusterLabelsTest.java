@@ -0,0 +1,68 @@
+package clustering;
+
+import model.Cluster;
+import util.Constants;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Clustering labels of iSuperCluster, whose raw points are not in the PointStore,
+ *   with keepPoints every point should be labeled by its own id or the id of a cluster on the zoom level,
+ *   without keepPoints labels are not known, but getClusteringLabels should still return them for all points.
+ *
+ * args: [number of points]
+ */
+public class iSuperClusterLabelsTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 20000;
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+
+        // dense spots, so that points merge on max zoom level
+        Random random = new Random(0);
+        double[][] points = new double[n][2];
+        for (int i = 0; i < n; i ++) {
+            points[i][0] = -120 + random.nextInt(10) * 5 + random.nextGaussian() * 0.0005;
+            points[i][1] = 30 + random.nextInt(5) * 3 + random.nextGaussian() * 0.0005;
+        }
+
+        boolean allCorrect = true;
+        for (boolean keepPoints: new boolean[]{true, false}) {
+            iSuperCluster cluster = new iSuperCluster(0, 17, keepPoints);
+            // two batches, as a progressive query loads them
+            double[][] first = new double[n / 2][];
+            double[][] second = new double[n - n / 2][];
+            System.arraycopy(points, 0, first, 0, first.length);
+            System.arraycopy(points, first.length, second, 0, second.length);
+            cluster.load(first);
+            cluster.load(second);
+
+            for (int zoom: new int[]{17, 12, 6, 0}) {
+                int[] labels = cluster.getClusteringLabels(zoom);
+                boolean correct = labels != null && labels.length == n;
+                if (correct && keepPoints) {
+                    Set<Integer> ids = new HashSet<>();
+                    for (Cluster c: cluster.getClusters(zoom)) {
+                        ids.add(c.getId());
+                    }
+                    for (int i = 0; i < n && correct; i ++) {
+                        correct = labels[i] == i || ids.contains(labels[i]);
+                    }
+                }
+                allCorrect = allCorrect && correct;
+                System.out.println("keepPoints = " + keepPoints + ", zoom = " + zoom + ", clusters = " + cluster.getClusters(zoom).length
+                        + ", correct: " + correct);
+            }
+        }
+        System.out.println("all correct: " + allCorrect);
+    }
+}
@@ -0,0 +1,204 @@
+package util;
+
+import model.Cluster;
+import model.ClusterDiff;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Encode random clusters of a world view in CompactBinary formats, decode them back,
+ *   every cluster should come back with its numPoints and coordinates within the quantization error,
+ *   and compare the size with the 20 bytes per cluster of format "binary",
+ *   then change a few clusters as a progressive batch does, the diff applied to the first answer should give the second one.
+ *
+ * args: [number of clusters]
+ */
+public class CompactBinaryTest {
+
+    public static void main(String[] args) throws IOException, DataFormatException {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 200000;
+        Random random = new Random(0);
+        Cluster[] clusters = new Cluster[n];
+        for (int i = 0; i < n; i ++) {
+            // skewed towards a few cities as real tweets are
+            double lng = random.nextInt(20) * 15 - 150 + random.nextGaussian() * 3;
+            double lat = random.nextInt(10) * 12 - 60 + random.nextGaussian() * 3;
+            clusters[i] = new Cluster(lng, lat, i);
+            clusters[i].numPoints = 1 + (int) Math.abs(random.nextGaussian() * 1000);
+        }
+        int legacy = 4 + 3 * 8 + 20 * n;
+
+        System.out.println("========== " + n + " clusters, binary: " + legacy + " bytes ==========");
+        for (int bits: new int[]{24, 32}) {
+            for (String format: new String[]{CompactBinary.COMPACT, CompactBinary.DEFLATE}) {
+                long start = System.nanoTime();
+                byte[] response = CompactBinary.encode(clusters, format, bits);
+                CompactBinary.writeHeader(response, 100, 1.5, 0.25, 0.125);
+                long end = System.nanoTime();
+                System.out.println(format + ", " + bits + " bits: " + response.length + " bytes ("
+                        + String.format("%.1f", 100.0 * response.length / legacy) + "%) in " + (end - start) / 1000000 + " ms, "
+                        + "correct: " + check(response, clusters));
+            }
+        }
+
+        // a batch moving 2% of the clusters, removing 1% and adding 1%
+        ClusterDiff diff = new ClusterDiff();
+        diff.diff("view", clusters);
+        Map<Integer, double[]> client = new HashMap<>();
+        apply(CompactBinary.encode(clusters, CompactBinary.DEFLATE, 32, true, null), client);
+        Cluster[] next = new Cluster[n];
+        for (int i = 0; i < n; i ++) {
+            Cluster c = clusters[i].clone();
+            if (i % 50 == 0) {
+                c.numPoints += 10;
+                c.setX(c.getX() + 0.01);
+            }
+            if (i % 100 == 1) {
+                c = new Cluster(c.getX(), c.getY(), n + i);
+                c.numPoints = 1;
+            }
+            next[i] = c;
+        }
+        boolean isDiff = diff.diff("view", next);
+        byte[] response = CompactBinary.encode(diff.changed(), CompactBinary.DEFLATE, 32, true, diff.removed);
+        apply(response, client);
+        boolean same = client.size() == n;
+        for (Cluster c: next) {
+            double[] kept = client.get(c.getId());
+            same = same && kept != null && (int) kept[2] == c.numPoints && Math.abs(kept[0] - c.getX()) < 1e-6 && Math.abs(kept[1] - c.getY()) < 1e-6;
+        }
+        System.out.println("diff: " + isDiff + ", added = " + diff.added.size() + ", updated = " + diff.updated.size() + ", removed = " + diff.removed.size()
+                + ", " + response.length + " bytes, correct: " + same);
+        System.out.println("another view sent whole: " + !diff.diff("other view", next));
+
+        // nothing to encode
+        byte[] empty = CompactBinary.encode(new Cluster[0], CompactBinary.DEFLATE, 24);
+        System.out.println("empty: " + empty.length + " bytes, correct: " + check(empty, new Cluster[0]));
+        System.out.println("zigzag: " + (CompactBinary.unzigzag(CompactBinary.zigzag(-5)) == -5
+                && CompactBinary.unzigzag(CompactBinary.zigzag(Long.MIN_VALUE)) == Long.MIN_VALUE));
+    }
+
+    private static boolean check(byte[] response, Cluster[] clusters) throws IOException, DataFormatException {
+        ByteBuffer header = ByteBuffer.wrap(response);
+        if (header.get() != CompactBinary.VERSION) return false;
+        int flags = header.get();
+        if (clusters.length > 0 && (header.getInt() != 100 || header.getDouble() != 1.5)) return false;
+        byte[] payload = new byte[response.length - CompactBinary.HEADER_SIZE];
+        System.arraycopy(response, CompactBinary.HEADER_SIZE, payload, 0, payload.length);
+        if ((flags & CompactBinary.FLAG_DEFLATED) != 0) {
+            payload = inflate(payload);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int n = (int) readVarint(in);
+        int bits = in.readByte();
+        double minLng = in.readDouble(), minLat = in.readDouble(), maxLng = in.readDouble(), maxLat = in.readDouble();
+        if (n != clusters.length) return false;
+        double errorLng = (maxLng - minLng) / ((1L << bits) - 1);
+        double errorLat = (maxLat - minLat) / ((1L << bits) - 1);
+
+        // clusters come back in another order, match them by numPoints and nearest position
+        Map<Integer, Integer> byNumPoints = new HashMap<>();
+        for (Cluster cluster: clusters) {
+            byNumPoints.merge(cluster.numPoints, 1, Integer::sum);
+        }
+        long lng = 0, lat = 0;
+        double[] lngs = new double[n];
+        double[] lats = new double[n];
+        for (int k = 0; k < n; k ++) {
+            lng += CompactBinary.unzigzag(readVarint(in));
+            lat += CompactBinary.unzigzag(readVarint(in));
+            int numPoints = (int) readVarint(in);
+            if (byNumPoints.merge(numPoints, -1, Integer::sum) < 0) return false;
+            lngs[k] = CompactBinary.dequantize(lng, minLng, maxLng, bits);
+            lats[k] = CompactBinary.dequantize(lat, minLat, maxLat, bits);
+        }
+        if (in.available() != 0) return false;
+
+        // sorted coordinates of both sides differ at most by the quantization error
+        double[] expectedLngs = new double[n];
+        double[] expectedLats = new double[n];
+        for (int i = 0; i < n; i ++) {
+            expectedLngs[i] = clusters[i].getX();
+            expectedLats[i] = clusters[i].getY();
+        }
+        return close(lngs, expectedLngs, errorLng) && close(lats, expectedLats, errorLat);
+    }
+
+    /**
+     * apply a response with ids to clusters kept by id as the client does, value is {lng, lat, numPoints}
+     */
+    private static void apply(byte[] response, Map<Integer, double[]> client) throws IOException, DataFormatException {
+        int flags = response[1];
+        byte[] payload = new byte[response.length - CompactBinary.HEADER_SIZE];
+        System.arraycopy(response, CompactBinary.HEADER_SIZE, payload, 0, payload.length);
+        if ((flags & CompactBinary.FLAG_DEFLATED) != 0) {
+            payload = inflate(payload);
+        }
+        if ((flags & CompactBinary.FLAG_DIFF) == 0) {
+            client.clear();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int n = (int) readVarint(in);
+        int bits = in.readByte();
+        double minLng = in.readDouble(), minLat = in.readDouble(), maxLng = in.readDouble(), maxLat = in.readDouble();
+        long lng = 0, lat = 0, id = 0;
+        for (int k = 0; k < n; k ++) {
+            lng += CompactBinary.unzigzag(readVarint(in));
+            lat += CompactBinary.unzigzag(readVarint(in));
+            int numPoints = (int) readVarint(in);
+            id += CompactBinary.unzigzag(readVarint(in));
+            client.put((int) id, new double[]{CompactBinary.dequantize(lng, minLng, maxLng, bits), CompactBinary.dequantize(lat, minLat, maxLat, bits), numPoints});
+        }
+        if ((flags & CompactBinary.FLAG_DIFF) != 0) {
+            int removed = (int) readVarint(in);
+            long removedId = Integer.MIN_VALUE;
+            for (int k = 0; k < removed; k ++) {
+                removedId += readVarint(in);
+                client.remove((int) removedId);
+            }
+        }
+    }
+
+    private static boolean close(double[] actual, double[] expected, double error) {
+        java.util.Arrays.sort(actual);
+        java.util.Arrays.sort(expected);
+        for (int i = 0; i < actual.length; i ++) {
+            if (Math.abs(actual[i] - expected[i]) > error) return false;
+        }
+        return true;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+            shift += 7;
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(data);
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        while (!inflater.finished()) {
+            int k = inflater.inflate(buffer);
+            if (k == 0 && inflater.needsInput()) break;
+            out.write(buffer, 0, k);
+        }
+        inflater.end();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+package util;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Borrow connections of a fake driver from ConnectionPool,
+ *   (1) concurrent borrowers never hold more connections than the pool size, and do not open more than that;
+ *   (2) statements are prepared once per connection and sql;
+ *   (3) a broken connection is discarded and replaced by a new one on the next borrow;
+ *   (4) a borrower waiting longer than the timeout fails.
+ *
+ * args: [number of threads]
+ */
+public class ConnectionPoolTest {
+
+    static AtomicInteger connects = new AtomicInteger();
+    static AtomicInteger prepares = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.valueOf(args[0]) : 16;
+        DriverManager.registerDriver(new FakeDriver());
+        ConnectionPool pool = new ConnectionPool("jdbc:fake:test", "", "", 4, 10000);
+
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger maxBorrowed = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t ++) {
+            workers[t] = new Thread(() -> {
+                for (int k = 0; k < 100; k ++) {
+                    try (ConnectionPool.Lease lease = pool.borrow()) {
+                        maxBorrowed.accumulateAndGet(borrowed.incrementAndGet(), Math::max);
+                        lease.prepare("SELECT x, y, id FROM tweets WHERE create_at between ? and ?");
+                        lease.prepare("SELECT x, y, id FROM tweets limit ?");
+                        Thread.sleep(1);
+                        borrowed.decrementAndGet();
+                    } catch (SQLException | InterruptedException e) {
+                        System.out.println("failed: " + e.getMessage());
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker: workers) {
+            worker.join();
+        }
+        System.out.println("========== " + threads + " threads, " + pool + " ==========");
+        System.out.println("max borrowed: " + maxBorrowed.get() + ", connections opened: " + connects.get() + ", statements prepared: " + prepares.get());
+        System.out.println("bounded: " + (maxBorrowed.get() <= 4 && connects.get() <= 4) + ", statements cached: " + (prepares.get() == 2 * connects.get()));
+
+        // a connection error marks the connection broken
+        int before = connects.get();
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            lease.failed(new SQLException("connection reset", "08006"));
+        }
+        try (ConnectionPool.Lease lease = pool.borrow()) {
+            lease.getConnection();
+        }
+        System.out.println("broken discarded: " + (pool.getDiscarded() == 1) + ", idle: " + pool.getIdle() + ", reopened: " + (connects.get() - before <= 1));
+
+        // all connections borrowed, the next borrower times out
+        ConnectionPool small = new ConnectionPool("jdbc:fake:test", "", "", 1, 100);
+        ConnectionPool.Lease held = small.borrow();
+        long start = System.nanoTime();
+        try {
+            small.borrow();
+            System.out.println("timeout: borrowed");
+        } catch (SQLException e) {
+            System.out.println("timeout after " + (System.nanoTime() - start) / 1000000 + " ms: " + e.getMessage());
+        }
+        held.close();
+        small.borrow().close();
+        System.out.println("after return: " + small);
+    }
+
+    static class FakeDriver implements Driver {
+        public Connection connect(String url, Properties info) {
+            if (!acceptsURL(url)) return null;
+            connects.incrementAndGet();
+            boolean[] closed = {false};
+            boolean[] autoCommit = {true};
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class}, (proxy, method, methodArgs) -> {
+                switch (method.getName()) {
+                    case "prepareStatement":
+                        prepares.incrementAndGet();
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class[]{PreparedStatement.class},
+                                (p, m, a) -> m.getReturnType() == boolean.class? false: null);
+                    case "close":
+                        closed[0] = true;
+                        return null;
+                    case "isClosed":
+                        return closed[0];
+                    case "isValid":
+                        return !closed[0];
+                    case "getAutoCommit":
+                        return autoCommit[0];
+                    case "setAutoCommit":
+                        autoCommit[0] = (Boolean) methodArgs[0];
+                        return null;
+                    default:
+                        return method.getReturnType() == boolean.class? false: null;
+                }
+            });
+        }
+
+        public boolean acceptsURL(String url) {
+            return url.startsWith("jdbc:fake:");
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package util;
+
+import model.CoordinateBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Encode rows (x, y) in the binary COPY format PostgreSQL sends, with some null rows,
+ *   decode them by PostgreSQL.readCopyCoordinates and check every coordinate, then report decoding time.
+ *
+ * args: [number of rows]
+ */
+public class CopyDecodeTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+
+        Random random = new Random(0);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        boolean[] nulls = new boolean[n];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(PostgreSQL.COPY_SIGNATURE);
+        out.writeInt(0);
+        // header extension of 4 bytes, must be skipped
+        out.writeInt(4);
+        out.writeInt(0);
+        for (int i = 0; i < n; i ++) {
+            xs[i] = -125 + random.nextDouble() * 60;
+            ys[i] = 25 + random.nextDouble() * 25;
+            nulls[i] = i % 1000 == 0;
+            out.writeShort(2);
+            if (nulls[i]) {
+                out.writeInt(-1);
+            }
+            else {
+                out.writeInt(8);
+                out.writeDouble(xs[i]);
+            }
+            out.writeInt(8);
+            out.writeDouble(ys[i]);
+        }
+        // trailer
+        out.writeShort(-1);
+        byte[] copy = bytes.toByteArray();
+
+        long start = System.nanoTime();
+        CoordinateBuffer coordinates = PostgreSQL.readCopyCoordinates(new ByteArrayInputStream(copy), 1024);
+        long end = System.nanoTime();
+
+        boolean correct = true;
+        int j = 0;
+        for (int i = 0; i < n; i ++) {
+            if (nulls[i]) continue;
+            correct = correct && coordinates.getX(j) == xs[i] && coordinates.getY(j) == ys[i];
+            j ++;
+        }
+        correct = correct && coordinates.size() == j;
+        System.out.println("========== " + n + " rows, " + copy.length / 1024 + " KB ==========");
+        System.out.println("decoded: " + coordinates.size() + ", correct: " + correct);
+        System.out.println("time: " + (double) (end - start) / 1000000000.0 + " seconds");
+
+        // bad signature is rejected
+        copy[0] = 'X';
+        try {
+            PostgreSQL.readCopyCoordinates(new ByteArrayInputStream(copy), 1024);
+            System.out.println("bad signature: accepted");
+        } catch (IOException e) {
+            System.out.println("bad signature: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package util;
+
+import model.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare the cost of checking candidates against radius with
+ *   (1) distanceTo(p) <= radius, sqrt for every candidate,
+ *   (2) squareDistanceTo(p) <= radius * radius,
+ * and report per-query time of within on each index, which checks candidates with (2).
+ *
+ * args: [number of points] [number of queries]
+ */
+public class DistanceTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        int q = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+
+        Random random = new Random(0);
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i ++) {
+            points[i] = new Point(random.nextDouble(), random.nextDouble(), i);
+        }
+        Point[] centers = new Point[q];
+        for (int i = 0; i < q; i ++) {
+            centers[i] = new Point(random.nextDouble(), random.nextDouble(), -1);
+        }
+        double radius = 0.005;
+
+        System.out.println("========== " + n + " points, " + q + " queries ==========");
+
+        // warm up both predicates before timing them
+        for (int round = 0; round < 3; round ++) {
+            long found = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i ++) {
+                if (points[i].distanceTo(centers[i % q]) <= radius * 100) found ++;
+            }
+            long end = System.nanoTime();
+            System.out.println("[distanceTo] " + (double) (end - start) / n + " ns/candidate, found " + found);
+
+            double radius2 = radius * 100 * radius * 100;
+            found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < n; i ++) {
+                if (points[i].squareDistanceTo(centers[i % q]) <= radius2) found ++;
+            }
+            end = System.nanoTime();
+            System.out.println("[squareDistanceTo] " + (double) (end - start) / n + " ns/candidate, found " + found);
+        }
+
+        Constants.MIN_X = 0;
+        Constants.MIN_Y = 0;
+        Constants.MAX_X = 1;
+        Constants.MAX_Y = 1;
+        Constants.MAX_RESOLUTION = 2000;
+        String[] indexTypes = {"KDTree", "GridIndex", "StaticKDTree", "FlatGridIndex"};
+        for (String indexType: indexTypes) {
+            I2DIndex<Point> index = IndexCreator.createIndex(indexType, radius);
+            index.load(points);
+            List<Point> result = new ArrayList<>();
+            long found = 0;
+            long start = System.nanoTime();
+            for (Point center: centers) {
+                result.clear();
+                index.within(center, radius, result);
+                found += result.size();
+            }
+            long end = System.nanoTime();
+            System.out.println("[" + indexType + "] within: " + (double) (end - start) / 1000.0 / q + " us/query, found " + found);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package util;
+
+import model.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare earliestWithin with the earliest point of within on all indexes,
+ *   and the time of both on KDTree when many points are within radius,
+ *   the same as advocator searches of incremental SuperClusters in dense areas.
+ *
+ * args: [number of points] [number of queries]
+ */
+public class EarliestWithinTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 200000;
+        int q = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+        Constants.MAX_RESOLUTION = 2000;
+
+        // dense blobs, ids in the order of insertion, the same as advocators
+        Random random = new Random(0);
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i ++) {
+            double cx = 10 + 10 * (i % 8);
+            double cy = 10 + 10 * ((i / 8) % 8);
+            points[i] = new Point(cx + random.nextGaussian(), cy + random.nextGaussian(), i);
+        }
+        // some later points at the same locations as earlier ones
+        for (int i = n / 2; i < n; i += 100) {
+            Point p = points[random.nextInt(i)];
+            points[i] = new Point(p.getX(), p.getY(), i);
+        }
+        Point[] centers = new Point[q];
+        for (int i = 0; i < q; i ++) {
+            centers[i] = new Point(5 + random.nextDouble() * 80, 5 + random.nextDouble() * 80, -1);
+        }
+        double radius = 0.5;
+
+        System.out.println("========== " + n + " points, " + q + " queries ==========");
+
+        // KDTree by inserting points one by one, then deleting some
+        KDTree<Point> insertedTree = new KDTree<>();
+        for (int i = 0; i < n; i ++) {
+            insertedTree.insert(points[i]);
+        }
+        for (int i = 0; i < n; i += 10) {
+            insertedTree.delete(points[i]);
+        }
+        check("KDTree (inserted)", insertedTree, centers, radius);
+
+        I2DIndex<Point> loadedTree = new KDTree<>();
+        loadedTree.load(points);
+        check("KDTree (loaded)", loadedTree, centers, radius);
+
+        I2DIndex<Point> gridIndex = new GridIndex<>(0, 0, 100, 100, 0.5);
+        gridIndex.load(points);
+        check("GridIndex", gridIndex, centers, radius);
+
+        I2DIndex<Point> staticTree = new StaticKDTree<>();
+        staticTree.load(points);
+        check("StaticKDTree", staticTree, centers, radius);
+
+        I2DIndex<Point> flatGridIndex = new FlatGridIndex<>(0, 0, 100, 100, 0.5);
+        flatGridIndex.load(points);
+        check("FlatGridIndex", flatGridIndex, centers, radius);
+    }
+
+    private static void check(String name, I2DIndex<Point> index, Point[] centers, double radius) {
+        List<Point> result = new ArrayList<>();
+        Point[] expected = new Point[centers.length];
+        long start = System.nanoTime();
+        for (int i = 0; i < centers.length; i ++) {
+            result.clear();
+            index.within(centers[i], radius, result);
+            Point earliest = null;
+            for (int k = 0; k < result.size(); k ++) {
+                if (earliest == null || earliest.getId() > result.get(k).getId()) {
+                    earliest = result.get(k);
+                }
+            }
+            expected[i] = earliest;
+        }
+        long end = System.nanoTime();
+        double scanTime = (double) (end - start) / centers.length / 1000.0;
+
+        int mismatches = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < centers.length; i ++) {
+            Point earliest = index.earliestWithin(centers[i], radius);
+            int id = earliest == null? -1: earliest.getId();
+            int expectedId = expected[i] == null? -1: expected[i].getId();
+            if (id != expectedId) mismatches ++;
+        }
+        end = System.nanoTime();
+        double earliestTime = (double) (end - start) / centers.length / 1000.0;
+
+        System.out.println("[" + name + "] within + scan: " + scanTime + " us, earliestWithin: " + earliestTime + " us, mismatches: " + mismatches);
+    }
+}
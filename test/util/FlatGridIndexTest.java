@@ -0,0 +1,78 @@
+package util;
+
+import model.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare load and query time of GridIndex and FlatGridIndex,
+ *   the same queries should return the same number of points.
+ *
+ * args: [number of points] [number of queries]
+ */
+public class FlatGridIndexTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        int q = args.length > 1 ? Integer.valueOf(args[1]) : 100000;
+        Constants.MAX_RESOLUTION = 2000;
+
+        Random random = new Random(0);
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i ++) {
+            points[i] = new Point(Math.abs(random.nextGaussian() * 20) % 100, Math.abs(random.nextGaussian() * 20) % 100, i);
+        }
+        Point[] centers = new Point[q];
+        for (int i = 0; i < q; i ++) {
+            centers[i] = new Point(random.nextDouble() * 100, random.nextDouble() * 100, -1);
+        }
+        double radius = 1.0;
+        double step = 0.5;
+
+        System.out.println("========== " + n + " points, " + q + " queries ==========");
+
+        long start = System.nanoTime();
+        I2DIndex<Point> gridIndex = new GridIndex<>(0, 0, 100, 100, step);
+        gridIndex.load(points);
+        long end = System.nanoTime();
+        System.out.println("[GridIndex] load time: " + (double) (end - start) / 1000000000.0 + " seconds");
+        long[] gridFound = query("GridIndex", gridIndex, centers, radius);
+
+        start = System.nanoTime();
+        I2DIndex<Point> flatGridIndex = new FlatGridIndex<>(0, 0, 100, 100, step);
+        flatGridIndex.load(points);
+        end = System.nanoTime();
+        System.out.println("[FlatGridIndex] load time: " + (double) (end - start) / 1000000000.0 + " seconds");
+        long[] flatFound = query("FlatGridIndex", flatGridIndex, centers, radius);
+
+        // GridIndex may return points on the edges of its inscribed square twice
+        System.out.println("within found: GridIndex " + gridFound[0] + ", FlatGridIndex " + flatFound[0]);
+        System.out.println("range found: GridIndex " + gridFound[1] + ", FlatGridIndex " + flatFound[1]);
+    }
+
+    private static long[] query(String name, I2DIndex<Point> index, Point[] centers, double radius) {
+        List<Point> result = new ArrayList<>();
+        long[] found = new long[2];
+        long start = System.nanoTime();
+        for (Point center: centers) {
+            result.clear();
+            index.within(center, radius, result);
+            found[0] += result.size();
+        }
+        long end = System.nanoTime();
+        System.out.println("[" + name + "] within: " + (double) (end - start) / 1000.0 / centers.length + " us/query");
+
+        start = System.nanoTime();
+        for (Point center: centers) {
+            result.clear();
+            index.range(new Point(center.getX() - radius, center.getY() - radius, -1),
+                    new Point(center.getX() + radius, center.getY() + radius, -1), result);
+            found[1] += result.size();
+        }
+        end = System.nanoTime();
+        System.out.println("[" + name + "] range: " + (double) (end - start) / 1000.0 / centers.length + " us/query");
+        return found;
+    }
+}
@@ -0,0 +1,99 @@
+package util;
+
+import model.Point;
+import model.PointTuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare depth and query time of
+ *   (1) KDTree built by inserting points one by one,
+ *   (2) KDTree bulk loaded by load(),
+ *   (3) StaticKDTree,
+ * on spatially ordered input, the same order as "spatial" order in Agent.
+ *
+ * args: [number of points] [number of queries]
+ */
+public class KDTreeTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 20000;
+        int q = args.length > 1 ? Integer.valueOf(args[1]) : 10000;
+
+        // generate points and sort them in spatial order
+        Random random = new Random(0);
+        PointTuple[] tuples = new PointTuple[n];
+        for (int i = 0; i < n; i ++) {
+            tuples[i] = new PointTuple();
+            tuples[i].setX(random.nextDouble());
+            tuples[i].setY(random.nextDouble());
+        }
+        Arrays.sort(tuples, PointTuple.getSpatialComparator());
+        Point[] points = new Point[n];
+        for (int i = 0; i < n; i ++) {
+            points[i] = new Point(tuples[i].getX(), tuples[i].getY(), i);
+        }
+
+        // query centers
+        Point[] centers = new Point[q];
+        for (int i = 0; i < q; i ++) {
+            centers[i] = new Point(random.nextDouble(), random.nextDouble(), -1);
+        }
+        double radius = 0.01;
+
+        System.out.println("========== " + n + " points in spatial order, " + q + " queries ==========");
+
+        // (1) insert-based KDTree
+        long start = System.nanoTime();
+        KDTree<Point> insertTree = new KDTree<>();
+        for (Point point: points) {
+            insertTree.insert(point);
+        }
+        long end = System.nanoTime();
+        System.out.println("[insert KDTree] build time: " + (double) (end - start) / 1000000000.0 + " seconds, depth = " + insertTree.height());
+        query("insert KDTree", insertTree, centers, radius);
+
+        // (2) bulk loaded KDTree
+        start = System.nanoTime();
+        KDTree<Point> bulkTree = new KDTree<>();
+        bulkTree.load(points);
+        end = System.nanoTime();
+        System.out.println("[bulk KDTree] build time: " + (double) (end - start) / 1000000000.0 + " seconds, depth = " + bulkTree.height());
+        query("bulk KDTree", bulkTree, centers, radius);
+
+        // (3) StaticKDTree
+        start = System.nanoTime();
+        StaticKDTree<Point> staticTree = new StaticKDTree<>();
+        staticTree.load(points);
+        end = System.nanoTime();
+        System.out.println("[StaticKDTree] build time: " + (double) (end - start) / 1000000000.0 + " seconds, depth = " + staticTree.depth());
+        query("StaticKDTree", staticTree, centers, radius);
+    }
+
+    private static void query(String name, I2DIndex<Point> index, Point[] centers, double radius) {
+        List<Point> result = new ArrayList<>();
+        long found = 0;
+        long start = System.nanoTime();
+        for (Point center: centers) {
+            result.clear();
+            index.within(center, radius, result);
+            found += result.size();
+        }
+        long end = System.nanoTime();
+        System.out.println("[" + name + "] within: " + (double) (end - start) / 1000.0 / centers.length + " us/query, found " + found);
+
+        found = 0;
+        start = System.nanoTime();
+        for (Point center: centers) {
+            result.clear();
+            index.range(new Point(center.getX() - radius, center.getY() - radius, -1),
+                    new Point(center.getX() + radius, center.getY() + radius, -1), result);
+            found += result.size();
+        }
+        end = System.nanoTime();
+        System.out.println("[" + name + "] range: " + (double) (end - start) / 1000.0 / centers.length + " us/query, found " + found);
+    }
+}
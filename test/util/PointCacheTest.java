@@ -0,0 +1,107 @@
+package util;
+
+import model.PointTuple;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Query SyntheticTweets through CachedPointSource in a temporary directory and compare with the source itself,
+ *   (1) a keyword is read from the source once, then from the cache file, also after reopening the directory;
+ *   (2) time ranges of a cached keyword are answered by the cache until invalidated;
+ *   (3) files beyond the budget are evicted, the least recently used first.
+ *
+ * args: [number of tweets]
+ */
+public class PointCacheTest {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        SyntheticTweets tweets = new SyntheticTweets(n, 0, Constants.SYNTHETIC_START, Constants.SYNTHETIC_END);
+        File dir = Files.createTempDirectory("point-cache").toFile();
+
+        PointCache cache = new PointCache(dir, Long.MAX_VALUE);
+        CachedPointSource cached = new CachedPointSource(tweets, cache, "synthetic");
+
+        System.out.println("========== " + n + " tweets in " + dir + " ==========");
+        long start = System.nanoTime();
+        List<PointTuple> miss = copy(cached.queryPointTuplesForKeyword("trump"));
+        long middle = System.nanoTime();
+        List<PointTuple> hit = copy(cached.queryPointTuplesForKeyword("trump"));
+        long end = System.nanoTime();
+        List<PointTuple> expected = copy(tweets.queryPointTuplesForKeyword("trump"));
+        System.out.println("miss: " + (double) (middle - start) / 1000000000.0 + " seconds, hit: " + (double) (end - middle) / 1000000000.0 + " seconds");
+        System.out.println("miss correct: " + same(miss, expected) + ", hit correct: " + same(hit, expected));
+
+        // reopen the directory, the file is reused
+        cache = new PointCache(dir, Long.MAX_VALUE);
+        cached = new CachedPointSource(tweets, cache, "synthetic");
+        System.out.println("reopened correct: " + same(copy(cached.queryPointTuplesForKeyword("trump")), expected) + ", " + cache);
+
+        // time range inside the coverage
+        Date sd = new Date(Constants.SYNTHETIC_START.getTime() + 30L * 24 * 3600 * 1000);
+        Date ed = new Date(Constants.SYNTHETIC_START.getTime() + 60L * 24 * 3600 * 1000);
+        long hits = cache.getHits();
+        List<PointTuple> range = copy(cached.queryPointTuplesForKeywordAndTime("trump", sd, ed));
+        System.out.println("range correct: " + same(range, copy(tweets.queryPointTuplesForKeywordAndTime("trump", sd, ed)))
+                + ", from cache: " + (cache.getHits() > hits));
+
+        // invalidate the range, the part before it stays cached
+        cache.invalidate(sd.getTime(), Long.MAX_VALUE);
+        hits = cache.getHits();
+        cached.queryPointTuplesForKeywordAndTime("trump", sd, ed);
+        boolean after = cache.getHits() > hits;
+        hits = cache.getHits();
+        Date before = new Date(sd.getTime() - 1);
+        cached.queryPointTuplesForKeywordAndTime("trump", Constants.SYNTHETIC_START, before);
+        System.out.println("after invalidation, invalid range from cache: " + after + ", valid range from cache: " + (cache.getHits() > hits));
+
+        // budget of 2.5 times the file of the first keyword
+        long fileBytes = cache.getBytes();
+        cache = new PointCache(new File(dir, "small"), fileBytes * 5 / 2);
+        cached = new CachedPointSource(tweets, cache, "synthetic");
+        String[] keywords = {"trump", "hillary", "obama"};
+        for (String keyword: keywords) {
+            cached.queryPointTuplesForKeyword(keyword);
+        }
+        System.out.println("budget " + cache.getBudget() + ": " + cache);
+
+        delete(dir);
+    }
+
+    private static List<PointTuple> copy(List<PointTuple> pointTuples) {
+        List<PointTuple> result = new ArrayList<>();
+        for (PointTuple pt: pointTuples) {
+            PointTuple c = new PointTuple();
+            c.setX(pt.getX());
+            c.setY(pt.getY());
+            c.tid = pt.tid;
+            result.add(c);
+        }
+        return result;
+    }
+
+    private static boolean same(List<PointTuple> a, List<PointTuple> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i ++) {
+            if (a.get(i).getX() != b.get(i).getX() || a.get(i).getY() != b.get(i).getY() || a.get(i).tid != b.get(i).tid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child: children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,71 @@
+package util;
+
+import clustering.SuperCluster;
+import model.PointTuple;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Generate synthetic tweets, check the queries are consistent with each other,
+ *   and cluster them with SuperCluster the same as ClusteringTime does with PostgreSQL.
+ *
+ * args: [number of tweets] [keyword]
+ */
+public class SyntheticTweetsTest {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000000;
+        String keyword = args.length > 1 ? args[1] : "coffee";
+        Constants.MIN_LONGITUDE = -180;
+        Constants.MIN_LATITUDE = -90;
+        Constants.MAX_LONGITUDE = 180;
+        Constants.MAX_LATITUDE = 90;
+        Constants.MIN_X = SuperCluster.lngX(Constants.MIN_LONGITUDE);
+        Constants.MIN_Y = SuperCluster.latY(Constants.MAX_LATITUDE);
+        Constants.MAX_X = SuperCluster.lngX(Constants.MAX_LONGITUDE);
+        Constants.MAX_Y = SuperCluster.latY(Constants.MIN_LATITUDE);
+        Constants.MAX_RESOLUTION = 2000;
+
+        SyntheticTweets tweets = new SyntheticTweets(n, 0, Constants.SYNTHETIC_START, Constants.SYNTHETIC_END);
+
+        // the same tweet every time
+        PointTuple a = new PointTuple(), b = new PointTuple();
+        tweets.tweet(n / 2, a);
+        tweets.tweet(n / 2, b);
+        System.out.println("deterministic: " + (a.getX() == b.getX() && a.getY() == b.getY()));
+
+        // time ranges split the table
+        Date start = Constants.SYNTHETIC_START;
+        Date end = Constants.SYNTHETIC_END;
+        Date middle = new Date((start.getTime() + end.getTime()) / 2);
+        Date afterMiddle = new Date(middle.getTime() + 1);
+        int all = tweets.queryPointTuplesForTime(start, end).size();
+        int first = tweets.queryPointTuplesForTime(start, middle).size();
+        int second = tweets.queryPointTuplesForTime(afterMiddle, end).size();
+        System.out.println("time: all " + all + " = " + first + " + " + second + ": " + (all == n && first + second == all));
+
+        // keyword selectivity and keyword + time ranges split the keyword result
+        int keywordAll = tweets.queryPointTuplesForKeyword(keyword).size();
+        int keywordFirst = tweets.queryPointTuplesForKeywordAndTime(keyword, start, middle).size();
+        int keywordSecond = tweets.queryPointTuplesForKeywordAndTime(keyword, afterMiddle, end).size();
+        System.out.println("keyword [" + keyword + "]: selectivity " + tweets.selectivity(keyword) + ", found " + ((double) keywordAll / n));
+        System.out.println("keyword and time: " + keywordAll + " = " + keywordFirst + " + " + keywordSecond + ": " + (keywordFirst + keywordSecond == keywordAll));
+
+        // cluster the keyword result
+        List<PointTuple> pointTuples = tweets.queryPointTuplesForKeyword(keyword);
+        double[][] points = new double[pointTuples.size()][2];
+        for (int i = 0; i < pointTuples.size(); i ++) {
+            points[i][0] = pointTuples.get(i).getX();
+            points[i][1] = pointTuples.get(i).getY();
+        }
+        SuperCluster superCluster = new SuperCluster(0, 17, "KDTree");
+        long startTime = System.nanoTime();
+        superCluster.load(points);
+        long endTime = System.nanoTime();
+        System.out.println("Loading " + points.length + " points into SuperCluster takes time: " + (double) (endTime - startTime) / 1000000000.0 + " seconds");
+        for (int zoom = 0; zoom <= 12; zoom += 4) {
+            System.out.println("zoom " + zoom + ": " + superCluster.getClusters(-180, -90, 180, 90, zoom).length + " clusters");
+        }
+    }
+}